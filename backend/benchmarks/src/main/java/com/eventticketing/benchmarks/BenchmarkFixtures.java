@@ -0,0 +1,84 @@
+package com.eventticketing.benchmarks;
+
+import com.eventticketing.shared.model.Event;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Representative rows and objects shared by the benchmarks.
+ */
+public final class BenchmarkFixtures {
+    private static final Timestamp NOW = Timestamp.valueOf(LocalDateTime.of(2024, 6, 1, 12, 0));
+
+    private BenchmarkFixtures() {}
+
+    /**
+     * A row of the events table in the column order of {@code EventProjection.FULL}.
+     */
+    public static LinkedHashMap<String, Object> eventRow() {
+        LinkedHashMap<String, Object> row = new LinkedHashMap<>();
+        row.put("id", 42L);
+        row.put("title", "Summer Rock Festival");
+        row.put("description", "Three days of live music on four stages with headliners from across Europe. ".repeat(8));
+        row.put("event_date", Timestamp.valueOf(LocalDateTime.of(2024, 7, 12, 18, 30)));
+        row.put("venue", "Arena Nationala");
+        row.put("city", "Bucharest");
+        row.put("status", "ACTIVE");
+        row.put("capacity", 55000);
+        row.put("base_price", new BigDecimal("249.90"));
+        row.put("created_at", NOW);
+        row.put("updated_at", NOW);
+        return row;
+    }
+
+    /**
+     * The same row as read by the summary projection, without the description.
+     */
+    public static LinkedHashMap<String, Object> eventSummaryRow() {
+        LinkedHashMap<String, Object> row = eventRow();
+        row.remove("description");
+        return row;
+    }
+
+    /**
+     * A row of the bookings/events join used by the booking queries.
+     */
+    public static LinkedHashMap<String, Object> bookingRow() {
+        LinkedHashMap<String, Object> row = new LinkedHashMap<>();
+        row.put("id", 1001L);
+        row.put("user_id", 7L);
+        row.put("event_id", 42L);
+        row.put("booking_reference", "BK1717243200000A1B2C3D4");
+        row.put("total_amount", new BigDecimal("499.80"));
+        row.put("status", "CONFIRMED");
+        row.put("booking_date", NOW);
+        row.put("created_at", NOW);
+        row.put("updated_at", NOW);
+        row.put("event_title", "Summer Rock Festival");
+        row.put("event_date", Timestamp.valueOf(LocalDateTime.of(2024, 7, 12, 18, 30)));
+        return row;
+    }
+
+    public static List<Event> events(int count) {
+        List<Event> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Event event = new Event("Summer Rock Festival " + i,
+                    "Three days of live music on four stages with headliners from across Europe.",
+                    LocalDateTime.of(2024, 7, 12, 18, 30).plusDays(i), 3L, 1L);
+            event.setId((long) i);
+            event.setCategory("Bucharest");
+            event.setStatus("ACTIVE");
+            event.setMaxAttendees(55000);
+            event.setBasePrice(new BigDecimal("249.90"));
+            event.setCreatedAt(NOW.toLocalDateTime());
+            event.setUpdatedAt(NOW.toLocalDateTime());
+            events.add(event);
+        }
+        return events;
+    }
+}
@@ -0,0 +1,66 @@
+package com.eventticketing.benchmarks;
+
+import com.eventticketing.booking.servlet.BookingResource;
+import com.eventticketing.shared.model.Event;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Jackson serialization of the list payloads returned by GET /events and GET /bookings.
+ */
+@State(Scope.Benchmark)
+public class JsonSerializationBenchmark {
+
+    @Param({"20", "200"})
+    private int size;
+
+    private ObjectMapper objectMapper;
+    private List<Event> events;
+    private List<BookingResource.BookingResponse> bookings;
+
+    @Setup
+    public void setUp() {
+        // Configured like the ObjectMapper in BookingResource
+        objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+
+        events = BenchmarkFixtures.events(size);
+        bookings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            BookingResource.BookingResponse booking = new BookingResource.BookingResponse();
+            booking.setId((long) i);
+            booking.setUserId(7L);
+            booking.setEventId(42L);
+            booking.setEventTitle("Summer Rock Festival");
+            booking.setBookingReference("BK1717243200000A1B2C3D4");
+            booking.setTotalAmount(new BigDecimal("499.80"));
+            booking.setStatus("CONFIRMED");
+            booking.setBookingDate(LocalDateTime.of(2024, 6, 1, 12, 0));
+            booking.setCreatedAt(LocalDateTime.of(2024, 6, 1, 12, 0));
+            booking.setUpdatedAt(LocalDateTime.of(2024, 6, 1, 12, 0));
+            bookings.add(booking);
+        }
+    }
+
+    @Benchmark
+    public byte[] serializeEvents() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(events);
+    }
+
+    @Benchmark
+    public String serializeBookings() throws JsonProcessingException {
+        // BookingResource renders its responses to a String before returning them
+        return objectMapper.writeValueAsString(bookings);
+    }
+}
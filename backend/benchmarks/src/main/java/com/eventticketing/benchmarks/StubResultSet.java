@@ -0,0 +1,114 @@
+package com.eventticketing.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory {@link ResultSet} over fixed rows, so mappers can be benchmarked without a database.
+ * Supports the getters the mappers use, by column label and by 1-based column index.
+ */
+public final class StubResultSet implements InvocationHandler {
+    private final List<String> columns;
+    private final Map<String, Integer> columnIndex = new HashMap<>();
+    private final List<Object[]> rows;
+    private int cursor = -1;
+    private boolean lastWasNull;
+
+    private StubResultSet(List<String> columns, List<Object[]> rows) {
+        this.columns = columns;
+        this.rows = rows;
+        for (int i = 0; i < columns.size(); i++) {
+            columnIndex.put(columns.get(i), i);
+        }
+    }
+
+    /**
+     * Creates a result set whose rows all carry the values of {@code row}.
+     */
+    public static ResultSet of(LinkedHashMap<String, Object> row, int rowCount) {
+        List<Object[]> rows = new ArrayList<>(rowCount);
+        Object[] values = row.values().toArray();
+        for (int i = 0; i < rowCount; i++) {
+            rows.add(values);
+        }
+        StubResultSet handler = new StubResultSet(new ArrayList<>(row.keySet()), rows);
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[] {ResultSet.class}, handler);
+    }
+
+    /**
+     * Moves the result set back before the first row so it can be read again.
+     */
+    public static void rewind(ResultSet resultSet) {
+        ((StubResultSet) Proxy.getInvocationHandler(resultSet)).cursor = -1;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+        String name = method.getName();
+        switch (name) {
+            case "next":
+                return ++cursor < rows.size();
+            case "wasNull":
+                return lastWasNull;
+            case "close":
+                return null;
+            case "isClosed":
+                return false;
+            case "findColumn":
+                return index(args[0]) + 1;
+            default:
+                break;
+        }
+        if (name.startsWith("get") && args != null && args.length == 1) {
+            Object value = rows.get(cursor)[index(args[0])];
+            lastWasNull = value == null;
+            return convert(name, value);
+        }
+        throw new SQLException("Not supported by StubResultSet: " + name);
+    }
+
+    private int index(Object column) throws SQLException {
+        if (column instanceof Integer) {
+            return (Integer) column - 1;
+        }
+        Integer index = columnIndex.get(column);
+        if (index == null) {
+            throw new SQLException("Unknown column: " + column);
+        }
+        return index;
+    }
+
+    private static Object convert(String getter, Object value) {
+        switch (getter) {
+            case "getLong":
+                return value == null ? 0L : ((Number) value).longValue();
+            case "getInt":
+                return value == null ? 0 : ((Number) value).intValue();
+            case "getBoolean":
+                return value != null && (Boolean) value;
+            case "getString":
+                return value == null ? null : value.toString();
+            case "getBigDecimal":
+                return (BigDecimal) value;
+            case "getTimestamp":
+                return (Timestamp) value;
+            default:
+                return value;
+        }
+    }
+
+    List<String> getColumns() {
+        return columns;
+    }
+}
@@ -0,0 +1,43 @@
+package com.eventticketing.booking.servlet;
+
+import com.eventticketing.benchmarks.BenchmarkFixtures;
+import com.eventticketing.benchmarks.StubResultSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Booking row mapping and booking-reference generation, both on the booking request path.
+ */
+@State(Scope.Thread)
+public class BookingBenchmark {
+
+    @Param({"20"})
+    private int rows;
+
+    private ResultSet resultSet;
+
+    @Setup
+    public void setUp() {
+        resultSet = StubResultSet.of(BenchmarkFixtures.bookingRow(), rows);
+    }
+
+    @Benchmark
+    public void mapBookingPage(Blackhole blackhole) throws SQLException {
+        StubResultSet.rewind(resultSet);
+        while (resultSet.next()) {
+            blackhole.consume(BookingResource.mapResultSetToBookingResponse(resultSet));
+        }
+    }
+
+    @Benchmark
+    public String generateBookingReference() {
+        return BookingResource.generateBookingReference();
+    }
+}
@@ -0,0 +1,54 @@
+package com.eventticketing.event.service;
+
+import com.eventticketing.benchmarks.BenchmarkFixtures;
+import com.eventticketing.benchmarks.StubResultSet;
+import com.eventticketing.shared.model.Event;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Cost of mapping an events row per row, as paid by every catalogue query, for the full
+ * projection and for the summary projection of the list views.
+ */
+@State(Scope.Thread)
+public class EventMappingBenchmark {
+
+    @Param({"20"})
+    private int rows;
+
+    private EventService eventService;
+    private ResultSet resultSet;
+    private ResultSet summaryResultSet;
+
+    @Setup
+    public void setUp() {
+        eventService = new EventService();
+        resultSet = StubResultSet.of(BenchmarkFixtures.eventRow(), rows);
+        summaryResultSet = StubResultSet.of(BenchmarkFixtures.eventSummaryRow(), rows);
+    }
+
+    @Benchmark
+    public void mapEventPage(Blackhole blackhole) throws SQLException {
+        StubResultSet.rewind(resultSet);
+        while (resultSet.next()) {
+            Event event = eventService.mapResultSetToEvent(resultSet);
+            blackhole.consume(event);
+        }
+    }
+
+    @Benchmark
+    public void mapEventSummaryPage(Blackhole blackhole) throws SQLException {
+        StubResultSet.rewind(summaryResultSet);
+        while (summaryResultSet.next()) {
+            Event event = EventProjection.SUMMARY.map(summaryResultSet);
+            blackhole.consume(event);
+        }
+    }
+}
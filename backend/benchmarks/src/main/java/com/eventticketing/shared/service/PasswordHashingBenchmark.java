@@ -0,0 +1,22 @@
+package com.eventticketing.shared.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * bcrypt hashing as done by {@link UserService#registerUser}. Deliberately slow; this guards
+ * against accidental changes to the work factor in either direction.
+ */
+public class PasswordHashingBenchmark {
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public String hashPassword() {
+        return UserService.hashPassword("correct horse battery staple");
+    }
+}
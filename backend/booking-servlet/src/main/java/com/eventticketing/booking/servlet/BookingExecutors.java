@@ -0,0 +1,25 @@
+package com.eventticketing.booking.servlet;
+
+import com.eventticketing.shared.concurrent.VirtualThreads;
+import com.eventticketing.shared.config.AppConfig;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Thread pools used by the asynchronous booking flow.
+ * Blocking JDBC work runs on {@link #database()} so that container threads are free
+ * while remote event-service calls are in flight. With virtual threads enabled every task
+ * gets its own virtual thread and concurrency is bounded by the connection pool instead.
+ */
+public final class BookingExecutors {
+    // Matches the default Hikari pool size; more platform threads would only wait for connections
+    private static final int DATABASE_THREADS = AppConfig.getInt("booking.db.threads", 20);
+
+    private static final ExecutorService DATABASE = VirtualThreads.newExecutor("booking-db", DATABASE_THREADS);
+
+    private BookingExecutors() {}
+
+    public static ExecutorService database() {
+        return DATABASE;
+    }
+}
@@ -0,0 +1,91 @@
+package com.eventticketing.booking.servlet;
+
+import com.eventticketing.booking.servlet.BookingResource.BookingItemResponse;
+import com.eventticketing.booking.servlet.BookingResource.BookingResponse;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads the items of many bookings with one {@code booking_id = ANY(?)} query per batch,
+ * instead of one query per booking.
+ */
+class BookingItemLoader {
+    // Upper bound on ids per query, keeps the array parameter and the result set reasonable
+    static final int BATCH_SIZE = 1000;
+
+    private static final String ITEMS_SQL =
+            "SELECT id, booking_id, ticket_type_id, seat_id, quantity, unit_price, total_price " +
+            "FROM booking_items WHERE booking_id = ANY(?) ORDER BY booking_id, id";
+
+    private BookingItemLoader() {}
+
+    /**
+     * Sets the items of every booking in {@code bookings}; bookings without items get an empty list.
+     */
+    static void attachItems(Connection conn, List<BookingResponse> bookings) throws SQLException {
+        for (int from = 0; from < bookings.size(); from += BATCH_SIZE) {
+            List<BookingResponse> batch = bookings.subList(from, Math.min(from + BATCH_SIZE, bookings.size()));
+
+            Map<Long, List<BookingItemResponse>> itemsByBooking = new HashMap<>();
+            Long[] ids = new Long[batch.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = batch.get(i).getId();
+                itemsByBooking.put(ids[i], new ArrayList<>());
+            }
+
+            Array idArray = conn.createArrayOf("bigint", ids);
+            try (PreparedStatement stmt = conn.prepareStatement(ITEMS_SQL)) {
+                stmt.setArray(1, idArray);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        itemsByBooking.get(rs.getLong("booking_id")).add(mapResultSetToBookingItem(rs, "id"));
+                    }
+                }
+            } finally {
+                idArray.free();
+            }
+
+            for (BookingResponse booking : batch) {
+                booking.setItems(itemsByBooking.get(booking.getId()));
+            }
+        }
+    }
+
+    /**
+     * Maps the item columns of the current row; {@code idColumn} names the item id column,
+     * which joined queries alias to avoid clashing with the booking id.
+     */
+    static BookingItemResponse mapResultSetToBookingItem(ResultSet rs, String idColumn) throws SQLException {
+        BookingItemResponse item = new BookingItemResponse();
+        item.setId(rs.getLong(idColumn));
+        item.setTicketTypeId(rs.getLong("ticket_type_id"));
+        item.setSeatId(rs.getLong("seat_id"));
+        item.setQuantity(rs.getInt("quantity"));
+        item.setUnitPrice(rs.getBigDecimal("unit_price"));
+        item.setTotalPrice(rs.getBigDecimal("total_price"));
+        return item;
+    }
+
+    /**
+     * True when a comma separated {@code include} query parameter asks for items.
+     */
+    static boolean includesItems(String include) {
+        if (include == null) {
+            return false;
+        }
+        for (String part : include.split(",")) {
+            if ("items".equalsIgnoreCase(part.trim())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
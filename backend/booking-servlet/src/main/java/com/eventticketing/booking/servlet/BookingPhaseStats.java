@@ -0,0 +1,93 @@
+package com.eventticketing.booking.servlet;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Time spent by bookings in each phase of {@code POST /bookings}:
+ * <ul>
+ *   <li>{@link Phase#PRE_VALIDATION}: request checks and the remote event lookup, no connection held;</li>
+ *   <li>{@link Phase#RESERVATION}: waiting in the pipeline queue for a writer, no connection held;</li>
+ *   <li>{@link Phase#COMMIT}: from borrowing a pooled connection to returning it, i.e. the pool
+ *       hold time of one transaction; {@code perBookingHoldMillis} divides it by the group size.</li>
+ * </ul>
+ */
+final class BookingPhaseStats {
+
+    enum Phase {
+        PRE_VALIDATION("preValidation"),
+        RESERVATION("reservation"),
+        COMMIT("commit");
+
+        final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final BookingPhaseStats INSTANCE = new BookingPhaseStats();
+
+    private final Map<Phase, Timer> timers = new EnumMap<>(Phase.class);
+    // Connection hold time attributed to each booking of a transaction
+    private final LongAdder heldBookings = new LongAdder();
+    private final LongAdder heldNanos = new LongAdder();
+
+    private BookingPhaseStats() {
+        for (Phase phase : Phase.values()) {
+            timers.put(phase, new Timer());
+        }
+    }
+
+    static BookingPhaseStats getInstance() {
+        return INSTANCE;
+    }
+
+    void record(Phase phase, long startNanos) {
+        timers.get(phase).record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records the pool hold time of a transaction that stored {@code bookings} bookings.
+     */
+    void recordConnectionHold(long startNanos, int bookings) {
+        long elapsed = System.nanoTime() - startNanos;
+        timers.get(Phase.COMMIT).record(elapsed);
+        heldNanos.add(elapsed);
+        heldBookings.add(bookings);
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (Phase phase : Phase.values()) {
+            stats.put(phase.label, timers.get(phase).toMap());
+        }
+        long bookings = heldBookings.sum();
+        stats.put("perBookingHoldMillis", bookings == 0 ? 0.0 : heldNanos.sum() / 1_000_000.0 / bookings);
+        return stats;
+    }
+
+    private static final class Timer {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            long n = count.sum();
+            map.put("count", n);
+            map.put("averageMillis", n == 0 ? 0.0 : totalNanos.sum() / 1_000_000.0 / n);
+            map.put("maxMillis", maxNanos.get() / 1_000_000.0);
+            return map;
+        }
+    }
+}
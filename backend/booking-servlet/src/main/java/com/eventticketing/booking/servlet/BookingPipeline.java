@@ -0,0 +1,602 @@
+package com.eventticketing.booking.servlet;
+
+import com.eventticketing.booking.servlet.BookingResource.BookingItemRequest;
+import com.eventticketing.booking.servlet.BookingResource.BookingRequest;
+import com.eventticketing.booking.servlet.BookingResource.BookingResponse;
+import com.eventticketing.shared.config.AppConfig;
+import com.eventticketing.shared.database.DatabaseConnection;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.ws.rs.core.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Group-commit writer for new bookings.
+ * <ul>
+ *   <li>validated requests are put on a bounded queue ({@code booking.pipeline.queue.capacity});
+ *       a full queue rejects the request instead of piling up waiters;</li>
+ *   <li>{@code booking.pipeline.writers} writer threads each take everything queued, up to
+ *       {@code booking.pipeline.max.batch} requests, and insert their bookings, items, payments,
+ *       idempotency records and {@link CapacityOutbox} rows with one multi-row statement per table
+ *       in a single transaction;</li>
+ *   <li>callers' futures complete only after that transaction has committed;</li>
+ *   <li>if a group fails (e.g. one request violates a constraint) it is retried one request per
+ *       transaction, so only the offending request fails.</li>
+ * </ul>
+ * Only the commit phase holds a pooled connection: requests are validated before they are queued,
+ * and a connection is borrowed once a writer has a group to store (see {@link BookingPhaseStats}).
+ * Batches form by themselves: under light load a writer finds one request and commits it alone,
+ * under load the queue fills while the previous commit is in flight. With
+ * {@code booking.pipeline.enabled=false} every booking gets its own transaction on the caller's thread.
+ */
+public class BookingPipeline {
+    private static final Logger logger = LoggerFactory.getLogger(BookingPipeline.class);
+
+    private static final boolean ENABLED = AppConfig.getBoolean("booking.pipeline.enabled", true);
+    private static final int QUEUE_CAPACITY = AppConfig.getInt("booking.pipeline.queue.capacity", 10000);
+    private static final int WRITERS = AppConfig.getInt("booking.pipeline.writers", 2);
+    private static final int MAX_BATCH = AppConfig.getInt("booking.pipeline.max.batch", 200);
+
+    private static final String INSERT_BOOKINGS_SQL =
+            "INSERT INTO bookings (user_id, event_id, booking_reference, total_amount, status, booking_date, created_at, updated_at) " +
+            "SELECT t.user_id, t.event_id, t.reference, t.amount, 'PENDING', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP " +
+            "FROM unnest(?::bigint[], ?::bigint[], ?::varchar[], ?::numeric[]) AS t(user_id, event_id, reference, amount) " +
+            "RETURNING id, booking_reference";
+    private static final String INSERT_ITEMS_SQL =
+            "INSERT INTO booking_items (booking_id, ticket_type_id, seat_id, quantity, unit_price, total_price, created_at) " +
+            "SELECT t.booking_id, t.ticket_type_id, t.seat_id, t.quantity, t.unit_price, t.total_price, CURRENT_TIMESTAMP " +
+            "FROM unnest(?::bigint[], ?::bigint[], ?::bigint[], ?::int[], ?::numeric[], ?::numeric[]) " +
+            "AS t(booking_id, ticket_type_id, seat_id, quantity, unit_price, total_price)";
+    private static final String INSERT_PAYMENTS_SQL =
+            "INSERT INTO payments (booking_id, amount, payment_method, payment_status, created_at, updated_at) " +
+            "SELECT t.booking_id, t.amount, t.method, 'PENDING', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP " +
+            "FROM unnest(?::bigint[], ?::numeric[], ?::varchar[]) AS t(booking_id, amount, method)";
+
+    private static volatile BookingPipeline instance;
+    private static final ReentrantLock instanceLock = new ReentrantLock();
+
+    private final BlockingQueue<PendingBooking> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final List<Thread> writers = new ArrayList<>();
+    private final ObjectMapper objectMapper;
+    private final BookingPhaseStats phaseStats = BookingPhaseStats.getInstance();
+    private volatile boolean running = true;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder groupCommits = new LongAdder();
+    private final LongAdder groupedBookings = new LongAdder();
+    private final LongAdder singleCommits = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAdder uncertainCommits = new LongAdder();
+    private volatile int largestGroup;
+
+    private BookingPipeline() {
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.registerModule(new JavaTimeModule());
+        if (ENABLED) {
+            for (int i = 0; i < WRITERS; i++) {
+                Thread writer = new Thread(this::writeLoop, "booking-writer-" + i);
+                writer.setDaemon(true);
+                writer.start();
+                writers.add(writer);
+            }
+            logger.info("Booking pipeline started with {} writers, max batch {}, queue capacity {}",
+                    WRITERS, MAX_BATCH, QUEUE_CAPACITY);
+        }
+    }
+
+    public static BookingPipeline getInstance() {
+        BookingPipeline current = instance;
+        if (current == null) {
+            instanceLock.lock();
+            try {
+                current = instance;
+                if (current == null) {
+                    current = new BookingPipeline();
+                    instance = current;
+                }
+            } finally {
+                instanceLock.unlock();
+            }
+        }
+        return current;
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Stops the writers after they have committed everything already queued.
+     */
+    public static void shutdownIfStarted() {
+        BookingPipeline current = instance;
+        if (current != null) {
+            current.shutdown();
+        }
+    }
+
+    /**
+     * Stores the booking. The future completes after the commit with the created booking, with
+     * null when {@code claim}'s key was already used (nothing was written), or exceptionally.
+     * It fails with {@link RejectedExecutionException} when the queue is full.
+     */
+    public CompletableFuture<BookingResponse> submit(BookingRequest request, IdempotencyStore.Claim claim) {
+        if (!ENABLED) {
+            try {
+                return CompletableFuture.completedFuture(persistSingle(request, claim, referenceFor(request)));
+            } catch (Exception e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        PendingBooking pending = new PendingBooking(request, claim);
+        if (!running || !queue.offer(pending)) {
+            rejected.increment();
+            pending.future.completeExceptionally(new RejectedExecutionException("Booking queue is full"));
+        } else {
+            submitted.increment();
+        }
+        return pending.future;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long groups = groupCommits.sum();
+        stats.put("enabled", ENABLED);
+        stats.put("writers", writers.size());
+        stats.put("queued", queue.size());
+        stats.put("queueCapacity", QUEUE_CAPACITY);
+        stats.put("submitted", submitted.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("groupCommits", groups);
+        stats.put("groupedBookings", groupedBookings.sum());
+        stats.put("averageGroupSize", groups == 0 ? 0.0 : (double) groupedBookings.sum() / groups);
+        stats.put("largestGroup", largestGroup);
+        stats.put("singleCommits", singleCommits.sum());
+        stats.put("groupFallbacks", fallbacks.sum());
+        stats.put("uncertainGroupCommits", uncertainCommits.sum());
+        stats.put("phases", phaseStats.getStats());
+        return stats;
+    }
+
+    private void writeLoop() {
+        List<PendingBooking> group = new ArrayList<>(MAX_BATCH);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingBooking first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                queue.drainTo(group, MAX_BATCH - 1);
+                for (PendingBooking pending : group) {
+                    phaseStats.record(BookingPhaseStats.Phase.RESERVATION, pending.queuedAt);
+                }
+                writeGroup(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                logger.error("Booking writer failed", e);
+                for (PendingBooking pending : group) {
+                    pending.future.completeExceptionally(e);
+                }
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    private void writeGroup(List<PendingBooking> group) {
+        if (group.size() == 1) {
+            writeSingle(group.get(0));
+            return;
+        }
+        try {
+            Map<PendingBooking, BookingResponse> created = persistGroup(group);
+            groupCommits.increment();
+            groupedBookings.add(group.size());
+            if (group.size() > largestGroup) {
+                largestGroup = group.size();
+            }
+            for (PendingBooking pending : group) {
+                // Absent: the idempotency key was already used, nothing was written for it
+                pending.future.complete(created.get(pending));
+            }
+        } catch (CommitOutcomeUnknownException e) {
+            // The group may be committed; writing it again one by one could book twice
+            uncertainCommits.increment();
+            logger.error("Group commit of {} bookings failed after the commit was sent: {}", group.size(), e.getMessage());
+            for (PendingBooking pending : group) {
+                pending.future.completeExceptionally(e.getCause());
+            }
+        } catch (Exception e) {
+            fallbacks.increment();
+            logger.warn("Group commit of {} bookings failed, retrying one by one: {}", group.size(), e.getMessage());
+            for (PendingBooking pending : group) {
+                writeSingle(pending);
+            }
+        }
+    }
+
+    private void writeSingle(PendingBooking pending) {
+        try {
+            pending.future.complete(persistSingle(pending.request, pending.claim, pending.reference));
+            singleCommits.increment();
+        } catch (Exception e) {
+            pending.future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Inserts a whole group in one transaction with one statement per table. Failures once the
+     * commit has been sent are wrapped in {@link CommitOutcomeUnknownException}.
+     */
+    private Map<PendingBooking, BookingResponse> persistGroup(List<PendingBooking> group) throws Exception {
+        boolean commitSent = false;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            long borrowedAt = System.nanoTime();
+            conn.setAutoCommit(false);
+            IdempotencyStore store = IdempotencyStore.getInstance();
+            Map<PendingBooking, BookingResponse> created = new HashMap<>();
+            List<PendingBooking> remembered = new ArrayList<>();
+            List<String> bodies = new ArrayList<>();
+            try {
+                List<IdempotencyStore.Claim> claims = new ArrayList<>();
+                for (PendingBooking pending : group) {
+                    if (pending.claim != null) {
+                        claims.add(pending.claim);
+                    }
+                }
+                Set<String> claimed = claims.isEmpty() ? Set.of() : store.claimAll(conn, claims);
+
+                List<PendingBooking> toInsert = new ArrayList<>();
+                for (PendingBooking pending : group) {
+                    if (pending.claim == null || claimed.contains(pending.claim.key)) {
+                        toInsert.add(pending);
+                    }
+                }
+                if (toInsert.isEmpty()) {
+                    conn.rollback();
+                    return created;
+                }
+
+                Map<String, Long> idsByReference = insertBookings(conn, toInsert);
+                List<Long> bookingIds = new ArrayList<>();
+                for (PendingBooking pending : toInsert) {
+                    Long id = idsByReference.get(pending.reference);
+                    if (id == null) {
+                        throw new SQLException("No id returned for booking " + pending.reference);
+                    }
+                    bookingIds.add(id);
+                }
+                insertItems(conn, toInsert, bookingIds);
+                insertPayments(conn, toInsert, bookingIds);
+
+                // Capacity updates are relayed to the event service after the commit
+                Map<Long, Integer> seatsByEvent = new LinkedHashMap<>();
+                for (PendingBooking pending : toInsert) {
+                    seatsByEvent.merge(pending.request.getEventId(), BookingResource.totalQuantity(pending.request), Integer::sum);
+                }
+                CapacityOutbox.getInstance().append(conn, seatsByEvent);
+
+                List<String> keys = new ArrayList<>();
+                List<Long> keyBookingIds = new ArrayList<>();
+                for (int i = 0; i < toInsert.size(); i++) {
+                    PendingBooking pending = toInsert.get(i);
+                    BookingResponse response = toResponse(pending.request, bookingIds.get(i), pending.reference);
+                    created.put(pending, response);
+                    if (pending.claim != null) {
+                        remembered.add(pending);
+                        keys.add(pending.claim.key);
+                        bodies.add(objectMapper.writeValueAsString(response));
+                        keyBookingIds.add(bookingIds.get(i));
+                    }
+                }
+                if (!keys.isEmpty()) {
+                    store.completeAll(conn, keys, bodies, keyBookingIds);
+                }
+
+                commitSent = true;
+                conn.commit();
+            } catch (Exception e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                phaseStats.recordConnectionHold(borrowedAt, group.size());
+            }
+
+            for (int i = 0; i < remembered.size(); i++) {
+                PendingBooking pending = remembered.get(i);
+                store.remember(pending.claim.key, pending.claim.fingerprint, Response.Status.CREATED.getStatusCode(), bodies.get(i));
+            }
+            return created;
+        } catch (Exception e) {
+            if (commitSent) {
+                throw new CommitOutcomeUnknownException(e);
+            }
+            throw e;
+        }
+    }
+
+    private Map<String, Long> insertBookings(Connection conn, List<PendingBooking> group) throws SQLException {
+        int n = group.size();
+        Long[] userIds = new Long[n];
+        Long[] eventIds = new Long[n];
+        String[] references = new String[n];
+        BigDecimal[] amounts = new BigDecimal[n];
+        for (int i = 0; i < n; i++) {
+            BookingRequest request = group.get(i).request;
+            userIds[i] = request.getUserId();
+            eventIds[i] = request.getEventId();
+            references[i] = group.get(i).reference;
+            amounts[i] = request.getTotalAmount();
+        }
+
+        Map<String, Long> idsByReference = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(INSERT_BOOKINGS_SQL)) {
+            stmt.setArray(1, conn.createArrayOf("bigint", userIds));
+            stmt.setArray(2, conn.createArrayOf("bigint", eventIds));
+            stmt.setArray(3, conn.createArrayOf("varchar", references));
+            stmt.setArray(4, conn.createArrayOf("numeric", amounts));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    idsByReference.put(rs.getString("booking_reference"), rs.getLong("id"));
+                }
+            }
+        }
+        return idsByReference;
+    }
+
+    private void insertItems(Connection conn, List<PendingBooking> group, List<Long> bookingIds) throws SQLException {
+        List<Long> itemBookingIds = new ArrayList<>();
+        List<Long> ticketTypeIds = new ArrayList<>();
+        List<Long> seatIds = new ArrayList<>();
+        List<Integer> quantities = new ArrayList<>();
+        List<BigDecimal> unitPrices = new ArrayList<>();
+        List<BigDecimal> totalPrices = new ArrayList<>();
+        for (int i = 0; i < group.size(); i++) {
+            List<BookingItemRequest> items = group.get(i).request.getItems();
+            if (items == null) {
+                continue;
+            }
+            for (BookingItemRequest item : items) {
+                if (item.getQuantity() == null) {
+                    throw new SQLException("Booking item without quantity");
+                }
+                itemBookingIds.add(bookingIds.get(i));
+                ticketTypeIds.add(item.getTicketTypeId());
+                seatIds.add(item.getSeatId());
+                quantities.add(item.getQuantity());
+                unitPrices.add(item.getUnitPrice());
+                totalPrices.add(item.getTotalPrice());
+            }
+        }
+        if (itemBookingIds.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(INSERT_ITEMS_SQL)) {
+            stmt.setArray(1, conn.createArrayOf("bigint", itemBookingIds.toArray()));
+            stmt.setArray(2, conn.createArrayOf("bigint", ticketTypeIds.toArray()));
+            stmt.setArray(3, conn.createArrayOf("bigint", seatIds.toArray()));
+            stmt.setArray(4, conn.createArrayOf("int4", quantities.toArray()));
+            stmt.setArray(5, conn.createArrayOf("numeric", unitPrices.toArray()));
+            stmt.setArray(6, conn.createArrayOf("numeric", totalPrices.toArray()));
+            stmt.executeUpdate();
+        }
+    }
+
+    private void insertPayments(Connection conn, List<PendingBooking> group, List<Long> bookingIds) throws SQLException {
+        List<Long> paymentBookingIds = new ArrayList<>();
+        List<BigDecimal> amounts = new ArrayList<>();
+        List<String> methods = new ArrayList<>();
+        for (int i = 0; i < group.size(); i++) {
+            BookingRequest request = group.get(i).request;
+            if (request.getPaymentMethod() != null) {
+                paymentBookingIds.add(bookingIds.get(i));
+                amounts.add(request.getTotalAmount());
+                methods.add(request.getPaymentMethod());
+            }
+        }
+        if (paymentBookingIds.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(INSERT_PAYMENTS_SQL)) {
+            stmt.setArray(1, conn.createArrayOf("bigint", paymentBookingIds.toArray()));
+            stmt.setArray(2, conn.createArrayOf("numeric", amounts.toArray()));
+            stmt.setArray(3, conn.createArrayOf("varchar", methods.toArray()));
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Inserts the booking, its items, the pending payment and the capacity outbox row in one
+     * transaction, together with the idempotency record when {@code claim} is given. Returns null, without writing anything,
+     * when the idempotency key has already been used.
+     */
+    private BookingResponse persistSingle(BookingRequest request, IdempotencyStore.Claim claim,
+                                          String bookingReference) throws Exception {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            long borrowedAt = System.nanoTime();
+            conn.setAutoCommit(false);
+
+            try {
+                if (claim != null && !IdempotencyStore.getInstance().claim(conn, claim.key, claim.fingerprint)) {
+                    conn.rollback();
+                    return null;
+                }
+
+                // Create booking
+                String insertBookingSql = "INSERT INTO bookings (user_id, event_id, booking_reference, total_amount, status, booking_date, created_at, updated_at) " +
+                                         "VALUES (?, ?, ?, ?, 'PENDING', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)";
+
+                Long bookingId;
+                try (PreparedStatement bookingStmt = conn.prepareStatement(insertBookingSql, Statement.RETURN_GENERATED_KEYS)) {
+                    bookingStmt.setLong(1, request.getUserId());
+                    bookingStmt.setLong(2, request.getEventId());
+                    bookingStmt.setString(3, bookingReference);
+                    bookingStmt.setBigDecimal(4, request.getTotalAmount());
+
+                    int rowsAffected = bookingStmt.executeUpdate();
+                    if (rowsAffected == 0) {
+                        throw new SQLException("Failed to create booking");
+                    }
+
+                    try (ResultSet generatedKeys = bookingStmt.getGeneratedKeys()) {
+                        if (generatedKeys.next()) {
+                            bookingId = generatedKeys.getLong(1);
+                        } else {
+                            throw new SQLException("Failed to create booking");
+                        }
+                    }
+                }
+
+                // Create booking items
+                if (request.getItems() != null && !request.getItems().isEmpty()) {
+                    String insertItemSql = "INSERT INTO booking_items (booking_id, ticket_type_id, seat_id, quantity, unit_price, total_price, created_at) " +
+                                          "VALUES (?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)";
+
+                    try (PreparedStatement itemStmt = conn.prepareStatement(insertItemSql)) {
+                        for (BookingItemRequest item : request.getItems()) {
+                            itemStmt.setLong(1, bookingId);
+                            itemStmt.setObject(2, item.getTicketTypeId(), Types.BIGINT);
+                            itemStmt.setObject(3, item.getSeatId(), Types.BIGINT);
+                            itemStmt.setInt(4, item.getQuantity());
+                            itemStmt.setBigDecimal(5, item.getUnitPrice());
+                            itemStmt.setBigDecimal(6, item.getTotalPrice());
+                            itemStmt.addBatch();
+                        }
+                        itemStmt.executeBatch();
+                    }
+                }
+
+                // Create payment record
+                if (request.getPaymentMethod() != null) {
+                    String insertPaymentSql = "INSERT INTO payments (booking_id, amount, payment_method, payment_status, created_at, updated_at) " +
+                                             "VALUES (?, ?, ?, 'PENDING', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)";
+
+                    try (PreparedStatement paymentStmt = conn.prepareStatement(insertPaymentSql)) {
+                        paymentStmt.setLong(1, bookingId);
+                        paymentStmt.setBigDecimal(2, request.getTotalAmount());
+                        paymentStmt.setString(3, request.getPaymentMethod());
+                        paymentStmt.executeUpdate();
+                    }
+                }
+
+                CapacityOutbox.getInstance().append(conn,
+                        Map.of(request.getEventId(), BookingResource.totalQuantity(request)));
+
+                BookingResponse response = toResponse(request, bookingId, bookingReference);
+
+                String body = null;
+                if (claim != null) {
+                    body = objectMapper.writeValueAsString(response);
+                    IdempotencyStore.getInstance().complete(conn, claim.key, Response.Status.CREATED.getStatusCode(),
+                            body, bookingId);
+                }
+
+                conn.commit();
+
+                if (claim != null) {
+                    IdempotencyStore.getInstance().remember(claim.key, claim.fingerprint,
+                            Response.Status.CREATED.getStatusCode(), body);
+                }
+                return response;
+
+            } catch (Exception e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                phaseStats.recordConnectionHold(borrowedAt, 1);
+            }
+        }
+    }
+
+    private static String referenceFor(BookingRequest request) {
+        String bookingReference = request.getBookingReference();
+        if (bookingReference == null || bookingReference.trim().isEmpty()) {
+            bookingReference = BookingResource.generateBookingReference();
+        }
+        return bookingReference;
+    }
+
+    private static BookingResponse toResponse(BookingRequest request, Long bookingId, String bookingReference) {
+        BookingResponse response = new BookingResponse();
+        response.setId(bookingId);
+        response.setUserId(request.getUserId());
+        response.setEventId(request.getEventId());
+        response.setBookingReference(bookingReference);
+        response.setTotalAmount(request.getTotalAmount());
+        response.setStatus("PENDING");
+        response.setCreatedAt(LocalDateTime.now());
+        response.setUpdatedAt(LocalDateTime.now());
+        return response;
+    }
+
+    private void shutdown() {
+        running = false;
+        for (Thread writer : writers) {
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        PendingBooking pending;
+        while ((pending = queue.poll()) != null) {
+            pending.future.completeExceptionally(new RejectedExecutionException("Booking pipeline stopped"));
+        }
+    }
+
+    /**
+     * A queued request. The reference is fixed up front so rows returned by the multi-row insert
+     * can be matched back to their request.
+     */
+    private static class PendingBooking {
+        final BookingRequest request;
+        final IdempotencyStore.Claim claim;
+        final String reference;
+        final long queuedAt = System.nanoTime();
+        final CompletableFuture<BookingResponse> future = new CompletableFuture<>();
+
+        PendingBooking(BookingRequest request, IdempotencyStore.Claim claim) {
+            this.request = request;
+            this.claim = claim;
+            this.reference = referenceFor(request);
+        }
+    }
+
+    /**
+     * The group commit failed after {@code COMMIT} was sent, so whether it was written is not
+     * known. Clients retry with their idempotency key and get the booking if it was.
+     */
+    private static class CommitOutcomeUnknownException extends Exception {
+        CommitOutcomeUnknownException(Exception cause) {
+            super(cause.getMessage(), cause);
+        }
+    }
+}
@@ -1,24 +1,46 @@
 package com.eventticketing.booking.servlet;
 
+import com.eventticketing.shared.config.AppConfig;
 import com.eventticketing.shared.database.DatabaseConnection;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.container.AsyncResponse;
+import jakarta.ws.rs.container.Suspended;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 @Path("/bookings")
 @Produces(MediaType.APPLICATION_JSON)
 @Consumes(MediaType.APPLICATION_JSON)
 public class BookingResource {
     
+    private static final Logger logger = LoggerFactory.getLogger(BookingResource.class);
+    
+    private static final long ASYNC_TIMEOUT_SECONDS = 30;
+    // Bookings read per query while streaming; bounds memory for large result sets
+    private static final int STREAM_CHUNK_SIZE = AppConfig.getInt("booking.stream.fetch.size", 500);
+    
     private final ObjectMapper objectMapper;
     private final EventService eventService;
     
@@ -28,76 +50,137 @@ public class BookingResource {
         this.eventService = new EventService();
     }
 
+    /**
+     * Streams every booking, newest first. Bookings are read in keyset chunks of
+     * {@code booking.stream.fetch.size}, each on a connection of its own that is returned to the
+     * pool before the chunk is written, so a slow client never holds a connection or a
+     * transaction open and memory use does not grow with the number of bookings.
+     * With {@code include=items} each chunk gets its items from one batched query.
+     * <p>
+     * A failure before the first chunk is answered with a 500; a later one can only cut the
+     * response short, which leaves the JSON array unterminated rather than looking complete.
+     */
     @GET
     @Path("/")
-    public Response getAllBookings() {
-        try (Connection conn = DatabaseConnection.getConnection()) {
-            String sql = "SELECT b.*, e.title as event_title, e.event_date as event_date " +
-                        "FROM bookings b " +
-                        "JOIN events e ON b.event_id = e.id " +
-                        "ORDER BY b.created_at DESC";
+    public Response getAllBookings(@QueryParam("include") String include) {
+        boolean withItems = BookingItemLoader.includesItems(include);
+        List<BookingResponse> firstChunk;
+        try {
+            firstChunk = readBookingsChunk(null, withItems);
+        } catch (SQLException e) {
+            logger.error("Error getting bookings", e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\": \"Failed to retrieve bookings\"}")
+                    .build();
+        }
+        
+        StreamingOutput stream = output -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output, JsonEncoding.UTF8)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+                generator.writeStartArray();
+                List<BookingResponse> chunk = firstChunk;
+                long written = 0;
+                while (true) {
+                    for (BookingResponse booking : chunk) {
+                        objectMapper.writeValue(generator, booking);
+                    }
+                    written += chunk.size();
+                    if (chunk.size() < STREAM_CHUNK_SIZE) {
+                        break;
+                    }
+                    try {
+                        chunk = readBookingsChunk(chunk.get(chunk.size() - 1), withItems);
+                    } catch (SQLException e) {
+                        logger.error("Failed to read bookings after streaming {}, aborting the response", written, e);
+                        throw new IOException("Failed to read bookings", e);
+                    }
+                }
+                generator.writeEndArray();
+            }
+        };
+        
+        return Response.ok(stream, MediaType.APPLICATION_JSON).build();
+    }
+
+    /**
+     * Reads the next chunk of bookings after {@code last} (from the newest when null), in the
+     * order of {@code created_at DESC} with the id breaking ties; bookings without a
+     * {@code created_at} come first, as PostgreSQL sorts nulls first in descending order.
+     */
+    private List<BookingResponse> readBookingsChunk(BookingResponse last, boolean withItems) throws SQLException {
+        String after = last == null ? ""
+                : last.getCreatedAt() == null ? "WHERE (b.created_at IS NULL AND b.id < ?) OR b.created_at IS NOT NULL "
+                : "WHERE b.created_at < ? OR (b.created_at = ? AND b.id < ?) ";
+        String sql = "SELECT b.*, e.title as event_title, e.event_date as event_date " +
+                    "FROM bookings b " +
+                    "JOIN events e ON b.event_id = e.id " +
+                    after +
+                    "ORDER BY b.created_at DESC, b.id DESC LIMIT ?";
+        
+        List<BookingResponse> chunk = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            if (last != null && last.getCreatedAt() == null) {
+                stmt.setLong(index++, last.getId());
+            } else if (last != null) {
+                Timestamp createdAt = Timestamp.valueOf(last.getCreatedAt());
+                stmt.setTimestamp(index++, createdAt);
+                stmt.setTimestamp(index++, createdAt);
+                stmt.setLong(index++, last.getId());
+            }
+            stmt.setInt(index, STREAM_CHUNK_SIZE);
             
-            try (PreparedStatement stmt = conn.prepareStatement(sql);
-                 ResultSet rs = stmt.executeQuery()) {
-                
-                List<BookingResponse> bookings = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    BookingResponse booking = mapResultSetToBookingResponse(rs);
-                    bookings.add(booking);
+                    chunk.add(mapResultSetToBookingResponse(rs));
                 }
-                
-                return Response.ok(objectMapper.writeValueAsString(bookings)).build();
             }
-        } catch (Exception e) {
-            e.printStackTrace();
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity("{\"error\": \"Failed to retrieve bookings: " + e.getMessage() + "\"}")
-                    .build();
+            if (withItems) {
+                BookingItemLoader.attachItems(conn, chunk);
+            }
         }
+        return chunk;
     }
 
+    /**
+     * Loads the booking and its items with one LEFT JOIN; a booking without items yields a
+     * single row with null item columns.
+     */
     @GET
     @Path("/{id}")
     public Response getBookingById(@PathParam("id") Long id) {
         try (Connection conn = DatabaseConnection.getConnection()) {
-            String sql = "SELECT b.*, e.title as event_title, e.event_date as event_date " +
+            String sql = "SELECT b.*, e.title as event_title, e.event_date as event_date, " +
+                        "bi.id as item_id, bi.ticket_type_id, bi.seat_id, bi.quantity, bi.unit_price, bi.total_price " +
                         "FROM bookings b " +
                         "JOIN events e ON b.event_id = e.id " +
-                        "WHERE b.id = ?";
+                        "LEFT JOIN booking_items bi ON bi.booking_id = b.id " +
+                        "WHERE b.id = ? " +
+                        "ORDER BY bi.id";
             
             try (PreparedStatement stmt = conn.prepareStatement(sql)) {
                 stmt.setLong(1, id);
                 
                 try (ResultSet rs = stmt.executeQuery()) {
-                    if (rs.next()) {
-                        BookingResponse booking = mapResultSetToBookingResponse(rs);
-                        
-                        // Get booking items
-                        String itemsSql = "SELECT * FROM booking_items WHERE booking_id = ?";
-                        try (PreparedStatement itemsStmt = conn.prepareStatement(itemsSql)) {
-                            itemsStmt.setLong(1, id);
-                            try (ResultSet itemsRs = itemsStmt.executeQuery()) {
-                                List<BookingItemResponse> items = new ArrayList<>();
-                                while (itemsRs.next()) {
-                                    BookingItemResponse item = new BookingItemResponse();
-                                    item.setId(itemsRs.getLong("id"));
-                                    item.setTicketTypeId(itemsRs.getLong("ticket_type_id"));
-                                    item.setSeatId(itemsRs.getLong("seat_id"));
-                                    item.setQuantity(itemsRs.getInt("quantity"));
-                                    item.setUnitPrice(itemsRs.getBigDecimal("unit_price"));
-                                    item.setTotalPrice(itemsRs.getBigDecimal("total_price"));
-                                    items.add(item);
-                                }
-                                booking.setItems(items);
-                            }
-                        }
-                        
-                        return Response.ok(objectMapper.writeValueAsString(booking)).build();
-                    } else {
+                    if (!rs.next()) {
                         return Response.status(Response.Status.NOT_FOUND)
                                 .entity("{\"error\": \"Booking not found\"}")
                                 .build();
                     }
+                    
+                    BookingResponse booking = mapResultSetToBookingResponse(rs);
+                    List<BookingItemResponse> items = new ArrayList<>();
+                    do {
+                        rs.getLong("item_id");
+                        if (!rs.wasNull()) {
+                            items.add(BookingItemLoader.mapResultSetToBookingItem(rs, "item_id"));
+                        }
+                    } while (rs.next());
+                    booking.setItems(items);
+                    
+                    return Response.ok(objectMapper.writeValueAsString(booking)).build();
                 }
             }
         } catch (Exception e) {
@@ -108,130 +191,157 @@ public class BookingResource {
         }
     }
 
+    @GET
+    @Path("/pipeline/stats")
+    public Response getPipelineStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pipeline", BookingPipeline.getInstance().getStats());
+        stats.put("idempotency", IdempotencyStore.getInstance().getStats());
+        stats.put("outbox", CapacityOutbox.getInstance().getStats());
+        return Response.ok(stats).build();
+    }
+
+    /**
+     * Creates a booking without holding a container thread during remote calls: the event is
+     * validated through the asynchronous event-service client, the database work runs on the
+     * booking executor, and the response is resumed once the booking has been committed.
+     * With an {@code Idempotency-Key} header a retried request gets the original response back
+     * and nothing is written again (see {@link IdempotencyStore}).
+     */
     @POST
     @Path("/")
-    public Response createBooking(BookingRequest request) {
-        Connection conn = null;
-        try {
-            conn = DatabaseConnection.getConnection();
-            conn.setAutoCommit(false);
-            
-            try {
-                // Validate event
-                EventService.EventValidationResult eventValidation = eventService.validateEvent(request.getEventId());
-                if (!eventValidation.isValid()) {
-                    return Response.status(Response.Status.BAD_REQUEST)
-                            .entity("{\"error\": \"Event validation failed: " + eventValidation.getErrorMessage() + "\"}")
-                            .build();
-                }
-                
-                // Check if event is active
-                if (!"ACTIVE".equals(eventValidation.getStatus())) {
-                    return Response.status(Response.Status.BAD_REQUEST)
-                            .entity("{\"error\": \"Event is not available for booking\"}")
-                            .build();
-                }
-                
-                // Generate booking reference
-                String bookingReference = request.getBookingReference();
-                if (bookingReference == null || bookingReference.trim().isEmpty()) {
-                    bookingReference = "BK" + System.currentTimeMillis() + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-                }
-                
-                // Create booking
-                String insertBookingSql = "INSERT INTO bookings (user_id, event_id, booking_reference, total_amount, status, booking_date, created_at, updated_at) " +
-                                         "VALUES (?, ?, ?, ?, 'PENDING', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)";
-                
-                try (PreparedStatement bookingStmt = conn.prepareStatement(insertBookingSql, Statement.RETURN_GENERATED_KEYS)) {
-                    bookingStmt.setLong(1, request.getUserId());
-                    bookingStmt.setLong(2, request.getEventId());
-                    bookingStmt.setString(3, bookingReference);
-                    bookingStmt.setBigDecimal(4, request.getTotalAmount());
-                    
-                    int rowsAffected = bookingStmt.executeUpdate();
-                    if (rowsAffected == 0) {
-                        return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                                .entity("{\"error\": \"Failed to create booking\"}")
-                                .build();
-                    }
-                    
-                    Long bookingId;
-                    try (ResultSet generatedKeys = bookingStmt.getGeneratedKeys()) {
-                        if (generatedKeys.next()) {
-                            bookingId = generatedKeys.getLong(1);
-                        } else {
-                            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                                    .entity("{\"error\": \"Failed to create booking\"}")
-                                    .build();
+    public void createBooking(BookingRequest request,
+                              @HeaderParam(IdempotencyStore.HEADER) String idempotencyKey,
+                              @Suspended AsyncResponse asyncResponse) {
+        asyncResponse.setTimeout(ASYNC_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        asyncResponse.setTimeoutHandler(response -> response.resume(
+                Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                        .entity("{\"error\": \"Booking timed out, please retry\"}")
+                        .build()));
+        
+        CompletableFuture<Response> result;
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            result = processBooking(request, null);
+        } else if (idempotencyKey.length() > IdempotencyStore.MAX_KEY_LENGTH) {
+            result = CompletableFuture.completedFuture(Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\": \"Idempotency-Key must be at most " + IdempotencyStore.MAX_KEY_LENGTH + " characters\"}")
+                    .build());
+        } else {
+            result = CompletableFuture.supplyAsync(() -> {
+                        try {
+                            return IdempotencyStore.fingerprint(objectMapper.writeValueAsBytes(request));
+                        } catch (JsonProcessingException e) {
+                            throw new CompletionException(e);
                         }
+                    })
+                    .thenCompose(fingerprint -> IdempotencyStore.getInstance().execute(idempotencyKey, fingerprint,
+                            () -> processBooking(request, new IdempotencyStore.Claim(idempotencyKey, fingerprint))));
+        }
+        
+        result.exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof RejectedExecutionException) {
+                        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                                .entity("{\"error\": \"Too many bookings in progress, please retry\"}")
+                                .build();
                     }
-                    
-                    // Create booking items
-                    if (request.getItems() != null && !request.getItems().isEmpty()) {
-                        String insertItemSql = "INSERT INTO booking_items (booking_id, ticket_type_id, seat_id, quantity, unit_price, total_price, created_at) " +
-                                              "VALUES (?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP)";
-                        
-                        try (PreparedStatement itemStmt = conn.prepareStatement(insertItemSql)) {
-                            for (BookingItemRequest item : request.getItems()) {
-                                itemStmt.setLong(1, bookingId);
-                                itemStmt.setObject(2, item.getTicketTypeId(), Types.BIGINT);
-                                itemStmt.setObject(3, item.getSeatId(), Types.BIGINT);
-                                itemStmt.setInt(4, item.getQuantity());
-                                itemStmt.setBigDecimal(5, item.getUnitPrice());
-                                itemStmt.setBigDecimal(6, item.getTotalPrice());
-                                itemStmt.addBatch();
-                            }
-                            itemStmt.executeBatch();
-                        }
+                    cause.printStackTrace();
+                    return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                            .entity("{\"error\": \"Failed to create booking: " + cause.getMessage() + "\"}")
+                            .build();
+                })
+                .thenAccept(asyncResponse::resume);
+    }
+
+    /**
+     * Runs the booking in three phases, only the last of which holds a pooled connection:
+     * <ol>
+     *   <li>pre-validation: the request is checked and the event is looked up over HTTP;</li>
+     *   <li>reservation: the booking takes a slot in the {@link BookingPipeline} queue;</li>
+     *   <li>commit: a writer stores it, together with its capacity update in the outbox, in a short transaction.</li>
+     * </ol>
+     * Time spent per phase is reported under {@code phases} by {@code GET /bookings/pipeline/stats}.
+     * {@code claim} is null for requests without an idempotency key.
+     */
+    private CompletableFuture<Response> processBooking(BookingRequest request, IdempotencyStore.Claim claim) {
+        long validationStart = System.nanoTime();
+        String invalid = checkRequest(request);
+        if (invalid != null) {
+            BookingPhaseStats.getInstance().record(BookingPhaseStats.Phase.PRE_VALIDATION, validationStart);
+            return CompletableFuture.completedFuture(Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\": \"" + invalid + "\"}")
+                    .build());
+        }
+        
+        return eventService.validateEventAsync(request.getEventId())
+                .thenComposeAsync(eventValidation -> {
+                    BookingPhaseStats.getInstance().record(BookingPhaseStats.Phase.PRE_VALIDATION, validationStart);
+                    if (!eventValidation.isValid()) {
+                        return CompletableFuture.completedFuture(Response.status(Response.Status.BAD_REQUEST)
+                                .entity("{\"error\": \"Event validation failed: " + eventValidation.getErrorMessage() + "\"}")
+                                .build());
                     }
                     
-                    // Create payment record
-                    if (request.getPaymentMethod() != null) {
-                        String insertPaymentSql = "INSERT INTO payments (booking_id, amount, payment_method, payment_status, created_at, updated_at) " +
-                                                 "VALUES (?, ?, ?, 'PENDING', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)";
-                        
-                        try (PreparedStatement paymentStmt = conn.prepareStatement(insertPaymentSql)) {
-                            paymentStmt.setLong(1, bookingId);
-                            paymentStmt.setBigDecimal(2, request.getTotalAmount());
-                            paymentStmt.setString(3, request.getPaymentMethod());
-                            paymentStmt.executeUpdate();
-                        }
+                    // Check if event is active
+                    if (!"ACTIVE".equals(eventValidation.getStatus())) {
+                        return CompletableFuture.completedFuture(Response.status(Response.Status.BAD_REQUEST)
+                                .entity("{\"error\": \"Event is not available for booking\"}")
+                                .build());
                     }
                     
-                    // Update event capacity
-                    int totalQuantity = request.getItems() != null ? 
-                        request.getItems().stream().mapToInt(BookingItemRequest::getQuantity).sum() : 1;
-                    eventService.updateEventCapacity(request.getEventId(), totalQuantity);
-                    
-                    conn.commit();
-                    
-                    // Get the created booking
-                    BookingResponse response = new BookingResponse();
-                    response.setId(bookingId);
-                    response.setUserId(request.getUserId());
-                    response.setEventId(request.getEventId());
-                    response.setBookingReference(bookingReference);
-                    response.setTotalAmount(request.getTotalAmount());
-                    response.setStatus("PENDING");
-                    response.setCreatedAt(LocalDateTime.now());
-                    response.setUpdatedAt(LocalDateTime.now());
-                    
-                    return Response.status(Response.Status.CREATED)
-                            .entity(objectMapper.writeValueAsString(response))
-                            .build();
-                }
-                
-            } catch (Exception e) {
-                if (conn != null) {
-                    conn.rollback();
+                    // Queued for the next group commit; completes once the booking is committed
+                    return BookingPipeline.getInstance().submit(request, claim)
+                            .thenComposeAsync(booking -> {
+                                if (booking == null) {
+                                    // Another node committed this key first: answer with its response, no second capacity update
+                                    IdempotencyStore store = IdempotencyStore.getInstance();
+                                    IdempotencyStore.StoredResponse stored = store.find(claim.key);
+                                    return CompletableFuture.completedFuture(stored != null
+                                            ? store.replay(stored, claim.fingerprint)
+                                            : Response.status(Response.Status.CONFLICT)
+                                                    .entity("{\"error\": \"A request with this Idempotency-Key is in progress\"}")
+                                                    .build());
+                                }
+                                
+                                // The capacity update was recorded with the booking and is relayed by CapacityOutbox
+                                return CompletableFuture.completedFuture(createdResponse(booking));
+                            }, BookingExecutors.database());
+                }, BookingExecutors.database());
+    }
+
+    /**
+     * Local checks done before anything remote or transactional; returns the error message, or
+     * null when the request can go on to event validation.
+     */
+    private static String checkRequest(BookingRequest request) {
+        if (request == null || request.getUserId() == null || request.getEventId() == null) {
+            return "userId and eventId are required";
+        }
+        if (request.getItems() != null) {
+            for (BookingItemRequest item : request.getItems()) {
+                if (item == null || item.getQuantity() == null || item.getQuantity() <= 0) {
+                    return "Every booking item needs a positive quantity";
                 }
-                throw e;
             }
-        } catch (Exception e) {
-            e.printStackTrace();
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                    .entity("{\"error\": \"Failed to create booking: " + e.getMessage() + "\"}")
+        }
+        return null;
+    }
+
+    /**
+     * Seats taken by a booking: the sum of its item quantities, or 1 without items.
+     */
+    static int totalQuantity(BookingRequest request) {
+        return request.getItems() != null ?
+            request.getItems().stream().mapToInt(BookingItemRequest::getQuantity).sum() : 1;
+    }
+
+    private Response createdResponse(BookingResponse booking) {
+        try {
+            return Response.status(Response.Status.CREATED)
+                    .entity(objectMapper.writeValueAsString(booking))
                     .build();
+        } catch (JsonProcessingException e) {
+            throw new CompletionException(e);
         }
     }
 
@@ -287,7 +397,8 @@ public class BookingResource {
 
     @GET
     @Path("/user/{userId}")
-    public Response getBookingsByUser(@PathParam("userId") Long userId) {
+    public Response getBookingsByUser(@PathParam("userId") Long userId,
+                                      @QueryParam("include") String include) {
         try (Connection conn = DatabaseConnection.getConnection()) {
             String sql = "SELECT b.*, e.title as event_title, e.event_date as event_date " +
                         "FROM bookings b " +
@@ -305,6 +416,11 @@ public class BookingResource {
                         bookings.add(booking);
                     }
                     
+                    // include=items: one batched query for all of the user's bookings
+                    if (BookingItemLoader.includesItems(include)) {
+                        BookingItemLoader.attachItems(conn, bookings);
+                    }
+                    
                     return Response.ok(objectMapper.writeValueAsString(bookings)).build();
                 }
             }
@@ -316,7 +432,11 @@ public class BookingResource {
         }
     }
 
-    private BookingResponse mapResultSetToBookingResponse(ResultSet rs) throws SQLException {
+    static String generateBookingReference() {
+        return "BK" + System.currentTimeMillis() + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+    }
+
+    static BookingResponse mapResultSetToBookingResponse(ResultSet rs) throws SQLException {
         BookingResponse booking = new BookingResponse();
         booking.setId(rs.getLong("id"));
         booking.setUserId(rs.getLong("user_id"));
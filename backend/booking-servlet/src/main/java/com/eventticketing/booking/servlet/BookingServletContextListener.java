@@ -0,0 +1,32 @@
+package com.eventticketing.booking.servlet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+
+/**
+ * Starts and stops the booking pipeline and the capacity outbox relay together with the web
+ * application, so that queued bookings are committed, and their capacity updates sent, before
+ * the container shuts down.
+ */
+public class BookingServletContextListener implements ServletContextListener {
+    private static final Logger logger = LoggerFactory.getLogger(BookingServletContextListener.class);
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        logger.info("Booking servlet starting - group-commit pipeline enabled: {}", BookingPipeline.isEnabled());
+        BookingPipeline.getInstance();
+        CapacityOutbox.getInstance();
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        logger.info("Booking servlet stopping - committing queued bookings");
+        BookingPipeline.shutdownIfStarted();
+        // After the pipeline, so the last committed bookings are relayed too
+        CapacityOutbox.shutdownIfStarted();
+        IdempotencyStore.shutdown();
+    }
+}
@@ -0,0 +1,392 @@
+package com.eventticketing.booking.servlet;
+
+import com.eventticketing.shared.config.AppConfig;
+import com.eventticketing.shared.database.DatabaseConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Transactional outbox for event capacity updates.
+ * <ul>
+ *   <li>the booking transaction adds one {@code capacity_outbox} row per event with the seats it
+ *       booked ({@link #append}), so a committed booking always has its capacity update recorded
+ *       and a rolled back one never does;</li>
+ *   <li>a relay thread claims up to {@code booking.outbox.batch.size} pending rows for
+ *       {@code booking.outbox.lease.ms} ({@code claimed_until}), sends them to the event service
+ *       in one bulk request ({@code PATCH /events/capacity}) without holding a connection, and
+ *       then deletes the rows that were applied;</li>
+ *   <li>rows the event service cannot apply (unknown event, capacity exceeded) are parked with
+ *       {@code failed_at} and {@code last_error} set; when the event service cannot be reached
+ *       the rows are released and the relay backs off.</li>
+ * </ul>
+ * Claiming uses {@code FOR UPDATE SKIP LOCKED}, so several booking nodes can relay the same
+ * table. Delivery is at least once: a batch whose answer was lost is sent again once its lease
+ * runs out. Every row goes out under its own update id ({@code capacity_outbox:<id>}), which the
+ * event service records together with the seats, so it applies each row exactly once.
+ * <p>
+ * The booking commits before the event service checks its capacity, so capacity is eventually
+ * consistent: a booking past the capacity is accepted and its row parked. Parked rows are sent
+ * again every {@code booking.outbox.failed.retry.ms} (10 minutes) and apply once seats are
+ * released or the capacity is raised; until then they are listed in {@code capacity_outbox} with
+ * {@code failed_at} set, and the bookings behind them are for an operator to resolve.
+ */
+public class CapacityOutbox {
+    private static final Logger logger = LoggerFactory.getLogger(CapacityOutbox.class);
+
+    private static final int BATCH_SIZE = AppConfig.getInt("booking.outbox.batch.size", 1000);
+    private static final long INTERVAL_MILLIS = AppConfig.getLong("booking.outbox.relay.interval.ms", 200);
+    private static final long MAX_BACKOFF_MILLIS = AppConfig.getLong("booking.outbox.relay.max.backoff.ms", 30000);
+    private static final long LEASE_MILLIS = AppConfig.getLong("booking.outbox.lease.ms", 60000);
+    private static final long FAILED_RETRY_MILLIS = AppConfig.getLong("booking.outbox.failed.retry.ms", 600000);
+    private static final String UPDATE_ID_PREFIX = "capacity_outbox:";
+
+    private static final String CREATE_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS capacity_outbox (" +
+            "id BIGSERIAL PRIMARY KEY, " +
+            "event_id BIGINT NOT NULL, " +
+            "delta INTEGER NOT NULL, " +
+            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+            "failed_at TIMESTAMP, " +
+            "last_error VARCHAR(255), " +
+            "claimed_until TIMESTAMP)";
+    private static final String CREATE_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS idx_capacity_outbox_pending ON capacity_outbox (id) WHERE failed_at IS NULL";
+    private static final String APPEND_SQL =
+            "INSERT INTO capacity_outbox (event_id, delta) SELECT * FROM unnest(?::bigint[], ?::int[])";
+    private static final String CLAIM_SQL =
+            "UPDATE capacity_outbox SET claimed_until = CURRENT_TIMESTAMP + ? * INTERVAL '1 millisecond' " +
+            "WHERE id IN (SELECT id FROM capacity_outbox WHERE failed_at IS NULL " +
+            "AND (claimed_until IS NULL OR claimed_until < CURRENT_TIMESTAMP) " +
+            "ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED) " +
+            "RETURNING id, event_id, delta";
+    private static final String RELEASE_SQL =
+            "UPDATE capacity_outbox SET claimed_until = NULL WHERE id = ANY(?)";
+    private static final String DELETE_SQL =
+            "DELETE FROM capacity_outbox WHERE id = ANY(?)";
+    private static final String FAIL_SQL =
+            "UPDATE capacity_outbox SET failed_at = CURRENT_TIMESTAMP, last_error = ?, claimed_until = NULL WHERE id = ANY(?)";
+    private static final String RETRY_FAILED_SQL =
+            "UPDATE capacity_outbox SET failed_at = NULL WHERE failed_at < CURRENT_TIMESTAMP - ? * INTERVAL '1 millisecond'";
+
+    private static volatile CapacityOutbox instance;
+    private static final ReentrantLock instanceLock = new ReentrantLock();
+
+    private final EventService eventService = new EventService();
+    private final Thread relay;
+    private volatile boolean running = true;
+    private volatile boolean tableReady;
+    // Concurrent CREATE TABLE IF NOT EXISTS can fail on the catalog's unique index
+    private final ReentrantLock tableLock = new ReentrantLock();
+
+    private final LongAdder appendedRows = new LongAdder();
+    private final LongAdder relayedRows = new LongAdder();
+    private final LongAdder capacityUpdates = new LongAdder();
+    private final LongAdder bulkRequests = new LongAdder();
+    private final LongAdder failedRows = new LongAdder();
+    private final LongAdder unreachable = new LongAdder();
+    private final LongAdder retriedFailedRows = new LongAdder();
+
+    private CapacityOutbox() {
+        relay = new Thread(this::relayLoop, "capacity-relay");
+        relay.setDaemon(true);
+        relay.start();
+        logger.info("Capacity outbox relay started, batch size {}, interval {} ms", BATCH_SIZE, INTERVAL_MILLIS);
+    }
+
+    public static CapacityOutbox getInstance() {
+        CapacityOutbox current = instance;
+        if (current == null) {
+            instanceLock.lock();
+            try {
+                current = instance;
+                if (current == null) {
+                    current = new CapacityOutbox();
+                    instance = current;
+                }
+            } finally {
+                instanceLock.unlock();
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Stops the relay after a last pass over the pending rows.
+     */
+    public static void shutdownIfStarted() {
+        CapacityOutbox current = instance;
+        if (current != null) {
+            current.shutdown();
+        }
+    }
+
+    /**
+     * Records the booked seats per event in the caller's transaction.
+     */
+    void append(Connection conn, Map<Long, Integer> seatsByEvent) throws SQLException {
+        if (seatsByEvent.isEmpty()) {
+            return;
+        }
+        ensureTable();
+        Long[] eventIds = seatsByEvent.keySet().toArray(new Long[0]);
+        Integer[] deltas = new Integer[eventIds.length];
+        for (int i = 0; i < eventIds.length; i++) {
+            deltas[i] = seatsByEvent.get(eventIds[i]);
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(APPEND_SQL)) {
+            stmt.setArray(1, conn.createArrayOf("bigint", eventIds));
+            stmt.setArray(2, conn.createArrayOf("int4", deltas));
+            stmt.executeUpdate();
+        }
+        appendedRows.add(eventIds.length);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("batchSize", BATCH_SIZE);
+        stats.put("intervalMillis", INTERVAL_MILLIS);
+        stats.put("appendedRows", appendedRows.sum());
+        stats.put("relayedRows", relayedRows.sum());
+        stats.put("capacityUpdates", capacityUpdates.sum());
+        stats.put("bulkRequests", bulkRequests.sum());
+        stats.put("failedRows", failedRows.sum());
+        stats.put("unreachable", unreachable.sum());
+        stats.put("retriedFailedRows", retriedFailedRows.sum());
+        return stats;
+    }
+
+    private void relayLoop() {
+        long backoff = INTERVAL_MILLIS;
+        long lastFailedRetry = System.currentTimeMillis();
+        while (running) {
+            long pause;
+            try {
+                if (System.currentTimeMillis() - lastFailedRetry >= FAILED_RETRY_MILLIS) {
+                    lastFailedRetry = System.currentTimeMillis();
+                    retryFailed();
+                }
+                RelayOutcome outcome = relayOnce();
+                if (outcome.retryLater) {
+                    backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+                    pause = backoff;
+                } else {
+                    backoff = INTERVAL_MILLIS;
+                    // A full batch means more rows are waiting
+                    pause = outcome.rows >= BATCH_SIZE ? 0 : INTERVAL_MILLIS;
+                }
+            } catch (Exception e) {
+                logger.warn("Capacity relay failed: {}", e.getMessage());
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+                pause = backoff;
+            }
+            if (pause > 0) {
+                try {
+                    Thread.sleep(pause);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+        }
+        try {
+            relayOnce();
+        } catch (Exception e) {
+            logger.warn("Last capacity relay pass failed, rows stay in capacity_outbox: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Claims one batch of pending rows, sends it and settles the rows, each step in a short
+     * transaction of its own; no connection is held while the request is in flight. The lease
+     * keeps other nodes off the rows until they are settled.
+     */
+    private RelayOutcome relayOnce() throws SQLException {
+        if (!tableReady) {
+            ensureTable();
+        }
+        // Sent in id order: the event service takes the rows of an event in request order, so
+        // when an event fills up the oldest bookings are the ones applied
+        Map<Long, EventService.CapacityDelta> deltasByRow = new TreeMap<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(CLAIM_SQL)) {
+            conn.setAutoCommit(true);
+            stmt.setLong(1, LEASE_MILLIS);
+            stmt.setInt(2, BATCH_SIZE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    deltasByRow.put(rs.getLong("id"),
+                            new EventService.CapacityDelta(rs.getLong("event_id"), rs.getInt("delta")));
+                }
+            }
+        }
+        if (deltasByRow.isEmpty()) {
+            return new RelayOutcome(0, false);
+        }
+
+        Map<Long, Integer> statusByRow = send(deltasByRow);
+
+        List<Long> applied = new ArrayList<>();
+        List<Long> retry = new ArrayList<>();
+        Set<Long> appliedEvents = new HashSet<>();
+        Map<String, List<Long>> rejected = new LinkedHashMap<>();
+        for (Map.Entry<Long, Integer> entry : statusByRow.entrySet()) {
+            Long id = entry.getKey();
+            int status = entry.getValue();
+            EventService.CapacityDelta delta = deltasByRow.get(id);
+            if (status == 200) {
+                applied.add(id);
+                appliedEvents.add(delta.eventId);
+            } else if (status == 0 || status >= 500) {
+                // Not applied, try again later
+                retry.add(id);
+            } else {
+                rejected.computeIfAbsent("Capacity update for event " + delta.eventId + " rejected with HTTP " + status,
+                        error -> new ArrayList<>()).add(id);
+                failedRows.increment();
+                logger.error("Capacity update of {} seats for event {} rejected with HTTP {}, parked in capacity_outbox",
+                        delta.bookedSeats, delta.eventId, status);
+            }
+        }
+        for (Long eventId : appliedEvents) {
+            capacityUpdates.increment();
+            EventService.invalidateEvent(eventId);
+        }
+        if (!retry.isEmpty()) {
+            unreachable.increment();
+        }
+
+        // If this fails the leases run out and the rows are sent again; the event service skips them
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                updateRows(conn, DELETE_SQL, applied);
+                updateRows(conn, RELEASE_SQL, retry);
+                for (Map.Entry<String, List<Long>> entry : rejected.entrySet()) {
+                    markFailed(conn, entry.getValue(), entry.getKey());
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        relayedRows.add(applied.size());
+        return new RelayOutcome(deltasByRow.size(), !retry.isEmpty());
+    }
+
+    /**
+     * Sends the rows with one bulk request, each under its own update id. Returns the outcome per
+     * row as an HTTP status of the single-event endpoint: 200 applied, 404/409 rejected, 0 not
+     * applied (no answer).
+     */
+    private Map<Long, Integer> send(Map<Long, EventService.CapacityDelta> deltasByRow) {
+        Map<String, EventService.CapacityDelta> deltasByUpdateId = new LinkedHashMap<>();
+        for (Map.Entry<Long, EventService.CapacityDelta> entry : deltasByRow.entrySet()) {
+            deltasByUpdateId.put(UPDATE_ID_PREFIX + entry.getKey(), entry.getValue());
+        }
+        Map<String, String> results = eventService.sendCapacityUpdatesAsync(deltasByUpdateId).join();
+        Map<Long, Integer> statusByRow = new LinkedHashMap<>();
+        if (results != null) {
+            bulkRequests.increment();
+        }
+        for (Long id : deltasByRow.keySet()) {
+            String result = results != null ? results.get(UPDATE_ID_PREFIX + id) : null;
+            statusByRow.put(id, "APPLIED".equals(result) ? 200
+                    : "NOT_FOUND".equals(result) ? 404
+                    : "CAPACITY_EXCEEDED".equals(result) ? 409
+                    : 0);
+        }
+        return statusByRow;
+    }
+
+    /**
+     * Puts rows parked longer than the retry interval back in the queue, so those whose event
+     * has room again get applied.
+     */
+    private void retryFailed() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(RETRY_FAILED_SQL)) {
+            conn.setAutoCommit(true);
+            stmt.setLong(1, FAILED_RETRY_MILLIS);
+            int retried = stmt.executeUpdate();
+            if (retried > 0) {
+                retriedFailedRows.add(retried);
+                logger.info("Retrying {} parked capacity updates", retried);
+            }
+        }
+    }
+
+    private void updateRows(Connection conn, String sql, List<Long> ids) throws SQLException {
+        if (ids.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setArray(1, conn.createArrayOf("bigint", ids.toArray()));
+            stmt.executeUpdate();
+        }
+    }
+
+    private void markFailed(Connection conn, List<Long> ids, String error) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(FAIL_SQL)) {
+            stmt.setString(1, error);
+            stmt.setArray(2, conn.createArrayOf("bigint", ids.toArray()));
+            stmt.executeUpdate();
+        }
+    }
+
+    private void ensureTable() throws SQLException {
+        if (tableReady) {
+            return;
+        }
+        tableLock.lock();
+        // Own connection: DDL inside the caller's booking transaction would hold its locks too long
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+            if (!tableReady) {
+                stmt.execute(CREATE_TABLE_SQL);
+                stmt.execute(CREATE_INDEX_SQL);
+                tableReady = true;
+            }
+        } catch (SQLException e) {
+            logger.warn("Could not create capacity_outbox: {}", e.getMessage());
+            throw e;
+        } finally {
+            tableLock.unlock();
+        }
+    }
+
+    private void shutdown() {
+        running = false;
+        relay.interrupt();
+        try {
+            relay.join(TimeUnit.SECONDS.toMillis(15));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class RelayOutcome {
+        final int rows;
+        final boolean retryLater;
+
+        RelayOutcome(int rows, boolean retryLater) {
+            this.rows = rows;
+            this.retryLater = retryLater;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.eventticketing.booking.servlet;
+
+import com.eventticketing.shared.concurrent.VirtualThreads;
+import com.eventticketing.shared.config.AppConfig;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Local near-cache for data fetched from the event servlet.
+ * <ul>
+ *   <li>entries live for {@code event.nearcache.ttl.ms};</li>
+ *   <li>once an entry is older than {@code event.nearcache.refresh.ms} it is still served, but a
+ *       background reload is started so hot events never expire in front of callers;</li>
+ *   <li>concurrent misses for the same key share one upstream load (single flight);</li>
+ *   <li>a load that was already running when its key was invalidated is handed to its callers
+ *       but not stored, and later callers start a new one. Versions that detect this are
+ *       striped by key, like those of the event servlet's cache.</li>
+ * </ul>
+ */
+public class EventNearCache<V> {
+    private static final long TTL_NANOS = AppConfig.getLong("event.nearcache.ttl.ms", 5000) * 1_000_000L;
+    private static final long REFRESH_NANOS = AppConfig.getLong("event.nearcache.refresh.ms", 3000) * 1_000_000L;
+    private static final int MAX_SIZE = AppConfig.getInt("event.nearcache.max.size", 10000);
+    private static final int VERSION_STRIPES = 4096;
+
+    private static final ExecutorService refreshExecutor = VirtualThreads.newExecutor("event-nearcache-refresh", 2);
+
+    private final ConcurrentHashMap<Long, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    // Bumped on every invalidation of a key in the stripe; a power of two, see stripe()
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+    private final Predicate<V> cacheable;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+
+    /**
+     * @param cacheable decides whether a loaded value may be stored, e.g. to skip failed lookups
+     */
+    public EventNearCache(Predicate<V> cacheable) {
+        this.cacheable = cacheable;
+    }
+
+    /**
+     * Returns the cached value or loads it. The loader runs on the calling thread for a miss and
+     * on a background thread for a refresh-ahead reload.
+     */
+    public CompletableFuture<V> get(Long key, Function<Long, CompletableFuture<V>> loader) {
+        Entry<V> entry = entries.get(key);
+        long now = System.nanoTime();
+        if (entry != null) {
+            long age = now - entry.loadedAt;
+            if (age < TTL_NANOS) {
+                hits.increment();
+                if (age >= REFRESH_NANOS && !inFlight.containsKey(key)) {
+                    refreshes.increment();
+                    refreshExecutor.execute(() -> load(key, loader));
+                }
+                return CompletableFuture.completedFuture(entry.value);
+            }
+            entries.remove(key, entry);
+        }
+        misses.increment();
+        return load(key, loader);
+    }
+
+    public void invalidate(Long key) {
+        // Bump first: a load that checks its version after this will not keep its value
+        versions.incrementAndGet(stripe(key));
+        entries.remove(key);
+        inFlight.remove(key);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", entries.size());
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("upstreamLoads", loads.sum());
+        stats.put("refreshAheads", refreshes.sum());
+        return stats;
+    }
+
+    private CompletableFuture<V> load(Long key, Function<Long, CompletableFuture<V>> loader) {
+        CompletableFuture<V> pending = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, pending);
+        if (existing != null) {
+            return existing;
+        }
+
+        loads.increment();
+        long version = versions.get(stripe(key));
+        CompletableFuture<V> upstream;
+        try {
+            upstream = loader.apply(key);
+        } catch (RuntimeException e) {
+            upstream = CompletableFuture.failedFuture(e);
+        }
+        upstream.whenComplete((value, error) -> {
+            if (error == null && value != null && cacheable.test(value)) {
+                store(key, value, version);
+            }
+            inFlight.remove(key, pending);
+            if (error != null) {
+                pending.completeExceptionally(error);
+            } else {
+                pending.complete(value);
+            }
+        });
+        return pending;
+    }
+
+    private void store(Long key, V value, long version) {
+        int stripe = stripe(key);
+        if (versions.get(stripe) != version) {
+            return;
+        }
+        Entry<V> stored = new Entry<>(value, System.nanoTime());
+        entries.put(key, stored);
+        if (versions.get(stripe) != version) {
+            // Invalidated between the check and the put
+            entries.remove(key, stored);
+            return;
+        }
+        if (entries.size() > MAX_SIZE) {
+            long now = System.nanoTime();
+            entries.values().removeIf(entry -> now - entry.loadedAt >= TTL_NANOS);
+            Iterator<Long> keys = entries.keySet().iterator();
+            while (entries.size() > MAX_SIZE && keys.hasNext()) {
+                keys.next();
+                keys.remove();
+            }
+        }
+    }
+
+    private static int stripe(Long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & (VERSION_STRIPES - 1);
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long loadedAt;
+
+        private Entry(V value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -1,8 +1,9 @@
 package com.eventticketing.booking.servlet;
 
+import com.eventticketing.shared.concurrent.VirtualThreads;
+import com.eventticketing.shared.config.AppConfig;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import jakarta.ws.rs.core.Response;
 
 import java.io.IOException;
 import java.net.URI;
@@ -10,92 +11,150 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
- * Service class for communicating with the Event Management Servlet
+ * Service class for communicating with the Event Management Servlet.
+ * Every call has a non-blocking {@code ...Async} variant built on {@link HttpClient#sendAsync};
+ * the blocking methods simply wait for it.
  */
 public class EventService {
     
-    private final HttpClient httpClient;
+    // Shared by all instances: BookingResource creates a new EventService per request
+    private static final HttpClient httpClient = newHttpClient();
+    private static final EventNearCache<EventValidationResult> validationCache =
+            new EventNearCache<>(EventValidationResult::isValid);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+    
     private final ObjectMapper objectMapper;
     private final String eventServiceUrl;
     
     public EventService() {
-        this.httpClient = HttpClient.newBuilder()
-                .connectTimeout(Duration.ofSeconds(10))
-                .build();
         this.objectMapper = new ObjectMapper();
         this.objectMapper.registerModule(new JavaTimeModule());
         
-        // Get event service URL from environment or use default
-        String eventServiceUrl = System.getenv("EVENT_SERVICE_URL");
-        if (eventServiceUrl == null || eventServiceUrl.isEmpty()) {
-            // Default to Tomcat event service
-            eventServiceUrl = "http://localhost:8080/event-servlet/api/events";
+        // EVENT_SERVICE_URL env var or -Devent.service.url, defaulting to the Tomcat event service
+        this.eventServiceUrl = AppConfig.get("event.service.url",
+                "http://localhost:8080/event-servlet/api/events");
+    }
+    
+    private static HttpClient newHttpClient() {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10));
+        if (VirtualThreads.isEnabled()) {
+            // Response handling runs on virtual threads instead of the client's cached pool
+            builder.executor(VirtualThreads.newExecutor("event-client", 4));
         }
-        this.eventServiceUrl = eventServiceUrl;
+        return builder.build();
     }
     
     /**
-     * Validates if an event exists and is available for booking
+     * Validates if an event exists and is available for booking.
+     * Answers from the local near-cache when possible; concurrent misses for one event
+     * share a single request to the event service.
      */
     public EventValidationResult validateEvent(Long eventId) {
+        return validateEventAsync(eventId).join();
+    }
+    
+    /**
+     * Non-blocking variant of {@link #validateEvent}. The returned future never completes
+     * exceptionally; failures are reported through {@link EventValidationResult#isValid()}.
+     */
+    public CompletableFuture<EventValidationResult> validateEventAsync(Long eventId) {
+        return validationCache.get(eventId, this::fetchEventValidation);
+    }
+    
+    /**
+     * Drops the cached validation data of an event so the next booking sees fresh values.
+     */
+    public static void invalidateEvent(Long eventId) {
+        validationCache.invalidate(eventId);
+    }
+    
+    public static Map<String, Object> getValidationCacheStats() {
+        return validationCache.getStats();
+    }
+    
+    private CompletableFuture<EventValidationResult> fetchEventValidation(Long eventId) {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(eventServiceUrl + "/" + eventId))
+                .header("Content-Type", "application/json")
+                .timeout(REQUEST_TIMEOUT)
+                .GET()
+                .build();
+        
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> toValidationResult(eventId, response))
+                .exceptionally(e -> invalidResult("Failed to validate event: " + rootMessage(e)));
+    }
+    
+    private EventValidationResult toValidationResult(Long eventId, HttpResponse<String> response) {
+        if (response.statusCode() != 200) {
+            return invalidResult("Event not found or not available");
+        }
+        
         try {
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(eventServiceUrl + "/" + eventId))
-                    .header("Content-Type", "application/json")
-                    .GET()
-                    .build();
+            Map<String, Object> eventData = objectMapper.readValue(response.body(), Map.class);
             
-            HttpResponse<String> response = httpClient.send(request, 
-                    HttpResponse.BodyHandlers.ofString());
-            
-            if (response.statusCode() == 200) {
-                Map<String, Object> eventData = objectMapper.readValue(response.body(), Map.class);
-                
-                EventValidationResult result = new EventValidationResult();
-                result.setValid(true);
-                result.setEventId(eventId);
-                result.setEventName((String) eventData.get("title"));
-                // Try to get basePrice or ticketPrice
-                Object priceObj = eventData.get("basePrice");
-                if (priceObj == null) {
-                    priceObj = eventData.get("ticketPrice");
-                }
-                if (priceObj != null) {
-                    result.setTicketPrice(((Number) priceObj).doubleValue());
-                }
-                // Try to get maxAttendees or capacity
-                Object capacityObj = eventData.get("maxAttendees");
-                if (capacityObj == null) {
-                    capacityObj = eventData.get("capacity");
-                }
-                if (capacityObj != null) {
-                    result.setCapacity(((Number) capacityObj).intValue());
-                }
-                result.setStatus((String) eventData.get("status"));
-                
-                return result;
-            } else {
-                EventValidationResult result = new EventValidationResult();
-                result.setValid(false);
-                result.setErrorMessage("Event not found or not available");
-                return result;
+            EventValidationResult result = new EventValidationResult();
+            result.setValid(true);
+            result.setEventId(eventId);
+            result.setEventName((String) eventData.get("title"));
+            // Try to get basePrice or ticketPrice
+            Object priceObj = eventData.get("basePrice");
+            if (priceObj == null) {
+                priceObj = eventData.get("ticketPrice");
             }
+            if (priceObj != null) {
+                result.setTicketPrice(((Number) priceObj).doubleValue());
+            }
+            // Try to get maxAttendees or capacity
+            Object capacityObj = eventData.get("maxAttendees");
+            if (capacityObj == null) {
+                capacityObj = eventData.get("capacity");
+            }
+            if (capacityObj != null) {
+                result.setCapacity(((Number) capacityObj).intValue());
+            }
+            result.setStatus((String) eventData.get("status"));
             
-        } catch (IOException | InterruptedException e) {
-            EventValidationResult result = new EventValidationResult();
-            result.setValid(false);
-            result.setErrorMessage("Failed to validate event: " + e.getMessage());
             return result;
+        } catch (IOException e) {
+            return invalidResult("Failed to validate event: " + e.getMessage());
         }
     }
     
+    private EventValidationResult invalidResult(String errorMessage) {
+        EventValidationResult result = new EventValidationResult();
+        result.setValid(false);
+        result.setErrorMessage(errorMessage);
+        return result;
+    }
+    
     /**
      * Updates event capacity after booking
      */
     public boolean updateEventCapacity(Long eventId, int bookedSeats) {
+        return updateEventCapacityAsync(eventId, bookedSeats).join();
+    }
+    
+    /**
+     * Non-blocking variant of {@link #updateEventCapacity}; completes with false on any failure.
+     */
+    public CompletableFuture<Boolean> updateEventCapacityAsync(Long eventId, int bookedSeats) {
+        return sendCapacityUpdateAsync(eventId, bookedSeats).thenApply(status -> status == 200);
+    }
+    
+    /**
+     * Sends the capacity update and completes with the HTTP status of the answer, or with 0 when
+     * no answer arrived (connection refused, timeout), so callers can tell retryable failures apart.
+     */
+    public CompletableFuture<Integer> sendCapacityUpdateAsync(Long eventId, int bookedSeats) {
         try {
             Map<String, Object> updateData = Map.of(
                 "id", eventId,
@@ -107,43 +166,116 @@ public class EventService {
             HttpRequest request = HttpRequest.newBuilder()
                     .uri(URI.create(eventServiceUrl + "/" + eventId + "/capacity"))
                     .header("Content-Type", "application/json")
+                    .timeout(REQUEST_TIMEOUT)
                     .method("PATCH", HttpRequest.BodyPublishers.ofString(requestBody))
                     .build();
             
-            HttpResponse<String> response = httpClient.send(request, 
-                    HttpResponse.BodyHandlers.ofString());
+            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                    .thenApply(HttpResponse::statusCode)
+                    .exceptionally(e -> {
+                        System.err.println("Failed to update event capacity: " + rootMessage(e));
+                        return 0;
+                    });
             
-            return response.statusCode() == 200;
-            
-        } catch (IOException | InterruptedException e) {
+        } catch (IOException e) {
             System.err.println("Failed to update event capacity: " + e.getMessage());
-            return false;
+            return CompletableFuture.completedFuture(0);
         }
     }
     
     /**
-     * Gets event details for booking confirmation
+     * Sends many capacity updates in one {@code PATCH /events/capacity} request, each under the
+     * update id it is keyed by, so the event service applies an update sent again only once.
+     * Completes with the result per update id ({@code APPLIED}, {@code NOT_FOUND} or
+     * {@code CAPACITY_EXCEEDED}), or with null when the bulk request did not succeed, e.g.
+     * against an event service that cannot be reached.
      */
-    public Map<String, Object> getEventDetails(Long eventId) {
+    public CompletableFuture<Map<String, String>> sendCapacityUpdatesAsync(Map<String, CapacityDelta> deltasByUpdateId) {
         try {
+            List<Map<String, Object>> updates = new ArrayList<>();
+            for (Map.Entry<String, CapacityDelta> entry : deltasByUpdateId.entrySet()) {
+                updates.add(Map.of("eventId", entry.getValue().eventId, "bookedSeats", entry.getValue().bookedSeats,
+                        "updateId", entry.getKey()));
+            }
+            String requestBody = objectMapper.writeValueAsString(Map.of("updates", updates));
+            
             HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(eventServiceUrl + "/" + eventId))
+                    .uri(URI.create(eventServiceUrl + "/capacity"))
                     .header("Content-Type", "application/json")
-                    .GET()
+                    .timeout(REQUEST_TIMEOUT)
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString(requestBody))
                     .build();
             
-            HttpResponse<String> response = httpClient.send(request, 
-                    HttpResponse.BodyHandlers.ofString());
+            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                    .thenApply(response -> response.statusCode() == 200 ? toCapacityResults(response.body()) : null)
+                    .exceptionally(e -> {
+                        System.err.println("Failed to update event capacity in bulk: " + rootMessage(e));
+                        return null;
+                    });
             
-            if (response.statusCode() == 200) {
-                return objectMapper.readValue(response.body(), Map.class);
+        } catch (IOException e) {
+            System.err.println("Failed to update event capacity in bulk: " + e.getMessage());
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+    
+    private Map<String, String> toCapacityResults(String body) {
+        try {
+            Map<String, Object> data = objectMapper.readValue(body, Map.class);
+            Map<String, String> results = new HashMap<>();
+            for (Object item : (List<?>) data.get("results")) {
+                Map<?, ?> result = (Map<?, ?>) item;
+                results.put((String) result.get("updateId"), (String) result.get("result"));
             }
-            
-        } catch (IOException | InterruptedException e) {
-            System.err.println("Failed to get event details: " + e.getMessage());
+            return results;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Unexpected bulk capacity response: " + e.getMessage());
+            return null;
         }
+    }
+    
+    /**
+     * Gets event details for booking confirmation
+     */
+    public Map<String, Object> getEventDetails(Long eventId) {
+        return getEventDetailsAsync(eventId).join();
+    }
+    
+    /**
+     * Non-blocking variant of {@link #getEventDetails}; completes with null on any failure.
+     */
+    public CompletableFuture<Map<String, Object>> getEventDetailsAsync(Long eventId) {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(eventServiceUrl + "/" + eventId))
+                .header("Content-Type", "application/json")
+                .timeout(REQUEST_TIMEOUT)
+                .GET()
+                .build();
         
-        return null;
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        return (Map<String, Object>) null;
+                    }
+                    try {
+                        return (Map<String, Object>) objectMapper.readValue(response.body(), Map.class);
+                    } catch (IOException e) {
+                        System.err.println("Failed to get event details: " + e.getMessage());
+                        return null;
+                    }
+                })
+                .exceptionally(e -> {
+                    System.err.println("Failed to get event details: " + rootMessage(e));
+                    return null;
+                });
+    }
+    
+    private static String rootMessage(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
     }
     
     /**
@@ -180,4 +312,17 @@ public class EventService {
         public String getErrorMessage() { return errorMessage; }
         public void setErrorMessage(String errorMessage) { this.errorMessage = errorMessage; }
     }
+    
+    /**
+     * Seats booked for an event by one capacity update
+     */
+    public static class CapacityDelta {
+        final long eventId;
+        final int bookedSeats;
+        
+        public CapacityDelta(long eventId, int bookedSeats) {
+            this.eventId = eventId;
+            this.bookedSeats = bookedSeats;
+        }
+    }
 }
@@ -0,0 +1,429 @@
+package com.eventticketing.booking.servlet;
+
+import com.eventticketing.shared.config.AppConfig;
+import com.eventticketing.shared.database.DatabaseConnection;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the outcome of {@code POST /bookings} per {@code Idempotency-Key}, so a retried
+ * request gets the original response back instead of creating a second booking.
+ * <ul>
+ *   <li>the {@code booking_idempotency_keys} table is the source of truth; its row is written in
+ *       the same transaction as the booking, so a key is recorded exactly when the booking is;</li>
+ *   <li>recent outcomes are kept in a bounded LRU map ({@code booking.idempotency.cache.size})
+ *       so most replays never reach the database;</li>
+ *   <li>concurrent requests with the same key on this node share one execution;</li>
+ *   <li>keys older than {@code booking.idempotency.ttl.ms} (24 hours) are purged by a background
+ *       thread, so a key protects against retries for at least that long.</li>
+ * </ul>
+ * Only successful creations are recorded; after a failure the client may retry with the same key.
+ * Likewise a request that joined a concurrent execution is only answered with its outcome when
+ * that created the booking; otherwise it runs on its own.
+ */
+public class IdempotencyStore {
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyStore.class);
+
+    public static final String HEADER = "Idempotency-Key";
+    static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    static final int MAX_KEY_LENGTH = 255;
+
+    private static final int MAX_SIZE = AppConfig.getInt("booking.idempotency.cache.size", 10000);
+    private static final long TTL_MILLIS = AppConfig.getLong("booking.idempotency.ttl.ms", TimeUnit.HOURS.toMillis(24));
+    private static final long PURGE_INTERVAL_MILLIS = AppConfig.getLong("booking.idempotency.purge.interval.ms", 60000);
+    private static final int PURGE_BATCH_SIZE = 1000;
+
+    private static final String CREATE_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS booking_idempotency_keys (" +
+            "idempotency_key VARCHAR(255) PRIMARY KEY, " +
+            "request_fingerprint VARCHAR(64) NOT NULL, " +
+            "response_status INTEGER, " +
+            "response_body TEXT, " +
+            "booking_id BIGINT, " +
+            "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)";
+    private static final String CREATE_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS idx_booking_idempotency_keys_created_at ON booking_idempotency_keys (created_at)";
+    private static final String CLAIM_SQL =
+            "INSERT INTO booking_idempotency_keys (idempotency_key, request_fingerprint) VALUES (?, ?) " +
+            "ON CONFLICT (idempotency_key) DO NOTHING";
+    private static final String COMPLETE_SQL =
+            "UPDATE booking_idempotency_keys SET response_status = ?, response_body = ?, booking_id = ? " +
+            "WHERE idempotency_key = ?";
+    private static final String CLAIM_ALL_SQL =
+            "INSERT INTO booking_idempotency_keys (idempotency_key, request_fingerprint) " +
+            "SELECT * FROM unnest(?::varchar[], ?::varchar[]) " +
+            "ON CONFLICT (idempotency_key) DO NOTHING RETURNING idempotency_key";
+    private static final String COMPLETE_ALL_SQL =
+            "UPDATE booking_idempotency_keys k SET response_status = ?, response_body = t.body, booking_id = t.booking_id " +
+            "FROM unnest(?::varchar[], ?::text[], ?::bigint[]) AS t(idempotency_key, body, booking_id) " +
+            "WHERE k.idempotency_key = t.idempotency_key";
+    private static final String FIND_SQL =
+            "SELECT request_fingerprint, response_status, response_body, created_at FROM booking_idempotency_keys " +
+            "WHERE idempotency_key = ? AND response_status IS NOT NULL";
+    private static final String PURGE_SQL =
+            "DELETE FROM booking_idempotency_keys WHERE idempotency_key IN (" +
+            "SELECT idempotency_key FROM booking_idempotency_keys " +
+            "WHERE created_at < CURRENT_TIMESTAMP - ? * INTERVAL '1 millisecond' LIMIT " + PURGE_BATCH_SIZE + ")";
+
+    private static final IdempotencyStore INSTANCE = new IdempotencyStore();
+
+    private final LinkedHashMap<String, StoredResponse> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ConcurrentHashMap<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+    private final Thread purger;
+    private volatile boolean running = true;
+    private volatile boolean tableReady;
+    // Concurrent CREATE TABLE IF NOT EXISTS can fail on the catalog's unique index
+    private final ReentrantLock tableLock = new ReentrantLock();
+
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder replays = new LongAdder();
+    private final LongAdder mismatches = new LongAdder();
+    private final LongAdder purged = new LongAdder();
+
+    private IdempotencyStore() {
+        purger = new Thread(this::purgeLoop, "idempotency-purge");
+        purger.setDaemon(true);
+        purger.start();
+    }
+
+    public static IdempotencyStore getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Stops the purge thread.
+     */
+    public static void shutdown() {
+        INSTANCE.running = false;
+        INSTANCE.purger.interrupt();
+    }
+
+    /**
+     * Hex SHA-256 of the request body, used to reject a key reused for a different request.
+     */
+    static String fingerprint(byte[] requestBody) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(requestBody));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Returns the recorded response for {@code key}, joins an execution already running on this
+     * node, or runs {@code action}. The action must call {@link #claim} and {@link #complete}
+     * inside its transaction. A key reused with a different fingerprint gets 422.
+     */
+    public CompletableFuture<Response> execute(String key, String fingerprint,
+                                               Supplier<CompletableFuture<Response>> action) {
+        StoredResponse cached = getCached(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(replay(cached, fingerprint));
+        }
+
+        CompletableFuture<StoredResponse> mine = new CompletableFuture<>();
+        CompletableFuture<StoredResponse> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            // Only a created booking is replayed; after a rejection or an error this request runs itself
+            return running.handle((stored, e) -> e == null && stored.status == Response.Status.CREATED.getStatusCode()
+                            ? CompletableFuture.completedFuture(replay(stored, fingerprint))
+                            : execute(key, fingerprint, action))
+                    .thenCompose(response -> response);
+        }
+
+        CompletableFuture<Response> result = CompletableFuture
+                .supplyAsync(() -> find(key), BookingExecutors.database())
+                .thenCompose(stored -> {
+                    if (stored != null) {
+                        return CompletableFuture.completedFuture(replay(stored, fingerprint));
+                    }
+                    executions.increment();
+                    return action.get();
+                });
+        result.whenComplete((response, e) -> {
+            inFlight.remove(key, mine);
+            if (e != null) {
+                mine.completeExceptionally(e);
+            } else {
+                mine.complete(StoredResponse.of(fingerprint, response));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Records the key in the current transaction. Returns false when the key already exists,
+     * i.e. another node created (or is creating) the booking; the caller should roll back and
+     * answer with {@link #find} once that transaction has committed.
+     */
+    boolean claim(Connection conn, String key, String fingerprint) throws SQLException {
+        ensureTable();
+        try (PreparedStatement stmt = conn.prepareStatement(CLAIM_SQL)) {
+            stmt.setString(1, key);
+            stmt.setString(2, fingerprint);
+            return stmt.executeUpdate() == 1;
+        }
+    }
+
+    /**
+     * Stores the response for a key claimed in the same transaction.
+     */
+    void complete(Connection conn, String key, int status, String body, Long bookingId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(COMPLETE_SQL)) {
+            stmt.setInt(1, status);
+            stmt.setString(2, body);
+            stmt.setObject(3, bookingId);
+            stmt.setString(4, key);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * {@link #claim} for many keys with one statement; returns the keys that were claimed.
+     */
+    Set<String> claimAll(Connection conn, List<Claim> claims) throws SQLException {
+        ensureTable();
+        String[] keys = new String[claims.size()];
+        String[] fingerprints = new String[claims.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = claims.get(i).key;
+            fingerprints[i] = claims.get(i).fingerprint;
+        }
+        Set<String> claimed = new HashSet<>();
+        try (PreparedStatement stmt = conn.prepareStatement(CLAIM_ALL_SQL)) {
+            stmt.setArray(1, conn.createArrayOf("varchar", keys));
+            stmt.setArray(2, conn.createArrayOf("varchar", fingerprints));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    claimed.add(rs.getString(1));
+                }
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * {@link #complete} for many created bookings with one statement.
+     */
+    void completeAll(Connection conn, List<String> keys, List<String> bodies, List<Long> bookingIds) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(COMPLETE_ALL_SQL)) {
+            stmt.setInt(1, Response.Status.CREATED.getStatusCode());
+            stmt.setArray(2, conn.createArrayOf("varchar", keys.toArray()));
+            stmt.setArray(3, conn.createArrayOf("text", bodies.toArray()));
+            stmt.setArray(4, conn.createArrayOf("bigint", bookingIds.toArray()));
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Makes a response recorded by a committed transaction visible to later replays.
+     */
+    void remember(String key, String fingerprint, int status, String body) {
+        putCached(key, new StoredResponse(fingerprint, status, body, System.currentTimeMillis()));
+    }
+
+    /**
+     * Looks the key up in memory and then in the table; null when no response is recorded.
+     */
+    StoredResponse find(String key) {
+        StoredResponse cached = getCached(key);
+        if (cached != null) {
+            return cached;
+        }
+        try {
+            ensureTable();
+        } catch (SQLException e) {
+            throw new CompletionException(e);
+        }
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            try (PreparedStatement stmt = conn.prepareStatement(FIND_SQL)) {
+                stmt.setString(1, key);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (!rs.next()) {
+                        return null;
+                    }
+                    StoredResponse stored = new StoredResponse(rs.getString("request_fingerprint"),
+                            rs.getInt("response_status"), rs.getString("response_body"),
+                            rs.getTimestamp("created_at").getTime());
+                    putCached(key, stored);
+                    return stored;
+                }
+            }
+        } catch (SQLException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    Response replay(StoredResponse stored, String fingerprint) {
+        if (!stored.fingerprint.equals(fingerprint)) {
+            mismatches.increment();
+            return Response.status(422)
+                    .entity("{\"error\": \"Idempotency-Key was already used for a different request\"}")
+                    .type(MediaType.APPLICATION_JSON)
+                    .build();
+        }
+        replays.increment();
+        return Response.status(stored.status)
+                .entity(stored.body)
+                .type(MediaType.APPLICATION_JSON)
+                .header(REPLAYED_HEADER, "true")
+                .build();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            stats.put("size", entries.size());
+        } finally {
+            lock.unlock();
+        }
+        stats.put("maxSize", MAX_SIZE);
+        stats.put("inFlight", inFlight.size());
+        stats.put("executions", executions.sum());
+        stats.put("replays", replays.sum());
+        stats.put("fingerprintMismatches", mismatches.sum());
+        stats.put("ttlMillis", TTL_MILLIS);
+        stats.put("purgedKeys", purged.sum());
+        return stats;
+    }
+
+    StoredResponse getCached(String key) {
+        lock.lock();
+        try {
+            StoredResponse stored = entries.get(key);
+            if (stored != null && System.currentTimeMillis() - stored.createdAt > TTL_MILLIS) {
+                // Expired like its row; the purge may not have reached it yet
+                entries.remove(key);
+                return null;
+            }
+            return stored;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void putCached(String key, StoredResponse stored) {
+        lock.lock();
+        try {
+            entries.put(key, stored);
+            if (entries.size() > MAX_SIZE) {
+                entries.remove(entries.keySet().iterator().next());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void ensureTable() throws SQLException {
+        if (tableReady) {
+            return;
+        }
+        tableLock.lock();
+        // Own connection: DDL inside the caller's booking transaction would hold its locks too long
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+            if (!tableReady) {
+                stmt.execute(CREATE_TABLE_SQL);
+                stmt.execute(CREATE_INDEX_SQL);
+                tableReady = true;
+            }
+        } catch (SQLException e) {
+            logger.warn("Could not create booking_idempotency_keys: {}", e.getMessage());
+            throw e;
+        } finally {
+            tableLock.unlock();
+        }
+    }
+
+    private void purgeLoop() {
+        while (running) {
+            try {
+                Thread.sleep(PURGE_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            try {
+                purgeExpired();
+            } catch (SQLException e) {
+                logger.warn("Could not purge expired idempotency keys: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Deletes keys older than the TTL, one short transaction per batch.
+     */
+    private void purgeExpired() throws SQLException {
+        ensureTable();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(PURGE_SQL)) {
+            conn.setAutoCommit(true);
+            stmt.setLong(1, TTL_MILLIS);
+            int deleted;
+            while (running && (deleted = stmt.executeUpdate()) > 0) {
+                purged.add(deleted);
+            }
+        }
+    }
+
+    /**
+     * Idempotency key of a booking request and the fingerprint of its body.
+     */
+    static class Claim {
+        final String key;
+        final String fingerprint;
+
+        Claim(String key, String fingerprint) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    /**
+     * A recorded outcome: the fingerprint of the request that produced it and the response.
+     */
+    static class StoredResponse {
+        final String fingerprint;
+        final int status;
+        final String body;
+        final long createdAt;
+
+        StoredResponse(String fingerprint, int status, String body, long createdAt) {
+            this.fingerprint = fingerprint;
+            this.status = status;
+            this.body = body;
+            this.createdAt = createdAt;
+        }
+
+        static StoredResponse of(String fingerprint, Response response) {
+            Object entity = response.getEntity();
+            return new StoredResponse(fingerprint, response.getStatus(), entity != null ? entity.toString() : null,
+                    System.currentTimeMillis());
+        }
+    }
+}
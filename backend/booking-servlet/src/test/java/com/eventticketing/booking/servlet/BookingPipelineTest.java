@@ -0,0 +1,194 @@
+package com.eventticketing.booking.servlet;
+
+import com.eventticketing.booking.servlet.BookingResource.BookingItemRequest;
+import com.eventticketing.booking.servlet.BookingResource.BookingRequest;
+import com.eventticketing.booking.servlet.BookingResource.BookingResponse;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BookingPipelineTest {
+    private static final long UNKNOWN_USER_ID = 999;
+    // Bookings of this amount pass every statement but fail the deferred check at COMMIT
+    private static final String FAILS_AT_COMMIT = "666.00";
+
+    private static BookingPipeline pipeline;
+
+    @BeforeAll
+    static void startBackend() throws Exception {
+        TestBackend.start();
+        pipeline = BookingPipeline.getInstance();
+    }
+
+    @Test
+    void groupIsWrittenInOneCommit() throws Exception {
+        long groupCommits = stat("groupCommits");
+        List<BookingRequest> group = List.of(request(TestBackend.USER_ID), requestWithItem(2), request(TestBackend.USER_ID));
+
+        List<CompletableFuture<BookingResponse>> futures = submitAsOneGroup(group, false);
+
+        for (int i = 0; i < group.size(); i++) {
+            BookingResponse response = futures.get(i).get(10, TimeUnit.SECONDS);
+            assertEquals(group.get(i).getBookingReference(), response.getBookingReference());
+            assertEquals(1, countBookings(group.get(i)));
+        }
+        assertEquals(groupCommits + 1, stat("groupCommits"));
+        assertEquals(2, TestBackend.queryLong(
+                "SELECT quantity FROM booking_items i JOIN bookings b ON b.id = i.booking_id WHERE b.booking_reference = ?",
+                group.get(1).getBookingReference()));
+    }
+
+    @Test
+    void failingRequestIsRetriedAloneAndOnlyItFails() throws Exception {
+        long fallbacks = stat("groupFallbacks");
+        long uncertain = stat("uncertainGroupCommits");
+        List<BookingRequest> group = List.of(request(TestBackend.USER_ID), request(UNKNOWN_USER_ID), request(TestBackend.USER_ID));
+
+        List<CompletableFuture<BookingResponse>> futures = submitAsOneGroup(group, true);
+
+        assertNotNull(futures.get(0).get(10, TimeUnit.SECONDS));
+        assertThrows(ExecutionException.class, () -> futures.get(1).get(10, TimeUnit.SECONDS));
+        assertNotNull(futures.get(2).get(10, TimeUnit.SECONDS));
+        assertEquals(fallbacks + 1, stat("groupFallbacks"));
+        assertEquals(uncertain, stat("uncertainGroupCommits"));
+        assertEquals(1, countBookings(group.get(0)));
+        assertEquals(0, countBookings(group.get(1)));
+        assertEquals(1, countBookings(group.get(2)));
+    }
+
+    @Test
+    void failureAfterTheCommitWasSentFailsTheWholeGroupWithoutRetrying() throws Exception {
+        long fallbacks = stat("groupFallbacks");
+        long uncertain = stat("uncertainGroupCommits");
+        List<BookingRequest> group = List.of(request(TestBackend.USER_ID), request(TestBackend.USER_ID), request(TestBackend.USER_ID));
+        group.get(1).setTotalAmount(new BigDecimal(FAILS_AT_COMMIT));
+
+        TestBackend.execute("CREATE OR REPLACE FUNCTION reject_booking() RETURNS trigger AS " +
+                "$$ BEGIN RAISE EXCEPTION 'booking rejected at commit'; END $$ LANGUAGE plpgsql");
+        TestBackend.execute("CREATE CONSTRAINT TRIGGER reject_at_commit AFTER INSERT ON bookings " +
+                "DEFERRABLE INITIALLY DEFERRED FOR EACH ROW WHEN (NEW.total_amount = " + FAILS_AT_COMMIT + ") " +
+                "EXECUTE FUNCTION reject_booking()");
+        List<CompletableFuture<BookingResponse>> futures;
+        try {
+            futures = submitAsOneGroup(group, true);
+            for (CompletableFuture<BookingResponse> future : futures) {
+                assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            TestBackend.execute("DROP TRIGGER reject_at_commit ON bookings");
+        }
+
+        assertEquals(uncertain + 1, stat("uncertainGroupCommits"));
+        assertEquals(fallbacks, stat("groupFallbacks"));
+        for (BookingRequest request : group) {
+            assertEquals(0, countBookings(request));
+        }
+    }
+
+    @Test
+    void requestWhoseKeyWasAlreadyUsedWritesNothing() throws Exception {
+        IdempotencyStore.Claim claim = claim();
+        BookingRequest first = request(TestBackend.USER_ID);
+        assertNotNull(pipeline.submit(first, claim).get(10, TimeUnit.SECONDS));
+        List<BookingRequest> group = List.of(request(TestBackend.USER_ID), request(TestBackend.USER_ID));
+
+        List<CompletableFuture<BookingResponse>> futures = new ArrayList<>();
+        submitAsOneGroup(group, futures, List.of(claim, claim()));
+
+        assertNull(futures.get(0).get(10, TimeUnit.SECONDS));
+        assertNotNull(futures.get(1).get(10, TimeUnit.SECONDS));
+        assertEquals(1, countBookings(first));
+        assertEquals(0, countBookings(group.get(0)));
+        assertEquals(1, countBookings(group.get(1)));
+    }
+
+    private static List<CompletableFuture<BookingResponse>> submitAsOneGroup(List<BookingRequest> group,
+                                                                             boolean withKeys) throws Exception {
+        List<IdempotencyStore.Claim> claims = new ArrayList<>();
+        for (int i = 0; i < group.size(); i++) {
+            claims.add(withKeys ? claim() : null);
+        }
+        List<CompletableFuture<BookingResponse>> futures = new ArrayList<>();
+        submitAsOneGroup(group, futures, claims);
+        return futures;
+    }
+
+    /**
+     * Keeps the writer blocked on a booking of its own while the group is queued, so that it
+     * takes the whole group at once when the block is lifted.
+     */
+    private static void submitAsOneGroup(List<BookingRequest> group, List<CompletableFuture<BookingResponse>> futures,
+                                         List<IdempotencyStore.Claim> claims) throws Exception {
+        CompletableFuture<BookingResponse> blocker;
+        try (Connection conn = TestBackend.connect()) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("LOCK TABLE bookings IN EXCLUSIVE MODE");
+            }
+            blocker = pipeline.submit(request(TestBackend.USER_ID), null);
+            TestBackend.await("the writer waits for the bookings table", BookingPipelineTest::writerIsBlocked);
+            for (int i = 0; i < group.size(); i++) {
+                futures.add(pipeline.submit(group.get(i), claims.get(i)));
+            }
+            conn.commit();
+        }
+        assertNotNull(blocker.get(10, TimeUnit.SECONDS));
+    }
+
+    private static boolean writerIsBlocked() {
+        try {
+            return TestBackend.queryLong(
+                    "SELECT count(*) FROM pg_locks WHERE relation = 'bookings'::regclass AND NOT granted") > 0;
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long countBookings(BookingRequest request) throws SQLException {
+        return TestBackend.queryLong("SELECT count(*) FROM bookings WHERE booking_reference = ?",
+                request.getBookingReference());
+    }
+
+    private static long stat(String name) {
+        return ((Number) pipeline.getStats().get(name)).longValue();
+    }
+
+    private static IdempotencyStore.Claim claim() {
+        return new IdempotencyStore.Claim(UUID.randomUUID().toString(), "fingerprint");
+    }
+
+    private static BookingRequest request(long userId) {
+        BookingRequest request = new BookingRequest();
+        request.setUserId(userId);
+        request.setEventId(TestBackend.EVENT_ID);
+        request.setBookingReference("BK-" + UUID.randomUUID());
+        request.setTotalAmount(new BigDecimal("25.00"));
+        request.setPaymentMethod("CARD");
+        return request;
+    }
+
+    private static BookingRequest requestWithItem(int quantity) {
+        BookingRequest request = request(TestBackend.USER_ID);
+        BookingItemRequest item = new BookingItemRequest();
+        item.setQuantity(quantity);
+        item.setUnitPrice(new BigDecimal("12.50"));
+        item.setTotalPrice(new BigDecimal("25.00"));
+        request.setItems(List.of(item));
+        return request;
+    }
+}
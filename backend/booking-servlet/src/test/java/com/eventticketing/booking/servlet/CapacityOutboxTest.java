@@ -0,0 +1,181 @@
+package com.eventticketing.booking.servlet;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CapacityOutboxTest {
+    private static final long APPLIED_EVENT = 501;
+    private static final long FULL_EVENT = 502;
+    private static final long UNKNOWN_EVENT = 503;
+    private static final long UNREACHABLE_EVENT = 504;
+
+    private static CapacityOutbox outbox;
+
+    @BeforeAll
+    static void startBackend() throws Exception {
+        TestBackend.start();
+        outbox = CapacityOutbox.getInstance();
+        TestBackend.await("the relay creates capacity_outbox", CapacityOutboxTest::tableExists);
+    }
+
+    @AfterEach
+    void answerEverythingAgain() {
+        TestBackend.answerCapacityUpdates(update -> "APPLIED");
+        TestBackend.answerCapacityRequestsWith(200);
+    }
+
+    @Test
+    void appliedRowsAreDeletedAndRejectedRowsParked() throws Exception {
+        TestBackend.answerCapacityUpdates(update -> {
+            long eventId = ((Number) update.get("eventId")).longValue();
+            return eventId == FULL_EVENT ? "CAPACITY_EXCEEDED" : eventId == UNKNOWN_EVENT ? "NOT_FOUND" : "APPLIED";
+        });
+        Map<Long, Integer> seatsByEvent = new LinkedHashMap<>();
+        seatsByEvent.put(APPLIED_EVENT, 2);
+        seatsByEvent.put(FULL_EVENT, 3);
+        seatsByEvent.put(UNKNOWN_EVENT, 1);
+
+        List<Long> rowIds = append(seatsByEvent);
+        TestBackend.await("every row is settled", () -> pendingRows(rowIds) == 0);
+
+        assertNull(lastError(rowIds.get(0)), "applied row is deleted");
+        assertEquals("Capacity update for event " + FULL_EVENT + " rejected with HTTP 409", lastError(rowIds.get(1)));
+        assertEquals("Capacity update for event " + UNKNOWN_EVENT + " rejected with HTTP 404", lastError(rowIds.get(2)));
+        assertEquals(List.of(rowIds.get(1), rowIds.get(2)), parkedRows(rowIds));
+    }
+
+    @Test
+    void rowsAreSentInIdOrderEachUnderItsOwnUpdateId() throws Exception {
+        Map<Long, Integer> seatsByEvent = new LinkedHashMap<>();
+        seatsByEvent.put(APPLIED_EVENT, 1);
+        seatsByEvent.put(FULL_EVENT, 1);
+        List<Long> first = append(seatsByEvent);
+        List<Long> second = append(Map.of(APPLIED_EVENT, 4));
+
+        TestBackend.await("every row is applied", () -> rowCount(first) + rowCount(second) == 0);
+
+        List<String> expected = new ArrayList<>();
+        for (Long id : first) {
+            expected.add("capacity_outbox:" + id);
+        }
+        expected.add("capacity_outbox:" + second.get(0));
+        List<String> sent = new ArrayList<>();
+        for (List<String> request : TestBackend.capacityRequests()) {
+            for (String updateId : request) {
+                if (expected.contains(updateId)) {
+                    sent.add(updateId);
+                }
+            }
+        }
+        assertEquals(expected, sent);
+    }
+
+    @Test
+    void rowsStayQueuedWhileTheEventServiceCannotBeReached() throws Exception {
+        TestBackend.answerCapacityRequestsWith(503);
+        long unreachable = (Long) outbox.getStats().get("unreachable");
+
+        List<Long> rowIds = append(Map.of(UNREACHABLE_EVENT, 2));
+        TestBackend.await("the relay gives up on a request",
+                () -> (Long) outbox.getStats().get("unreachable") > unreachable);
+
+        assertEquals(1, pendingRows(rowIds));
+        assertTrue(parkedRows(rowIds).isEmpty());
+
+        TestBackend.answerCapacityRequestsWith(200);
+        TestBackend.await("the row is applied once the event service answers", () -> rowCount(rowIds) == 0);
+        assertFalse(TestBackend.capacityRequests().isEmpty());
+    }
+
+    /**
+     * Appends in a transaction of its own and returns the ids of the new rows in insertion
+     * order, read before the commit lets the relay at them.
+     */
+    private static List<Long> append(Map<Long, Integer> seatsByEvent) throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        try (Connection conn = TestBackend.connect()) {
+            conn.setAutoCommit(false);
+            outbox.append(conn, seatsByEvent);
+            // Rows written by this transaction
+            try (PreparedStatement stmt = conn.prepareStatement(
+                    "SELECT id FROM capacity_outbox WHERE xmin::text = txid_current()::text ORDER BY id");
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getLong(1));
+                }
+            }
+            conn.commit();
+        }
+        assertEquals(seatsByEvent.size(), ids.size());
+        return ids;
+    }
+
+    private static boolean tableExists() {
+        try {
+            return TestBackend.queryLong("SELECT count(*) FROM pg_tables WHERE tablename = 'capacity_outbox'") == 1;
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long pendingRows(List<Long> ids) {
+        return count("SELECT count(*) FROM capacity_outbox WHERE id = ANY(?) AND failed_at IS NULL", ids);
+    }
+
+    private static long rowCount(List<Long> ids) {
+        return count("SELECT count(*) FROM capacity_outbox WHERE id = ANY(?)", ids);
+    }
+
+    private static long count(String sql, List<Long> ids) {
+        try (Connection conn = TestBackend.connect(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setArray(1, conn.createArrayOf("bigint", ids.toArray()));
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static List<Long> parkedRows(List<Long> ids) throws SQLException {
+        List<Long> parked = new ArrayList<>();
+        try (Connection conn = TestBackend.connect();
+             PreparedStatement stmt = conn.prepareStatement(
+                     "SELECT id FROM capacity_outbox WHERE id = ANY(?) AND failed_at IS NOT NULL " +
+                     "AND claimed_until IS NULL ORDER BY id")) {
+            stmt.setArray(1, conn.createArrayOf("bigint", ids.toArray()));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    parked.add(rs.getLong(1));
+                }
+            }
+        }
+        return parked;
+    }
+
+    private static String lastError(long id) throws SQLException {
+        try (Connection conn = TestBackend.connect();
+             PreparedStatement stmt = conn.prepareStatement("SELECT last_error FROM capacity_outbox WHERE id = ?")) {
+            stmt.setLong(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+}
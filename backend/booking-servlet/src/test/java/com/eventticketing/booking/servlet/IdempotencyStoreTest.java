@@ -0,0 +1,110 @@
+package com.eventticketing.booking.servlet;
+
+import jakarta.ws.rs.core.Response;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Covers the paths answered from memory; the table behind {@code find} is not available here.
+ */
+class IdempotencyStoreTest {
+    private static final String BODY = "{\"id\": 7, \"bookingReference\": \"BK-7\"}";
+
+    private final IdempotencyStore store = IdempotencyStore.getInstance();
+
+    @Test
+    void fingerprintDependsOnTheRequestBody() {
+        String fingerprint = fingerprint("{\"eventId\": 1}");
+
+        assertEquals(64, fingerprint.length());
+        assertEquals(fingerprint, fingerprint("{\"eventId\": 1}"));
+        assertNotEquals(fingerprint, fingerprint("{\"eventId\": 2}"));
+    }
+
+    @Test
+    void rememberedResponseIsReplayedWithoutRunningTheAction() {
+        String key = newKey();
+        String fingerprint = fingerprint("{\"eventId\": 1}");
+        store.remember(key, fingerprint, 201, BODY);
+
+        Response response = store.execute(key, fingerprint, IdempotencyStoreTest::mustNotRun).join();
+
+        assertEquals(201, response.getStatus());
+        assertEquals(BODY, response.getEntity());
+        assertEquals("true", response.getHeaderString(IdempotencyStore.REPLAYED_HEADER));
+    }
+
+    @Test
+    void keyReusedForADifferentRequestGets422() {
+        String key = newKey();
+        store.remember(key, fingerprint("{\"eventId\": 1}"), 201, BODY);
+
+        Response response = store.execute(key, fingerprint("{\"eventId\": 2}"), IdempotencyStoreTest::mustNotRun).join();
+
+        assertEquals(422, response.getStatus());
+        assertNull(response.getHeaderString(IdempotencyStore.REPLAYED_HEADER));
+    }
+
+    @Test
+    void replayCountsReplaysAndMismatches() {
+        IdempotencyStore.StoredResponse stored =
+                new IdempotencyStore.StoredResponse("a", 201, BODY, System.currentTimeMillis());
+        long replays = (Long) store.getStats().get("replays");
+        long mismatches = (Long) store.getStats().get("fingerprintMismatches");
+
+        assertEquals(201, store.replay(stored, "a").getStatus());
+        assertEquals(422, store.replay(stored, "b").getStatus());
+
+        assertEquals(replays + 1, (Long) store.getStats().get("replays"));
+        assertEquals(mismatches + 1, (Long) store.getStats().get("fingerprintMismatches"));
+    }
+
+    @Test
+    void cachedResponsesExpireAfterTheTtl() {
+        long ttl = (Long) store.getStats().get("ttlMillis");
+        String fresh = newKey();
+        String expired = newKey();
+        IdempotencyStore.StoredResponse recent =
+                new IdempotencyStore.StoredResponse("a", 201, BODY, System.currentTimeMillis() - ttl + TimeUnit.MINUTES.toMillis(1));
+        store.putCached(fresh, recent);
+        store.putCached(expired, new IdempotencyStore.StoredResponse("a", 201, BODY, System.currentTimeMillis() - ttl - 1));
+
+        assertSame(recent, store.getCached(fresh));
+        assertNull(store.getCached(expired));
+        // Dropped for good, not only hidden
+        assertNull(store.getCached(expired));
+    }
+
+    @Test
+    void storedResponseKeepsTheOutcomeOfAnExecution() {
+        Response created = Response.status(Response.Status.CREATED).entity(BODY).build();
+
+        IdempotencyStore.StoredResponse stored = IdempotencyStore.StoredResponse.of("a", created);
+
+        assertEquals("a", stored.fingerprint);
+        assertEquals(201, stored.status);
+        assertEquals(BODY, stored.body);
+    }
+
+    private static String newKey() {
+        return UUID.randomUUID().toString();
+    }
+
+    private static String fingerprint(String body) {
+        return IdempotencyStore.fingerprint(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static CompletableFuture<Response> mustNotRun() {
+        return fail("a recorded response must be replayed, not executed again");
+    }
+}
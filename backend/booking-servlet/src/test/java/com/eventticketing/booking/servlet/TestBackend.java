@@ -0,0 +1,164 @@
+package com.eventticketing.booking.servlet;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * What the writer and relay tests run against: an embedded PostgreSQL with the booking tables
+ * and a stand-in for the event service's {@code PATCH /events/capacity}. Started once per JVM,
+ * before {@code DatabaseConnection}, {@link BookingPipeline} and {@link CapacityOutbox} read
+ * their settings, so every test class shares one writer thread and one relay.
+ */
+final class TestBackend {
+    static final long USER_ID = 1;
+    static final long EVENT_ID = 1;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final List<List<String>> capacityRequests = new CopyOnWriteArrayList<>();
+    private static volatile Function<Map<?, ?>, String> capacityResults = update -> "APPLIED";
+    private static volatile int capacityStatus = 200;
+    private static String url;
+
+    private TestBackend() {}
+
+    static synchronized void start() throws IOException, SQLException {
+        if (url != null) {
+            return;
+        }
+        EmbeddedPostgres postgres = EmbeddedPostgres.builder().start();
+        HttpServer eventService = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        eventService.createContext("/events/capacity", TestBackend::answerCapacity);
+        eventService.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            eventService.stop(0);
+            try {
+                postgres.close();
+            } catch (IOException e) {
+                // The JVM is exiting anyway
+            }
+        }));
+
+        url = postgres.getJdbcUrl("postgres", "postgres");
+        try (Connection conn = connect(); Statement stmt = conn.createStatement()) {
+            stmt.execute(readResource("/schema.sql"));
+        }
+
+        System.setProperty("database.url", url);
+        System.setProperty("database.username", "postgres");
+        System.setProperty("database.password", "postgres");
+        System.setProperty("database.pool.size", "4");
+        System.setProperty("database.pool.min.idle", "1");
+        System.setProperty("event.service.url", "http://localhost:" + eventService.getAddress().getPort() + "/events");
+        // One writer, so requests queued behind a blocked commit form the next group
+        System.setProperty("booking.pipeline.writers", "1");
+        System.setProperty("booking.outbox.relay.interval.ms", "50");
+        System.setProperty("booking.outbox.relay.max.backoff.ms", "200");
+    }
+
+    static Connection connect() throws SQLException {
+        return DriverManager.getConnection(url, "postgres", "postgres");
+    }
+
+    static void execute(String sql) throws SQLException {
+        try (Connection conn = connect(); Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    static long queryLong(String sql, Object... params) throws SQLException {
+        try (Connection conn = connect(); PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                stmt.setObject(i + 1, params[i]);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    /**
+     * Sets the result the event service answers per update; it gets the update as sent
+     * ({@code eventId}, {@code bookedSeats}, {@code updateId}).
+     */
+    static void answerCapacityUpdates(Function<Map<?, ?>, String> results) {
+        capacityResults = results;
+    }
+
+    /**
+     * Answers every capacity request with this HTTP status; anything but 200 fails the whole request.
+     */
+    static void answerCapacityRequestsWith(int status) {
+        capacityStatus = status;
+    }
+
+    /**
+     * The update ids of every capacity request received, in the order they were sent.
+     */
+    static List<List<String>> capacityRequests() {
+        return capacityRequests;
+    }
+
+    static void await(String description, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timed out waiting until " + description);
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    private static void answerCapacity(HttpExchange exchange) throws IOException {
+        byte[] answer;
+        int status = capacityStatus;
+        if (status == 200) {
+            Map<?, ?> request = objectMapper.readValue(exchange.getRequestBody(), Map.class);
+            List<String> updateIds = new ArrayList<>();
+            List<Map<String, Object>> results = new ArrayList<>();
+            for (Object item : (List<?>) request.get("updates")) {
+                Map<?, ?> update = (Map<?, ?>) item;
+                updateIds.add((String) update.get("updateId"));
+                results.add(Map.of("updateId", update.get("updateId"), "eventId", update.get("eventId"),
+                        "bookedSeats", update.get("bookedSeats"), "result", capacityResults.apply(update)));
+            }
+            capacityRequests.add(updateIds);
+            answer = objectMapper.writeValueAsBytes(Map.of("results", results));
+        } else {
+            answer = "{\"error\": \"Unavailable\"}".getBytes(StandardCharsets.UTF_8);
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, answer.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(answer);
+        }
+    }
+
+    private static String readResource(String name) throws IOException {
+        try (InputStream in = TestBackend.class.getResourceAsStream(name)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+-- The tables the booking writer touches, as in load-test's schema.sql
+
+CREATE TABLE IF NOT EXISTS users (
+    id BIGSERIAL PRIMARY KEY,
+    username VARCHAR(50) NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS events (
+    id BIGSERIAL PRIMARY KEY,
+    title VARCHAR(255) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS bookings (
+    id BIGSERIAL PRIMARY KEY,
+    user_id BIGINT NOT NULL REFERENCES users (id),
+    event_id BIGINT NOT NULL REFERENCES events (id),
+    booking_reference VARCHAR(50) NOT NULL UNIQUE,
+    total_amount DECIMAL(10, 2),
+    status VARCHAR(20) DEFAULT 'PENDING',
+    booking_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS booking_items (
+    id BIGSERIAL PRIMARY KEY,
+    booking_id BIGINT NOT NULL REFERENCES bookings (id) ON DELETE CASCADE,
+    ticket_type_id BIGINT,
+    seat_id BIGINT,
+    quantity INTEGER NOT NULL DEFAULT 1,
+    unit_price DECIMAL(10, 2),
+    total_price DECIMAL(10, 2),
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS payments (
+    id BIGSERIAL PRIMARY KEY,
+    booking_id BIGINT NOT NULL REFERENCES bookings (id) ON DELETE CASCADE,
+    amount DECIMAL(10, 2),
+    payment_method VARCHAR(50),
+    payment_status VARCHAR(20) DEFAULT 'PENDING',
+    payment_date TIMESTAMP,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+INSERT INTO users (id, username) VALUES (1, 'writer-test') ON CONFLICT DO NOTHING;
+INSERT INTO events (id, title) VALUES (1, 'Writer test event') ON CONFLICT DO NOTHING;
@@ -0,0 +1,140 @@
+package com.eventticketing.event.service;
+
+import com.eventticketing.shared.config.AppConfig;
+import com.eventticketing.shared.database.DatabaseConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The {@code updateId}s of capacity deltas already applied, kept in {@code capacity_update_ids}
+ * and written in the same transaction as {@code events.booked_seats}, so a delta delivered again
+ * (a retried relay batch) is recognized and skipped.
+ * Ids are kept for {@code capacity.update.ids.ttl.ms} (7 days), far longer than a producer
+ * retries; older ones are purged in batches, at most every {@code capacity.update.ids.purge.interval.ms}.
+ */
+public final class AppliedCapacityUpdates {
+    private static final Logger logger = LoggerFactory.getLogger(AppliedCapacityUpdates.class);
+
+    private static final long TTL_MILLIS = AppConfig.getLong("capacity.update.ids.ttl.ms", TimeUnit.DAYS.toMillis(7));
+    private static final long PURGE_INTERVAL_MILLIS = AppConfig.getLong("capacity.update.ids.purge.interval.ms", 60000);
+    private static final int PURGE_BATCH_SIZE = 1000;
+
+    private static final String CREATE_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS capacity_update_ids (" +
+            "update_id VARCHAR(255) PRIMARY KEY, " +
+            "applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)";
+    private static final String CREATE_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS idx_capacity_update_ids_applied_at ON capacity_update_ids (applied_at)";
+    private static final String RECORD_SQL =
+            "INSERT INTO capacity_update_ids (update_id) SELECT DISTINCT unnest(?::varchar[]) " +
+            "ON CONFLICT (update_id) DO NOTHING RETURNING update_id";
+    private static final String FORGET_SQL = "DELETE FROM capacity_update_ids WHERE update_id = ANY(?)";
+    private static final String PURGE_SQL =
+            "DELETE FROM capacity_update_ids WHERE update_id IN (" +
+            "SELECT update_id FROM capacity_update_ids " +
+            "WHERE applied_at < CURRENT_TIMESTAMP - ? * INTERVAL '1 millisecond' LIMIT " + PURGE_BATCH_SIZE + ")";
+
+    private static volatile boolean tableReady;
+    // Concurrent CREATE TABLE IF NOT EXISTS can fail on the catalog's unique index
+    private static final ReentrantLock tableLock = new ReentrantLock();
+    private static final AtomicLong lastPurge = new AtomicLong(System.currentTimeMillis());
+
+    private AppliedCapacityUpdates() {}
+
+    /**
+     * Records the ids in the caller's transaction and returns those not applied before. A
+     * concurrent transaction recording the same id makes this one wait for its outcome.
+     */
+    static Set<String> record(Connection conn, Collection<String> updateIds) throws SQLException {
+        Set<String> recorded = new HashSet<>();
+        if (updateIds.isEmpty()) {
+            return recorded;
+        }
+        ensureTable();
+        try (PreparedStatement stmt = conn.prepareStatement(RECORD_SQL)) {
+            stmt.setArray(1, conn.createArrayOf("varchar", updateIds.toArray()));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    recorded.add(rs.getString(1));
+                }
+            }
+        }
+        return recorded;
+    }
+
+    /**
+     * Takes back ids recorded in the caller's transaction whose delta was rejected, so a later
+     * delivery can still apply it.
+     */
+    static void forget(Connection conn, Collection<String> updateIds) throws SQLException {
+        if (updateIds.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(FORGET_SQL)) {
+            stmt.setArray(1, conn.createArrayOf("varchar", updateIds.toArray()));
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Deletes expired ids if the last purge is older than the purge interval; failures are only logged.
+     */
+    static void purgeIfDue() {
+        long last = lastPurge.get();
+        long now = System.currentTimeMillis();
+        if (now - last < PURGE_INTERVAL_MILLIS || !lastPurge.compareAndSet(last, now)) {
+            return;
+        }
+        try {
+            ensureTable();
+            try (Connection conn = DatabaseConnection.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(PURGE_SQL)) {
+                conn.setAutoCommit(true);
+                stmt.setLong(1, TTL_MILLIS);
+                long purged = 0;
+                int deleted;
+                while ((deleted = stmt.executeUpdate()) > 0) {
+                    purged += deleted;
+                }
+                if (purged > 0) {
+                    logger.info("Purged {} expired capacity update ids", purged);
+                }
+            }
+        } catch (SQLException e) {
+            logger.warn("Could not purge expired capacity update ids: {}", e.getMessage());
+        }
+    }
+
+    private static void ensureTable() throws SQLException {
+        if (tableReady) {
+            return;
+        }
+        tableLock.lock();
+        // Own connection: DDL inside the caller's transaction would hold its locks too long
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+            if (!tableReady) {
+                stmt.execute(CREATE_TABLE_SQL);
+                stmt.execute(CREATE_INDEX_SQL);
+                tableReady = true;
+            }
+        } catch (SQLException e) {
+            logger.warn("Could not create capacity_update_ids: {}", e.getMessage());
+            throw e;
+        } finally {
+            tableLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,509 @@
+package com.eventticketing.event.service;
+
+import com.eventticketing.shared.config.AppConfig;
+import com.eventticketing.shared.database.DatabaseConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write-behind aggregator for {@code events.booked_seats}.
+ * Bookings are admitted against the event capacity in memory and their deltas are summed in
+ * striped counters; a background thread periodically writes one combined delta per event.
+ * <p>
+ * Every accepted delta is journaled to {@code capacity.journal.dir} first (fsynced unless
+ * {@code capacity.journal.fsync} is false). Each flush stores the last journal segment it
+ * covers in {@code capacity_journal_offsets}, in the same transaction as the deltas, so after
+ * a crash exactly the segments past that offset are replayed. Off by default
+ * ({@code capacity.writebehind.enabled}), and only enabled together with a journal directory,
+ * which must be on durable storage.
+ * <p>
+ * Admission uses this node's counters. Every {@code capacity.reconcile.interval.ms} (5000)
+ * they take in the bookings other nodes wrote to the database, so with several event servlet
+ * nodes an event can be oversold by what the other nodes admit within one interval.
+ */
+public class CapacityAggregator {
+    private static final Logger logger = LoggerFactory.getLogger(CapacityAggregator.class);
+
+    private static final boolean REQUESTED = AppConfig.getBoolean("capacity.writebehind.enabled", false);
+    private static final String JOURNAL_DIR = AppConfig.get("capacity.journal.dir", null);
+    private static final boolean ENABLED = REQUESTED && JOURNAL_DIR != null && !JOURNAL_DIR.isEmpty();
+    private static final boolean JOURNAL_FSYNC = AppConfig.getBoolean("capacity.journal.fsync", true);
+    // Identifies this node's journal in capacity_journal_offsets
+    private static final String JOURNAL_ID = AppConfig.get("capacity.journal.id", defaultJournalId());
+    private static final long FLUSH_INTERVAL_MS = AppConfig.getLong("capacity.flush.interval.ms", 100);
+    private static final int FLUSH_THRESHOLD = AppConfig.getInt("capacity.flush.threshold", 500);
+    private static final long RECONCILE_INTERVAL_MS = AppConfig.getLong("capacity.reconcile.interval.ms", 5000);
+
+    private static final String LOAD_SQL = "SELECT capacity, booked_seats FROM events WHERE id = ?";
+    private static final String LOAD_ALL_SQL = "SELECT id, capacity, booked_seats FROM events WHERE id = ANY(?)";
+    private static final String UPDATE_SQL = "UPDATE events SET booked_seats = booked_seats + ? WHERE id = ?";
+    private static final String CREATE_OFFSETS_SQL = "CREATE TABLE IF NOT EXISTS capacity_journal_offsets (" +
+            "journal_id VARCHAR(255) PRIMARY KEY, committed_through BIGINT NOT NULL, " +
+            "updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)";
+    private static final String LOAD_OFFSET_SQL = "SELECT committed_through FROM capacity_journal_offsets WHERE journal_id = ?";
+    private static final String SAVE_OFFSET_SQL = "INSERT INTO capacity_journal_offsets (journal_id, committed_through) " +
+            "VALUES (?, ?) ON CONFLICT (journal_id) DO UPDATE " +
+            "SET committed_through = EXCLUDED.committed_through, updated_at = CURRENT_TIMESTAMP";
+
+    private static volatile CapacityAggregator instance;
+    // A lock rather than synchronized: startup does file and JDBC I/O, which would pin virtual threads
+    private static final ReentrantLock instanceLock = new ReentrantLock();
+
+    private final ConcurrentHashMap<Long, CompletableFuture<EventCounter>> counters = new ConcurrentHashMap<>();
+    // Deltas that were drained but not yet committed (failed flushes and journal recovery)
+    private final ConcurrentHashMap<Long, Long> uncommitted = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock rotationLock = new ReentrantReadWriteLock();
+    // Counters are loaded while holding it, so a load sees a flush either completely or not at all
+    private final ReentrantLock commitLock = new ReentrantLock();
+    private final AtomicInteger pendingOperations = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final CapacityJournal journal;
+    private final ScheduledExecutorService flusher;
+    private long uncommittedThroughSegment = -1;
+
+    private CapacityAggregator() throws IOException, SQLException {
+        this.journal = new CapacityJournal(Paths.get(JOURNAL_DIR), JOURNAL_FSYNC, loadCommittedThrough());
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "capacity-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Map<Long, Long> recovered = journal.recover();
+        if (!recovered.isEmpty()) {
+            logger.info("Replaying booked-seat deltas for {} events from capacity journal", recovered.size());
+            uncommitted.putAll(recovered);
+            uncommittedThroughSegment = journal.rotate();
+            flushSafely();
+        }
+
+        flusher.scheduleWithFixedDelay(this::flushSafely, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        flusher.scheduleWithFixedDelay(this::reconcileSafely, RECONCILE_INTERVAL_MS, RECONCILE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * True when write-behind was asked for but cannot run because no journal directory is set.
+     */
+    public static boolean isMissingJournalDir() {
+        return REQUESTED && !ENABLED;
+    }
+
+    public static CapacityAggregator getInstance() {
+        CapacityAggregator result = instance;
+        if (result == null) {
+            instanceLock.lock();
+            try {
+                result = instance;
+                if (result == null) {
+                    instance = result = new CapacityAggregator();
+                }
+            } catch (IOException | SQLException e) {
+                throw new IllegalStateException("Cannot open capacity journal in " + JOURNAL_DIR, e);
+            } finally {
+                instanceLock.unlock();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Shuts down the aggregator if it was ever started, writing all pending deltas first.
+     */
+    public static void shutdownIfStarted() {
+        CapacityAggregator current = instance;
+        if (current != null) {
+            current.shutdown();
+        }
+    }
+
+    /**
+     * Admits {@code bookedSeats} more seats for the event if its capacity allows it.
+     */
+    public CapacityUpdateResult addBookedSeats(Long eventId, int bookedSeats) throws SQLException {
+        EventCounter counter = getCounter(eventId);
+        if (counter == null) {
+            return CapacityUpdateResult.NOT_FOUND;
+        }
+        if (!counter.admit(bookedSeats)) {
+            return CapacityUpdateResult.CAPACITY_EXCEEDED;
+        }
+
+        rotationLock.readLock().lock();
+        try {
+            journal.append(eventId, bookedSeats);
+            counter.pending.add(bookedSeats);
+        } catch (IOException e) {
+            counter.booked.addAndGet(-bookedSeats);
+            throw new SQLException("Failed to journal booked seats for event " + eventId, e);
+        } finally {
+            rotationLock.readLock().unlock();
+        }
+
+        if (pendingOperations.incrementAndGet() >= FLUSH_THRESHOLD && flushScheduled.compareAndSet(false, true)) {
+            try {
+                flusher.execute(() -> {
+                    flushScheduled.set(false);
+                    flushSafely();
+                });
+            } catch (RuntimeException e) {
+                flushScheduled.set(false);
+            }
+        }
+        return CapacityUpdateResult.APPLIED;
+    }
+
+    /**
+     * {@link #addBookedSeats(Long, int)} for many events. Counters that are not loaded yet are
+     * read with one query; the result map has the same keys, in the same order.
+     */
+    public Map<Long, CapacityUpdateResult> addBookedSeats(Map<Long, Integer> bookedSeatsByEvent) throws SQLException {
+        preloadCounters(bookedSeatsByEvent.keySet());
+        Map<Long, CapacityUpdateResult> results = new LinkedHashMap<>();
+        for (Map.Entry<Long, Integer> entry : bookedSeatsByEvent.entrySet()) {
+            results.put(entry.getKey(), addBookedSeats(entry.getKey(), entry.getValue()));
+        }
+        return results;
+    }
+
+    /**
+     * Forgets the in-memory counter of an event, e.g. after it was deleted.
+     */
+    public void evict(Long eventId) {
+        counters.remove(eventId);
+    }
+
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!flushSafely()) {
+            logger.warn("Capacity aggregator shut down with unwritten deltas; they will be replayed from the journal");
+        }
+        journal.close();
+    }
+
+    /**
+     * Last journal segment whose deltas are in the database, or -1 when this journal never flushed.
+     */
+    private static long loadCommittedThrough() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(CREATE_OFFSETS_SQL);
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(LOAD_OFFSET_SQL)) {
+                stmt.setString(1, JOURNAL_ID);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    return rs.next() ? rs.getLong(1) : -1;
+                }
+            }
+        }
+    }
+
+    private static String defaultJournalId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            host = "localhost";
+        }
+        return host + ":" + JOURNAL_DIR;
+    }
+
+    private EventCounter getCounter(Long eventId) throws SQLException {
+        CompletableFuture<EventCounter> future = counters.get(eventId);
+        if (future == null) {
+            CompletableFuture<EventCounter> loading = new CompletableFuture<>();
+            future = counters.putIfAbsent(eventId, loading);
+            if (future == null) {
+                future = loading;
+                commitLock.lock();
+                try {
+                    EventCounter counter = loadCounter(eventId);
+                    if (counter == null) {
+                        counters.remove(eventId, loading);
+                    }
+                    loading.complete(counter);
+                } catch (SQLException | RuntimeException e) {
+                    counters.remove(eventId, loading);
+                    loading.completeExceptionally(e);
+                } finally {
+                    commitLock.unlock();
+                }
+            }
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Failed to load capacity for event " + eventId, e.getCause());
+        }
+    }
+
+    private void preloadCounters(Collection<Long> eventIds) throws SQLException {
+        Map<Long, CompletableFuture<EventCounter>> mine = new HashMap<>();
+        for (Long eventId : eventIds) {
+            if (!counters.containsKey(eventId)) {
+                CompletableFuture<EventCounter> loading = new CompletableFuture<>();
+                if (counters.putIfAbsent(eventId, loading) == null) {
+                    mine.put(eventId, loading);
+                }
+            }
+        }
+        if (mine.isEmpty()) {
+            return;
+        }
+
+        commitLock.lock();
+        try {
+            Map<Long, EventCounter> loaded = loadCounters(mine.keySet());
+            for (Map.Entry<Long, CompletableFuture<EventCounter>> entry : mine.entrySet()) {
+                EventCounter counter = loaded.get(entry.getKey());
+                if (counter == null) {
+                    counters.remove(entry.getKey(), entry.getValue());
+                }
+                entry.getValue().complete(counter);
+            }
+        } catch (SQLException | RuntimeException e) {
+            for (Map.Entry<Long, CompletableFuture<EventCounter>> entry : mine.entrySet()) {
+                counters.remove(entry.getKey(), entry.getValue());
+                entry.getValue().completeExceptionally(e);
+            }
+            throw e;
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    private Map<Long, EventCounter> loadCounters(Collection<Long> eventIds) throws SQLException {
+        Map<Long, EventCounter> loaded = new HashMap<>();
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(LOAD_ALL_SQL)) {
+
+            stmt.setArray(1, conn.createArrayOf("bigint", eventIds.toArray()));
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    long eventId = rs.getLong("id");
+                    long committed = rs.getLong("booked_seats");
+                    long booked = committed + uncommitted.getOrDefault(eventId, 0L);
+                    loaded.put(eventId, new EventCounter(rs.getInt("capacity"), (int) booked, committed));
+                }
+            }
+        }
+        return loaded;
+    }
+
+    private EventCounter loadCounter(Long eventId) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(LOAD_SQL)) {
+
+            stmt.setLong(1, eventId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                int capacity = rs.getInt("capacity");
+                long committed = rs.getLong("booked_seats");
+                long booked = committed + uncommitted.getOrDefault(eventId, 0L);
+                return new EventCounter(capacity, (int) booked, committed);
+            }
+        }
+    }
+
+    private void reconcileSafely() {
+        try {
+            reconcile();
+        } catch (SQLException e) {
+            logger.warn("Failed to reconcile booked seats with the database, will retry: {}", e.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("Unexpected error while reconciling booked seats", e);
+        }
+    }
+
+    /**
+     * Adds what other writers (other nodes, manual fixes) changed in {@code booked_seats} since
+     * the last look to the in-memory counters, and picks up capacity changes. Runs on the flusher
+     * thread, so the database never holds a half-applied flush of this node.
+     */
+    private void reconcile() throws SQLException {
+        Map<Long, EventCounter> loaded = new HashMap<>();
+        for (Map.Entry<Long, CompletableFuture<EventCounter>> entry : counters.entrySet()) {
+            CompletableFuture<EventCounter> future = entry.getValue();
+            if (future.isDone() && !future.isCompletedExceptionally() && future.join() != null) {
+                loaded.put(entry.getKey(), future.join());
+            }
+        }
+        if (loaded.isEmpty()) {
+            return;
+        }
+
+        Map<Long, EventCounter> missing = new HashMap<>(loaded);
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(LOAD_ALL_SQL)) {
+
+            stmt.setArray(1, conn.createArrayOf("bigint", loaded.keySet().toArray()));
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    EventCounter counter = missing.remove(rs.getLong("id"));
+                    counter.capacity = rs.getInt("capacity");
+                    long booked = rs.getLong("booked_seats");
+                    long foreign = booked - counter.committed;
+                    if (foreign != 0) {
+                        counter.booked.addAndGet((int) foreign);
+                        counter.committed = booked;
+                    }
+                }
+            }
+        }
+        // Deleted in the meantime
+        for (Long eventId : missing.keySet()) {
+            counters.remove(eventId);
+        }
+    }
+
+    private boolean flushSafely() {
+        try {
+            flush();
+            return true;
+        } catch (SQLException | IOException e) {
+            logger.error("Failed to write booked-seat deltas to the database, will retry", e);
+            return false;
+        } catch (RuntimeException e) {
+            logger.error("Unexpected error while flushing booked-seat deltas", e);
+            return false;
+        }
+    }
+
+    private void flush() throws SQLException, IOException {
+        if (pendingOperations.get() > 0) {
+            rotationLock.writeLock().lock();
+            try {
+                uncommittedThroughSegment = journal.rotate();
+                for (Map.Entry<Long, CompletableFuture<EventCounter>> entry : counters.entrySet()) {
+                    CompletableFuture<EventCounter> future = entry.getValue();
+                    if (!future.isDone() || future.isCompletedExceptionally() || future.join() == null) {
+                        continue;
+                    }
+                    long delta = future.join().pending.sumThenReset();
+                    if (delta != 0) {
+                        uncommitted.merge(entry.getKey(), delta, Long::sum);
+                    }
+                }
+                pendingOperations.set(0);
+            } finally {
+                rotationLock.writeLock().unlock();
+            }
+        }
+
+        if (uncommitted.isEmpty()) {
+            return;
+        }
+
+        commitLock.lock();
+        try {
+            commit(new HashMap<>(uncommitted));
+        } finally {
+            commitLock.unlock();
+        }
+        journal.deleteThrough(uncommittedThroughSegment);
+    }
+
+    private void commit(Map<Long, Long> batch) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(UPDATE_SQL);
+                 PreparedStatement offset = conn.prepareStatement(SAVE_OFFSET_SQL)) {
+                for (Map.Entry<Long, Long> entry : batch.entrySet()) {
+                    stmt.setLong(1, entry.getValue());
+                    stmt.setLong(2, entry.getKey());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                // Same transaction: once the deltas are in, recovery must not replay their segments
+                offset.setString(1, JOURNAL_ID);
+                offset.setLong(2, uncommittedThroughSegment);
+                offset.executeUpdate();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+
+        for (Map.Entry<Long, Long> entry : batch.entrySet()) {
+            uncommitted.computeIfPresent(entry.getKey(), (id, delta) -> delta - entry.getValue() == 0 ? null : delta - entry.getValue());
+            CompletableFuture<EventCounter> future = counters.get(entry.getKey());
+            if (future != null && future.isDone() && !future.isCompletedExceptionally() && future.join() != null) {
+                future.join().committed += entry.getValue();
+            }
+        }
+        logger.debug("Flushed booked-seat deltas for {} events", batch.size());
+    }
+
+    private static final class EventCounter {
+        private volatile int capacity;
+        private final AtomicInteger booked;
+        private final LongAdder pending = new LongAdder();
+        // booked_seats as the database has it, as far as this node knows; flusher thread only
+        private volatile long committed;
+
+        private EventCounter(int capacity, int booked, long committed) {
+            this.capacity = capacity;
+            this.booked = new AtomicInteger(booked);
+            this.committed = committed;
+        }
+
+        private boolean admit(int seats) {
+            int capacity = this.capacity;
+            if (capacity <= 0) {
+                // No capacity limit configured for the event
+                booked.addAndGet(seats);
+                return true;
+            }
+            while (true) {
+                int current = booked.get();
+                if (current + seats > capacity) {
+                    return false;
+                }
+                if (booked.compareAndSet(current, current + seats)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
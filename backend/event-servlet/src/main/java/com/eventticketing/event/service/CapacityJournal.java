@@ -0,0 +1,168 @@
+package com.eventticketing.event.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only log of booked-seats deltas that have been accepted in memory but not yet
+ * written to the {@code events} table. The log is split into numbered segments: the
+ * aggregator seals the active segment before each flush and records the last sealed sequence
+ * in the database together with its deltas. Segments up to that offset are deleted afterwards;
+ * one left behind by a crash in between is skipped on recovery, not replayed twice.
+ */
+class CapacityJournal {
+    private static final Logger logger = LoggerFactory.getLogger(CapacityJournal.class);
+    private static final String PREFIX = "capacity-";
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final boolean fsync;
+    private final ReentrantLock lock = new ReentrantLock();
+    private long activeSequence;
+    private FileChannel activeChannel;
+    private Writer activeWriter;
+
+    /**
+     * Opens the journal in {@code directory}. Segments up to {@code committedThrough} are already
+     * in the database: they are deleted, and new segments are numbered after them, so a sequence
+     * is never reused even when the directory was emptied.
+     */
+    CapacityJournal(Path directory, boolean fsync, long committedThrough) throws IOException {
+        this.directory = directory;
+        this.fsync = fsync;
+        Files.createDirectories(directory);
+        deleteThrough(committedThrough);
+        List<Path> existing = listSegments();
+        long next = existing.isEmpty() ? 0 : sequenceOf(existing.get(existing.size() - 1)) + 1;
+        this.activeSequence = Math.max(next, committedThrough + 1);
+        openActive();
+    }
+
+    /**
+     * Reads every uncommitted segment left behind by a previous run and returns the summed delta per event.
+     */
+    Map<Long, Long> recover() throws IOException {
+        Map<Long, Long> deltas = new HashMap<>();
+        for (Path segment : sealedSegments()) {
+            try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int separator = line.indexOf(' ');
+                    if (separator <= 0) {
+                        continue; // torn write at the end of a segment
+                    }
+                    try {
+                        long eventId = Long.parseLong(line.substring(0, separator));
+                        long delta = Long.parseLong(line.substring(separator + 1));
+                        deltas.merge(eventId, delta, Long::sum);
+                    } catch (NumberFormatException e) {
+                        logger.warn("Skipping malformed capacity journal entry in {}: {}", segment, line);
+                    }
+                }
+            }
+        }
+        return deltas;
+    }
+
+    void append(Long eventId, int delta) throws IOException {
+        lock.lock();
+        try {
+            activeWriter.write(eventId + " " + delta + "\n");
+            activeWriter.flush();
+            if (fsync) {
+                activeChannel.force(false);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes the active segment and starts a new one. Returns the sequence of the sealed segment;
+     * every segment up to and including it can be deleted once its deltas are committed.
+     */
+    long rotate() throws IOException {
+        lock.lock();
+        try {
+            long sealed = activeSequence;
+            activeWriter.close();
+            activeSequence++;
+            openActive();
+            return sealed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void deleteThrough(long sequence) {
+        try {
+            for (Path segment : listSegments()) {
+                if (sequenceOf(segment) <= sequence) {
+                    Files.deleteIfExists(segment);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to delete committed capacity journal segments", e);
+        }
+    }
+
+    void close() {
+        lock.lock();
+        try {
+            activeWriter.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close capacity journal", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<Path> sealedSegments() throws IOException {
+        List<Path> sealed = new ArrayList<>();
+        for (Path segment : listSegments()) {
+            if (sequenceOf(segment) < activeSequence) {
+                sealed.add(segment);
+            }
+        }
+        return sealed;
+    }
+
+    private void openActive() throws IOException {
+        Path path = directory.resolve(PREFIX + activeSequence + SUFFIX);
+        activeChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        activeWriter = new BufferedWriter(Channels.newWriter(activeChannel, StandardCharsets.UTF_8));
+    }
+
+    private List<Path> listSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path path : stream) {
+                segments.add(path);
+            }
+        }
+        segments.sort((a, b) -> Long.compare(sequenceOf(a), sequenceOf(b)));
+        return segments;
+    }
+
+    private static long sequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+}
@@ -0,0 +1,26 @@
+package com.eventticketing.event.service;
+
+/**
+ * One booked-seats delta of a bulk capacity request. Producers that may send the same delta
+ * twice (the booking servlet's outbox relay) give it an {@code updateId}, so it is applied once.
+ */
+public class CapacityUpdate {
+    private final long eventId;
+    private final int bookedSeats;
+    private final String updateId;
+
+    public CapacityUpdate(long eventId, int bookedSeats, String updateId) {
+        this.eventId = eventId;
+        this.bookedSeats = bookedSeats;
+        this.updateId = updateId;
+    }
+
+    public long getEventId() { return eventId; }
+
+    public int getBookedSeats() { return bookedSeats; }
+
+    /**
+     * Null for a delta that is applied every time it is sent.
+     */
+    public String getUpdateId() { return updateId; }
+}
@@ -0,0 +1,10 @@
+package com.eventticketing.event.service;
+
+/**
+ * Outcome of a booked-seats change for an event.
+ */
+public enum CapacityUpdateResult {
+    APPLIED,
+    NOT_FOUND,
+    CAPACITY_EXCEEDED
+}
@@ -0,0 +1,168 @@
+package com.eventticketing.event.service;
+
+import com.eventticketing.shared.config.AppConfig;
+import com.eventticketing.shared.model.Event;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded read-through cache of {@link Event} rows keyed by id.
+ * Entries are evicted in least-recently-used order once {@code event.cache.max.size} is reached
+ * and expire {@code event.cache.ttl.ms} after they were loaded. Writers invalidate entries
+ * explicitly; a load that raced with an invalidation of the same event is not stored. The
+ * versions that detect such races are striped by id, so invalidating one event only drops
+ * concurrent loads of the few events that share its stripe.
+ * Cached events are shared between requests and must not be modified by callers.
+ */
+public class EventCache {
+    private static final boolean ENABLED = AppConfig.getBoolean("event.cache.enabled", true);
+    private static final int MAX_SIZE = AppConfig.getInt("event.cache.max.size", 10000);
+    private static final long TTL_NANOS = AppConfig.getLong("event.cache.ttl.ms", 30000) * 1_000_000L;
+    private static final int VERSION_STRIPES = 4096;
+
+    private static final EventCache INSTANCE = new EventCache();
+
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+    // Bumped on every invalidation of an id in the stripe; a power of two, see stripe()
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+    private final LongAdder invalidations = new LongAdder();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    private EventCache() {}
+
+    public static EventCache getInstance() {
+        return INSTANCE;
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Returns the cached event or null on a miss. Use {@link #loadToken(Long)} before reading
+     * the database and pass it to {@link #put} afterwards.
+     */
+    public Event get(Long id) {
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            Entry entry = entries.get(id);
+            if (entry != null) {
+                if (now - entry.loadedAt < TTL_NANOS) {
+                    hits.increment();
+                    return entry.event;
+                }
+                entries.remove(id);
+                expirations.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+        misses.increment();
+        return null;
+    }
+
+    public long loadToken(Long id) {
+        return versions.get(stripe(id));
+    }
+
+    /**
+     * Stores a freshly loaded event unless the event was invalidated since {@code loadToken}
+     * was taken, in which case the value may already be stale.
+     */
+    public void put(Long id, Event event, long loadToken) {
+        if (event == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (versions.get(stripe(id)) != loadToken) {
+                return;
+            }
+            entries.put(id, new Entry(event, System.nanoTime()));
+            Iterator<Map.Entry<Long, Entry>> eldest = entries.entrySet().iterator();
+            while (entries.size() > MAX_SIZE && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+                evictions.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidate(Long id) {
+        lock.lock();
+        try {
+            versions.incrementAndGet(stripe(id));
+            invalidations.increment();
+            entries.remove(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            for (int i = 0; i < VERSION_STRIPES; i++) {
+                versions.incrementAndGet(i);
+            }
+            invalidations.increment();
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        int size;
+        lock.lock();
+        try {
+            size = entries.size();
+        } finally {
+            lock.unlock();
+        }
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long requests = hitCount + missCount;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", ENABLED);
+        stats.put("size", size);
+        stats.put("maxSize", MAX_SIZE);
+        stats.put("ttlMs", TTL_NANOS / 1_000_000L);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", requests == 0 ? 0.0 : (double) hitCount / requests);
+        stats.put("evictions", evictions.sum());
+        stats.put("expirations", expirations.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+
+    private static int stripe(Long id) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & (VERSION_STRIPES - 1);
+    }
+
+    private static final class Entry {
+        private final Event event;
+        private final long loadedAt;
+
+        private Entry(Event event, long loadedAt) {
+            this.event = event;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
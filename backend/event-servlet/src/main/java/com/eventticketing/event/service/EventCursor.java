@@ -0,0 +1,56 @@
+package com.eventticketing.event.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque continuation token for keyset pagination over events ordered by {@code (event_date, id)}.
+ * Clients must treat the token as an opaque string; its encoding may change.
+ */
+public class EventCursor {
+    private final LocalDateTime eventDate;
+    private final long id;
+
+    public EventCursor(LocalDateTime eventDate, long id) {
+        this.eventDate = eventDate;
+        this.id = id;
+    }
+
+    public LocalDateTime getEventDate() {
+        return eventDate;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String encode() {
+        String raw = eventDate + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a token produced by {@link #encode()}. An empty token means "start from the beginning"
+     * and yields null.
+     *
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static EventCursor decode(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new EventCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                                   Long.parseLong(raw.substring(separator + 1)));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.eventticketing.event.service;
+
+import com.eventticketing.shared.model.Event;
+
+import java.util.List;
+
+/**
+ * One page of events returned by cursor-based pagination.
+ * {@code nextCursor} is null when there are no more results.
+ */
+public class EventPage {
+    private final List<Event> items;
+    private final String nextCursor;
+
+    public EventPage(List<Event> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Event> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,85 @@
+package com.eventticketing.event.service;
+
+import com.eventticketing.shared.model.Event;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Fixed column lists of the {@code events} table, each with a mapper that reads the columns
+ * by position instead of looking every label up again for every row.
+ * <ul>
+ *   <li>{@link #FULL}: everything the {@link Event} model carries;</li>
+ *   <li>{@link #SUMMARY}: the same without {@code description}, the widest column, for list views.</li>
+ * </ul>
+ */
+public enum EventProjection {
+    FULL("id, title, description, event_date, venue, city, status, capacity, base_price, created_at, updated_at", true),
+    SUMMARY("id, title, event_date, venue, city, status, capacity, base_price, created_at, updated_at", false);
+
+    private final String columns;
+    private final boolean withDescription;
+
+    EventProjection(String columns, boolean withDescription) {
+        this.columns = columns;
+        this.withDescription = withDescription;
+    }
+
+    /**
+     * The projection named by a {@code view} query parameter ({@code full} when absent), or
+     * null when there is no such view.
+     */
+    public static EventProjection fromView(String view) {
+        if (view == null || view.isEmpty() || view.equalsIgnoreCase("full")) {
+            return FULL;
+        }
+        return view.equalsIgnoreCase("summary") ? SUMMARY : null;
+    }
+
+    /**
+     * The column list, for {@code "SELECT " + columns() + " FROM events ..."}.
+     */
+    public String columns() {
+        return columns;
+    }
+
+    /**
+     * Maps the current row of a result set selected with {@link #columns()}.
+     */
+    public Event map(ResultSet rs) throws SQLException {
+        int column = 1;
+        Event event = new Event();
+        event.setId(rs.getLong(column++));
+        event.setTitle(rs.getString(column++));
+        if (withDescription) {
+            event.setDescription(rs.getString(column++));
+        }
+        event.setEventDate(rs.getTimestamp(column++).toLocalDateTime());
+
+        // Map to available fields - The schema has: venue, city, country, capacity, available_seats
+        // but the Event model expects: venueId, organizerId, category, maxAttendees
+        // Create a simple hash from venue string for venueId
+        event.setVenueId((long) rs.getString(column++).hashCode());
+        event.setOrganizerId(1L); // Default organizer
+
+        // Use city as category
+        event.setCategory(rs.getString(column++));
+        event.setStatus(rs.getString(column++));
+        event.setMaxAttendees(rs.getInt(column++));
+
+        BigDecimal basePrice = rs.getBigDecimal(column++);
+        if (basePrice != null) {
+            event.setBasePrice(basePrice);
+        }
+
+        event.setCreatedAt(rs.getTimestamp(column++).toLocalDateTime());
+        Timestamp updatedAt = rs.getTimestamp(column);
+        if (updatedAt != null) {
+            event.setUpdatedAt(updatedAt.toLocalDateTime());
+        }
+
+        return event;
+    }
+}
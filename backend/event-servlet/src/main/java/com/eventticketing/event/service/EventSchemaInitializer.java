@@ -0,0 +1,150 @@
+package com.eventticketing.event.service;
+
+import com.eventticketing.shared.database.DatabaseConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Creates the indexes and the search column the event queries rely on if they are missing.
+ * Runs on a background thread at startup and never blocks writes to {@code events} for long:
+ * <ul>
+ *   <li>indexes are built with {@code CREATE INDEX CONCURRENTLY}, on an autocommit connection;</li>
+ *   <li>{@code search_vector} is a plain column (adding it does not rewrite the table) kept up to
+ *       date by a trigger and backfilled in small batches;</li>
+ *   <li>DDL that needs a table lock gives up after {@code lock_timeout} instead of queueing writes.</li>
+ * </ul>
+ * Every step is idempotent and failures are logged; the queries still work, only slower.
+ * Search switches to the stored vector once it is backfilled and indexed.
+ */
+public class EventSchemaInitializer {
+    private static final Logger logger = LoggerFactory.getLogger(EventSchemaInitializer.class);
+
+    private static final int BACKFILL_BATCH_SIZE = 1000;
+
+    private static final String ADD_SEARCH_VECTOR_SQL = "ALTER TABLE events ADD COLUMN IF NOT EXISTS search_vector tsvector";
+    private static final String TRIGGER_FUNCTION_SQL =
+            "CREATE OR REPLACE FUNCTION events_search_vector_update() RETURNS trigger AS $$ BEGIN " +
+            "NEW.search_vector := " + EventSearch.DOCUMENT.replace("title", "NEW.title").replace("description", "NEW.description") + "; " +
+            "RETURN NEW; END $$ LANGUAGE plpgsql";
+    private static final String TRIGGER_EXISTS_SQL =
+            "SELECT 1 FROM pg_trigger WHERE tgname = 'events_search_vector_trigger' AND NOT tgisinternal";
+    private static final String CREATE_TRIGGER_SQL = "CREATE TRIGGER events_search_vector_trigger " +
+            "BEFORE INSERT OR UPDATE OF title, description ON events " +
+            "FOR EACH ROW EXECUTE FUNCTION events_search_vector_update()";
+    private static final String BACKFILL_SQL = "UPDATE events SET search_vector = " + EventSearch.DOCUMENT + " " +
+            "WHERE id IN (SELECT id FROM events WHERE search_vector IS NULL LIMIT " + BACKFILL_BATCH_SIZE + ")";
+    private static final String INDEX_STATE_SQL = "SELECT i.indisvalid, " +
+            "EXISTS (SELECT 1 FROM pg_stat_progress_create_index p WHERE p.index_relid = c.oid) " +
+            "FROM pg_class c JOIN pg_index i ON i.indexrelid = c.oid WHERE c.relname = ?";
+
+    public static void start() {
+        Thread thread = new Thread(EventSchemaInitializer::ensureSchema, "event-schema-initializer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void ensureSchema() {
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement stmt = conn.createStatement()) {
+
+            // CREATE INDEX CONCURRENTLY cannot run inside a transaction block
+            conn.setAutoCommit(true);
+            stmt.execute("SET lock_timeout = '5s'");
+
+            // Seek predicate used by cursor pagination: (event_date, id) > (?, ?)
+            createIndex(conn, "idx_events_event_date_id", "(event_date, id)");
+
+            // Full-text search over title and description, see EventSearch
+            boolean searchReady = apply(stmt, ADD_SEARCH_VECTOR_SQL)
+                    && apply(stmt, TRIGGER_FUNCTION_SQL)
+                    && createTrigger(conn, stmt)
+                    && backfillSearchVector(stmt)
+                    && createIndex(conn, "idx_events_search_vector", "USING GIN (search_vector)");
+            if (searchReady) {
+                EventSearch.useStoredVector();
+                // Superseded by the stored vector's index
+                apply(stmt, "DROP INDEX CONCURRENTLY IF EXISTS idx_events_search");
+                logger.info("Event search uses the stored search vector");
+            }
+        } catch (SQLException e) {
+            logger.warn("Skipping event schema initialization: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Builds the index without blocking writes. An invalid index left behind by an interrupted
+     * build is dropped and built again, unless another node is building it right now.
+     */
+    private static boolean createIndex(Connection conn, String name, String definition) {
+        try (PreparedStatement state = conn.prepareStatement(INDEX_STATE_SQL);
+             Statement stmt = conn.createStatement()) {
+
+            state.setString(1, name);
+            try (ResultSet rs = state.executeQuery()) {
+                if (rs.next()) {
+                    if (rs.getBoolean(1)) {
+                        return true;
+                    }
+                    if (rs.getBoolean(2)) {
+                        logger.info("Index {} is being built elsewhere, skipping", name);
+                        return false;
+                    }
+                    stmt.execute("DROP INDEX CONCURRENTLY IF EXISTS " + name);
+                }
+            }
+            logger.info("Building index {}", name);
+            stmt.execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS " + name + " ON events " + definition);
+            return true;
+        } catch (SQLException e) {
+            logger.warn("Could not build index {}: {}", name, e.getMessage());
+            return false;
+        }
+    }
+
+    private static boolean createTrigger(Connection conn, Statement stmt) {
+        try (PreparedStatement exists = conn.prepareStatement(TRIGGER_EXISTS_SQL);
+             ResultSet rs = exists.executeQuery()) {
+            return rs.next() || apply(stmt, CREATE_TRIGGER_SQL);
+        } catch (SQLException e) {
+            logger.warn("Could not check the search vector trigger: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Fills {@code search_vector} for rows written before the trigger existed, one short
+     * transaction per batch so no row stays locked for long.
+     */
+    private static boolean backfillSearchVector(Statement stmt) {
+        try {
+            long total = 0;
+            int updated;
+            while ((updated = stmt.executeUpdate(BACKFILL_SQL)) > 0) {
+                total += updated;
+            }
+            if (total > 0) {
+                logger.info("Backfilled the search vector of {} events", total);
+            }
+            return true;
+        } catch (SQLException e) {
+            logger.warn("Could not backfill the search vector: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private static boolean apply(Statement stmt, String sql) {
+        try {
+            stmt.execute(sql);
+            return true;
+        } catch (SQLException e) {
+            logger.warn("Could not apply schema statement [{}]: {}", sql, e.getMessage());
+            return false;
+        }
+    }
+}
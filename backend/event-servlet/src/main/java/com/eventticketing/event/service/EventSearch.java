@@ -0,0 +1,54 @@
+package com.eventticketing.event.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * SQL fragments for PostgreSQL full-text search over event titles and descriptions.
+ * Until {@link EventSchemaInitializer} has backfilled and indexed the stored
+ * {@code search_vector} column, queries compute the document on the fly; afterwards they
+ * match and rank against the stored vector, which the trigger computes from {@link #DOCUMENT}.
+ */
+public final class EventSearch {
+    static final String DOCUMENT =
+            "to_tsvector('simple', coalesce(title, '') || ' ' || coalesce(description, ''))";
+
+    private static volatile String vector = DOCUMENT;
+
+    private static final Pattern TERM = Pattern.compile("[\\p{L}\\p{N}]+");
+    private static final int MAX_TERMS = 8;
+
+    private EventSearch() {}
+
+    static String match() {
+        return vector + " @@ to_tsquery('simple', ?)";
+    }
+
+    static String rank() {
+        return "ts_rank(" + vector + ", to_tsquery('simple', ?))";
+    }
+
+    static void useStoredVector() {
+        vector = "search_vector";
+    }
+
+    /**
+     * Turns free text typed by a user into a tsquery where every term must match and the
+     * last terms may be prefixes, e.g. {@code "rock fest"} -> {@code "rock:* & fest:*"}.
+     * Returns null if the text contains no searchable terms.
+     */
+    public static String toTsQuery(String text) {
+        if (text == null) {
+            return null;
+        }
+        List<String> terms = new ArrayList<>();
+        Matcher matcher = TERM.matcher(text.toLowerCase(Locale.ROOT));
+        while (matcher.find() && terms.size() < MAX_TERMS) {
+            terms.add(matcher.group() + ":*");
+        }
+        return terms.isEmpty() ? null : String.join(" & ", terms);
+    }
+}
@@ -10,14 +10,27 @@ import org.slf4j.LoggerFactory;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class EventService {
     private static final Logger logger = LoggerFactory.getLogger(EventService.class);
 
-    public List<Event> getAllEvents(String category, String status, int page, int size) throws SQLException {
+    // Fixed column lists, in the order the mappers below read them
+    private static final String TICKET_TYPE_COLUMNS = "id, event_id, name, description, price, quantity_available, " +
+            "quantity_sold, sales_start, sales_end, is_active, created_at, updated_at";
+    private static final String SEAT_COLUMNS = "s.id, s.venue_id, s.section, s.row_number, s.seat_number, " +
+            "s.seat_type, s.is_available, s.created_at";
+
+    public List<Event> getAllEvents(String category, String status, int page, int size,
+                                    EventProjection projection) throws SQLException {
         List<Event> events = new ArrayList<>();
-        String sql = "SELECT * FROM events WHERE 1=1";
+        String sql = "SELECT " + projection.columns() + " FROM events WHERE 1=1";
         List<Object> parameters = new ArrayList<>();
         
         if (category != null && !category.isEmpty()) {
@@ -34,7 +47,7 @@ public class EventService {
         parameters.add(size);
         parameters.add(page * size);
 
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             for (int i = 0; i < parameters.size(); i++) {
@@ -43,7 +56,7 @@ public class EventService {
             
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    events.add(mapResultSetToEvent(rs));
+                    events.add(projection.map(rs));
                 }
             }
         }
@@ -51,8 +64,47 @@ public class EventService {
         return events;
     }
 
+    /**
+     * Keyset variant of {@link #getAllEvents}: returns the events that follow {@code cursor}
+     * in {@code (event_date, id)} order, so deep pages cost the same as the first one.
+     */
+    public EventPage getEventsPage(String category, String status, EventCursor cursor, int size,
+                                   EventProjection projection) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT " + projection.columns() + " FROM events WHERE 1=1");
+        List<Object> parameters = new ArrayList<>();
+        
+        if (category != null && !category.isEmpty()) {
+            sql.append(" AND category = ?");
+            parameters.add(category);
+        }
+        
+        if (status != null && !status.isEmpty()) {
+            sql.append(" AND status = ?");
+            parameters.add(status);
+        }
+        
+        return queryPage(sql, parameters, cursor, size, projection);
+    }
+
     public Event getEventById(Long id) throws SQLException {
-        String sql = "SELECT * FROM events WHERE id = ?";
+        if (!EventCache.isEnabled()) {
+            return loadEventById(id);
+        }
+        
+        EventCache cache = EventCache.getInstance();
+        Event cached = cache.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        
+        long loadToken = cache.loadToken(id);
+        Event event = loadEventById(id);
+        cache.put(id, event, loadToken);
+        return event;
+    }
+
+    private Event loadEventById(Long id) throws SQLException {
+        String sql = "SELECT " + EventProjection.FULL.columns() + " FROM events WHERE id = ?";
         
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -135,9 +187,12 @@ public class EventService {
             stmt.setLong(15, event.getId());
             
             int affectedRows = stmt.executeUpdate();
+            EventCache.getInstance().invalidate(event.getId());
             if (affectedRows == 0) {
                 return null; // Event not found
             }
+            // The venue, and with it the seats, may have changed
+            SeatInventoryManager.getInstance().evict(event.getId());
         }
         
         return getEventById(event.getId());
@@ -151,15 +206,23 @@ public class EventService {
             
             stmt.setLong(1, id);
             int affectedRows = stmt.executeUpdate();
+            EventCache.getInstance().invalidate(id);
+            if (affectedRows > 0) {
+                SeatInventoryManager.getInstance().evict(id);
+                if (CapacityAggregator.isEnabled()) {
+                    CapacityAggregator.getInstance().evict(id);
+                }
+            }
             return affectedRows > 0;
         }
     }
 
     public List<TicketType> getTicketTypesByEventId(Long eventId) throws SQLException {
         List<TicketType> ticketTypes = new ArrayList<>();
-        String sql = "SELECT * FROM ticket_types WHERE event_id = ? AND is_active = true ORDER BY price ASC";
+        String sql = "SELECT " + TICKET_TYPE_COLUMNS + " FROM ticket_types " +
+                    "WHERE event_id = ? AND is_active = true ORDER BY price ASC";
         
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.getReadConnection(eventFence(eventId));
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setLong(1, eventId);
@@ -206,32 +269,214 @@ public class EventService {
                 }
             }
         }
+        DatabaseConnection.recordWrite(eventFence(ticketType.getEventId()));
         
         return ticketType;
     }
 
-    public boolean updateEventCapacity(Long eventId, int bookedSeats) throws SQLException {
-        String sql = "UPDATE events SET booked_seats = booked_seats + ? WHERE id = ?";
+    public CapacityUpdateResult updateEventCapacity(Long eventId, int bookedSeats) throws SQLException {
+        EventCache.getInstance().invalidate(eventId);
+        if (CapacityAggregator.isEnabled()) {
+            return CapacityAggregator.getInstance().addBookedSeats(eventId, bookedSeats);
+        }
+        
+        // Releases always apply; bookings only while the capacity (if any) allows them
+        String sql = "UPDATE events SET booked_seats = booked_seats + ? WHERE id = ? " +
+                    "AND (? <= 0 OR capacity IS NULL OR capacity <= 0 OR booked_seats + ? <= capacity)";
         
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setInt(1, bookedSeats);
             stmt.setLong(2, eventId);
+            stmt.setInt(3, bookedSeats);
+            stmt.setInt(4, bookedSeats);
             
-            int affectedRows = stmt.executeUpdate();
-            return affectedRows > 0;
+            if (stmt.executeUpdate() > 0) {
+                return CapacityUpdateResult.APPLIED;
+            }
+            return existingEventIds(conn, Set.of(eventId)).contains(eventId)
+                    ? CapacityUpdateResult.CAPACITY_EXCEEDED : CapacityUpdateResult.NOT_FOUND;
         }
     }
 
+    /**
+     * Applies many booked-seats deltas at once; the result map has the same keys, in the same order.
+     * Without the write-behind aggregator all deltas go to the database in one statement.
+     */
+    public Map<Long, CapacityUpdateResult> updateEventCapacities(Map<Long, Integer> bookedSeatsByEvent) throws SQLException {
+        for (Long eventId : bookedSeatsByEvent.keySet()) {
+            EventCache.getInstance().invalidate(eventId);
+        }
+        if (CapacityAggregator.isEnabled()) {
+            return CapacityAggregator.getInstance().addBookedSeats(bookedSeatsByEvent);
+        }
+        
+        Set<Long> updated;
+        Set<Long> existing;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            updated = addBookedSeats(conn, bookedSeatsByEvent);
+            Set<Long> rejected = new HashSet<>(bookedSeatsByEvent.keySet());
+            rejected.removeAll(updated);
+            existing = rejected.isEmpty() ? Set.of() : existingEventIds(conn, rejected);
+        }
+        
+        Map<Long, CapacityUpdateResult> results = new LinkedHashMap<>();
+        for (Long eventId : bookedSeatsByEvent.keySet()) {
+            results.put(eventId, updated.contains(eventId) ? CapacityUpdateResult.APPLIED
+                    : existing.contains(eventId) ? CapacityUpdateResult.CAPACITY_EXCEEDED
+                    : CapacityUpdateResult.NOT_FOUND);
+        }
+        return results;
+    }
+
+    /**
+     * {@link #updateEventCapacities} for deltas that may be delivered more than once: those with
+     * an update id are applied only if that id was not applied before, in the same transaction
+     * that records it (see {@link AppliedCapacityUpdates}).
+     * <p>
+     * Returns one result per update, in the same order. Updates are taken in that order against a
+     * running total per event, so of several bookings for an event only those that no longer fit
+     * are rejected; a rejected update's id is not kept, so it can be sent again. An update applied
+     * before, or sent twice in the request, gets the result of its first application.
+     * <p>
+     * Always writes to the database, also with the write-behind aggregator enabled, whose
+     * counters take these deltas in at their next reconciliation.
+     */
+    public List<CapacityUpdateResult> applyCapacityUpdates(List<CapacityUpdate> updates) throws SQLException {
+        List<String> updateIds = new ArrayList<>();
+        Set<Long> eventIds = new HashSet<>();
+        for (CapacityUpdate update : updates) {
+            EventCache.getInstance().invalidate(update.getEventId());
+            eventIds.add(update.getEventId());
+            if (update.getUpdateId() != null) {
+                updateIds.add(update.getUpdateId());
+            }
+        }
+        AppliedCapacityUpdates.purgeIfDue();
+        
+        List<CapacityUpdateResult> results = new ArrayList<>(updates.size());
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                Set<String> fresh = AppliedCapacityUpdates.record(conn, updateIds);
+                Map<Long, int[]> seatsByEvent = lockBookedSeats(conn, eventIds);
+                Map<Long, Integer> bookedSeatsByEvent = new LinkedHashMap<>();
+                Map<String, CapacityUpdateResult> resultsById = new HashMap<>();
+                List<String> rejectedIds = new ArrayList<>();
+                for (CapacityUpdate update : updates) {
+                    String updateId = update.getUpdateId();
+                    if (updateId != null && resultsById.containsKey(updateId)) {
+                        results.add(resultsById.get(updateId));
+                        continue;
+                    }
+                    CapacityUpdateResult result;
+                    int[] seats = seatsByEvent.get(update.getEventId());
+                    int delta = update.getBookedSeats();
+                    if (updateId != null && !fresh.contains(updateId)) {
+                        result = CapacityUpdateResult.APPLIED;
+                    } else if (seats == null) {
+                        result = CapacityUpdateResult.NOT_FOUND;
+                    } else if (delta <= 0 || seats[1] <= 0 || seats[0] + delta <= seats[1]) {
+                        // seats: booked, capacity (0 when unlimited)
+                        seats[0] += delta;
+                        bookedSeatsByEvent.merge(update.getEventId(), delta, Integer::sum);
+                        result = CapacityUpdateResult.APPLIED;
+                    } else {
+                        result = CapacityUpdateResult.CAPACITY_EXCEEDED;
+                    }
+                    if (updateId != null) {
+                        resultsById.put(updateId, result);
+                        if (result != CapacityUpdateResult.APPLIED) {
+                            rejectedIds.add(updateId);
+                        }
+                    }
+                    results.add(result);
+                }
+                
+                if (!bookedSeatsByEvent.isEmpty()) {
+                    // The rows are locked and the deltas fit, so every event is updated
+                    addBookedSeats(conn, bookedSeatsByEvent);
+                }
+                AppliedCapacityUpdates.forget(conn, rejectedIds);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Locks the events' rows for the caller's transaction and returns their booked seats and
+     * capacity (0 when unlimited); unknown events are missing. Rows are locked in id order so
+     * concurrent batches do not deadlock.
+     */
+    private Map<Long, int[]> lockBookedSeats(Connection conn, Set<Long> eventIds) throws SQLException {
+        String sql = "SELECT id, booked_seats, capacity FROM events WHERE id = ANY(?) ORDER BY id FOR UPDATE";
+        
+        Map<Long, int[]> seatsByEvent = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setArray(1, conn.createArrayOf("bigint", eventIds.toArray()));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    seatsByEvent.put(rs.getLong("id"), new int[] {rs.getInt("booked_seats"), rs.getInt("capacity")});
+                }
+            }
+        }
+        return seatsByEvent;
+    }
+
+    /**
+     * Adds the deltas to {@code booked_seats} with one statement; returns the events updated.
+     * Releases always apply; bookings only while the capacity (if any) allows them.
+     */
+    private Set<Long> addBookedSeats(Connection conn, Map<Long, Integer> bookedSeatsByEvent) throws SQLException {
+        String sql = "UPDATE events e SET booked_seats = e.booked_seats + t.delta " +
+                    "FROM unnest(?::bigint[], ?::int[]) AS t(id, delta) " +
+                    "WHERE e.id = t.id " +
+                    "AND (t.delta <= 0 OR e.capacity IS NULL OR e.capacity <= 0 OR e.booked_seats + t.delta <= e.capacity) " +
+                    "RETURNING e.id";
+        
+        Set<Long> updated = new HashSet<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setArray(1, conn.createArrayOf("bigint", bookedSeatsByEvent.keySet().toArray()));
+            stmt.setArray(2, conn.createArrayOf("int4", bookedSeatsByEvent.values().toArray()));
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    updated.add(rs.getLong(1));
+                }
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * Which of the given events exist; tells a capacity rejection from an unknown event.
+     */
+    private Set<Long> existingEventIds(Connection conn, Set<Long> eventIds) throws SQLException {
+        Set<Long> existing = new HashSet<>();
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT id FROM events WHERE id = ANY(?)")) {
+            stmt.setArray(1, conn.createArrayOf("bigint", eventIds.toArray()));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    existing.add(rs.getLong(1));
+                }
+            }
+        }
+        return existing;
+    }
+
     public List<Seat> getAvailableSeats(Long eventId) throws SQLException {
         List<Seat> seats = new ArrayList<>();
-        String sql = "SELECT s.* FROM seats s " +
+        String sql = "SELECT " + SEAT_COLUMNS + " FROM seats s " +
                     "JOIN events e ON s.venue_id = e.venue_id " +
                     "WHERE e.id = ? AND s.is_available = true " +
                     "ORDER BY s.section, s.row_number, s.seat_number";
         
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.getReadConnection(eventFence(eventId));
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setLong(1, eventId);
@@ -243,10 +488,112 @@ public class EventService {
             }
         }
         
+        // Claims not yet written back to the database are only visible in memory
+        SeatInventory inventory = SeatInventoryManager.getInstance().getLoadedInventory(eventId);
+        if (inventory != null) {
+            seats.removeIf(seat -> !inventory.isAvailable(seat.getId()));
+        }
+        
         return seats;
     }
 
+    /**
+     * Index of the event's seats (ids and labels in venue order) that availability maps refer to.
+     */
+    public Map<String, Object> getSeatLayout(Long eventId) throws SQLException {
+        return SeatAvailabilityMap.layout(eventId, SeatInventoryManager.getInstance().getAvailability(eventId));
+    }
+
+    /**
+     * Availability of the event's seats: the changes since {@code since} when the inventory
+     * still has them, otherwise a full snapshot in {@code format}.
+     */
+    public Map<String, Object> getSeatAvailability(Long eventId, Long since, String format) throws SQLException {
+        SeatInventory inventory = SeatInventoryManager.getInstance().getAvailability(eventId);
+        if (since != null) {
+            Map<String, Object> delta = SeatAvailabilityMap.delta(eventId, inventory, since);
+            if (delta != null) {
+                return delta;
+            }
+        }
+        return SeatAvailabilityMap.snapshot(eventId, inventory, format);
+    }
+
+    /**
+     * Assigns the best available {@code quantity} seats of a section (of any section when
+     * {@code section} is null), in venue order. Returns an empty list when not enough are left.
+     */
+    public List<Seat> allocateSeats(Long eventId, String section, int quantity) throws SQLException {
+        if (SeatInventoryManager.isEnabled()) {
+            return SeatInventoryManager.getInstance().allocateSeats(eventId, section, quantity);
+        }
+        
+        // SKIP LOCKED: concurrent allocations take the next free seats instead of waiting for the same rows
+        String sql = "UPDATE seats s SET is_available = false WHERE s.id IN (" +
+                    "SELECT s.id FROM seats s JOIN events e ON s.venue_id = e.venue_id " +
+                    "WHERE e.id = ? AND s.is_available = true AND (?::varchar IS NULL OR s.section = ?) " +
+                    "ORDER BY s.section, s.row_number, s.seat_number LIMIT ? FOR UPDATE OF s SKIP LOCKED) " +
+                    "RETURNING " + SEAT_COLUMNS;
+        
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setLong(1, eventId);
+                stmt.setString(2, section);
+                stmt.setString(3, section);
+                stmt.setInt(4, quantity);
+                
+                List<Seat> seats = new ArrayList<>();
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        seats.add(mapResultSetToSeat(rs));
+                    }
+                }
+                if (seats.size() < quantity) {
+                    conn.rollback();
+                    return List.of();
+                }
+                conn.commit();
+                DatabaseConnection.recordWrite(eventFence(eventId));
+                seats.sort(Comparator.comparing(Seat::getSection)
+                        .thenComparing(Seat::getRowNumber)
+                        .thenComparing(Seat::getSeatNumber));
+                return seats;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Holds the given seats for {@code ttlMillis}; null when one of them is not available.
+     */
+    public SeatHold holdSeats(Long eventId, List<Long> seatIds, long ttlMillis) throws SQLException {
+        return SeatHoldManager.getInstance().hold(eventId, seatIds, ttlMillis);
+    }
+
+    /**
+     * Holds the best available {@code quantity} seats (see {@link #allocateSeats}); null when not enough are left.
+     */
+    public SeatHold holdBestSeats(Long eventId, String section, int quantity, long ttlMillis) throws SQLException {
+        List<Seat> seats = allocateSeats(eventId, section, quantity);
+        return seats.isEmpty() ? null : SeatHoldManager.getInstance().register(eventId, seats, ttlMillis);
+    }
+
+    public SeatHold confirmHold(Long eventId, String holdId) {
+        return SeatHoldManager.getInstance().confirm(eventId, holdId);
+    }
+
+    public SeatHold releaseHold(Long eventId, String holdId) throws SQLException {
+        return SeatHoldManager.getInstance().release(eventId, holdId);
+    }
+
     public boolean reserveSeat(Long eventId, Long seatId) throws SQLException {
+        if (SeatInventoryManager.isEnabled()) {
+            return SeatInventoryManager.getInstance().reserveSeat(eventId, seatId);
+        }
+        
         String sql = "UPDATE seats SET is_available = false WHERE id = ? AND is_available = true";
         
         try (Connection conn = DatabaseConnection.getConnection();
@@ -254,11 +601,18 @@ public class EventService {
             
             stmt.setLong(1, seatId);
             int affectedRows = stmt.executeUpdate();
+            if (affectedRows > 0) {
+                DatabaseConnection.recordWrite(eventFence(eventId));
+            }
             return affectedRows > 0;
         }
     }
 
     public boolean releaseSeat(Long eventId, Long seatId) throws SQLException {
+        if (SeatInventoryManager.isEnabled()) {
+            return SeatInventoryManager.getInstance().releaseSeat(eventId, seatId);
+        }
+        
         String sql = "UPDATE seats SET is_available = true WHERE id = ? AND is_available = false";
         
         try (Connection conn = DatabaseConnection.getConnection();
@@ -266,20 +620,26 @@ public class EventService {
             
             stmt.setLong(1, seatId);
             int affectedRows = stmt.executeUpdate();
+            if (affectedRows > 0) {
+                DatabaseConnection.recordWrite(eventFence(eventId));
+            }
             return affectedRows > 0;
         }
     }
 
     public List<Event> searchEvents(String query, String category, String dateFrom, String dateTo, 
-                                   int page, int size) throws SQLException {
+                                   int page, int size, EventProjection projection) throws SQLException {
         List<Event> events = new ArrayList<>();
-        StringBuilder sql = new StringBuilder("SELECT * FROM events WHERE 1=1");
+        StringBuilder sql = new StringBuilder("SELECT " + projection.columns() + " FROM events WHERE 1=1");
         List<Object> parameters = new ArrayList<>();
+        String tsQuery = EventSearch.toTsQuery(query);
+        if (tsQuery == null && query != null && !query.isEmpty()) {
+            return events; // nothing searchable in the query text
+        }
         
-        if (query != null && !query.isEmpty()) {
-            sql.append(" AND (title LIKE ? OR description LIKE ?)");
-            parameters.add("%" + query + "%");
-            parameters.add("%" + query + "%");
+        if (tsQuery != null) {
+            sql.append(" AND ").append(EventSearch.match());
+            parameters.add(tsQuery);
         }
         
         if (category != null && !category.isEmpty()) {
@@ -297,11 +657,17 @@ public class EventService {
             parameters.add(Timestamp.valueOf(LocalDateTime.parse(dateTo)));
         }
         
-        sql.append(" ORDER BY event_date ASC LIMIT ? OFFSET ?");
+        if (tsQuery != null) {
+            // Best matches first, upcoming events first among equally ranked ones
+            sql.append(" ORDER BY ").append(EventSearch.rank()).append(" DESC, event_date ASC LIMIT ? OFFSET ?");
+            parameters.add(tsQuery);
+        } else {
+            sql.append(" ORDER BY event_date ASC LIMIT ? OFFSET ?");
+        }
         parameters.add(size);
         parameters.add(page * size);
 
-        try (Connection conn = DatabaseConnection.getConnection();
+        try (Connection conn = DatabaseConnection.getReadConnection();
              PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
             
             for (int i = 0; i < parameters.size(); i++) {
@@ -310,7 +676,7 @@ public class EventService {
             
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    events.add(mapResultSetToEvent(rs));
+                    events.add(projection.map(rs));
                 }
             }
         }
@@ -318,62 +684,114 @@ public class EventService {
         return events;
     }
 
-    private Event mapResultSetToEvent(ResultSet rs) throws SQLException {
-        Event event = new Event();
-        event.setId(rs.getLong("id"));
-        event.setTitle(rs.getString("title"));
-        event.setDescription(rs.getString("description"));
-        event.setEventDate(rs.getTimestamp("event_date").toLocalDateTime());
+    /**
+     * Keyset variant of {@link #searchEvents}.
+     */
+    public EventPage searchEventsPage(String query, String category, String dateFrom, String dateTo,
+                                      EventCursor cursor, int size, EventProjection projection) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT " + projection.columns() + " FROM events WHERE 1=1");
+        List<Object> parameters = new ArrayList<>();
+        String tsQuery = EventSearch.toTsQuery(query);
+        if (tsQuery == null && query != null && !query.isEmpty()) {
+            return new EventPage(new ArrayList<>(), null);
+        }
+        
+        // Keyset pages follow (event_date, id) order, so results are filtered but not ranked
+        if (tsQuery != null) {
+            sql.append(" AND ").append(EventSearch.match());
+            parameters.add(tsQuery);
+        }
         
-        // Map to available fields - The schema has: venue, city, country, capacity, available_seats
-        // but the Event model expects: venueId, organizerId, category, maxAttendees
-        // Create a simple hash from venue string for venueId
-        event.setVenueId((long)rs.getString("venue").hashCode());
-        event.setOrganizerId(1L); // Default organizer
+        if (category != null && !category.isEmpty()) {
+            sql.append(" AND category = ?");
+            parameters.add(category);
+        }
         
-        // Use city as category
-        event.setCategory(rs.getString("city"));
-        event.setStatus(rs.getString("status"));
-        event.setMaxAttendees(rs.getInt("capacity"));
+        if (dateFrom != null && !dateFrom.isEmpty()) {
+            sql.append(" AND event_date >= ?");
+            parameters.add(Timestamp.valueOf(LocalDateTime.parse(dateFrom)));
+        }
         
-        // Map base_price from database
-        java.math.BigDecimal basePrice = rs.getBigDecimal("base_price");
-        if (basePrice != null) {
-            event.setBasePrice(basePrice);
+        if (dateTo != null && !dateTo.isEmpty()) {
+            sql.append(" AND event_date <= ?");
+            parameters.add(Timestamp.valueOf(LocalDateTime.parse(dateTo)));
         }
         
-        event.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
-        Timestamp updatedAt = rs.getTimestamp("updated_at");
-        if (updatedAt != null) {
-            event.setUpdatedAt(updatedAt.toLocalDateTime());
+        return queryPage(sql, parameters, cursor, size, projection);
+    }
+
+    private EventPage queryPage(StringBuilder sql, List<Object> parameters, EventCursor cursor, int size,
+                                EventProjection projection) throws SQLException {
+        if (cursor != null) {
+            sql.append(" AND (event_date, id) > (?, ?)");
+            parameters.add(Timestamp.valueOf(cursor.getEventDate()));
+            parameters.add(cursor.getId());
         }
         
-        return event;
+        // One extra row tells us whether another page exists
+        sql.append(" ORDER BY event_date ASC, id ASC LIMIT ?");
+        parameters.add(size + 1);
+        
+        List<Event> events = new ArrayList<>();
+        try (Connection conn = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            
+            for (int i = 0; i < parameters.size(); i++) {
+                stmt.setObject(i + 1, parameters.get(i));
+            }
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    events.add(projection.map(rs));
+                }
+            }
+        }
+        
+        String nextCursor = null;
+        if (events.size() > size) {
+            events = events.subList(0, size);
+            Event last = events.get(size - 1);
+            nextCursor = new EventCursor(last.getEventDate(), last.getId()).encode();
+        }
+        
+        return new EventPage(new ArrayList<>(events), nextCursor);
+    }
+
+    Event mapResultSetToEvent(ResultSet rs) throws SQLException {
+        return EventProjection.FULL.map(rs);
+    }
+
+    /**
+     * Fence key of writes that reads of the event's ticket types and seats must see; see
+     * {@link DatabaseConnection#getReadConnection(String)}.
+     */
+    static String eventFence(Long eventId) {
+        return "event:" + eventId;
     }
 
     private TicketType mapResultSetToTicketType(ResultSet rs) throws SQLException {
         TicketType ticketType = new TicketType();
-        ticketType.setId(rs.getLong("id"));
-        ticketType.setEventId(rs.getLong("event_id"));
-        ticketType.setName(rs.getString("name"));
-        ticketType.setDescription(rs.getString("description"));
-        ticketType.setPrice(rs.getBigDecimal("price"));
-        ticketType.setQuantityAvailable(rs.getInt("quantity_available"));
-        ticketType.setQuantitySold(rs.getInt("quantity_sold"));
-        
-        Timestamp salesStart = rs.getTimestamp("sales_start");
+        ticketType.setId(rs.getLong(1));
+        ticketType.setEventId(rs.getLong(2));
+        ticketType.setName(rs.getString(3));
+        ticketType.setDescription(rs.getString(4));
+        ticketType.setPrice(rs.getBigDecimal(5));
+        ticketType.setQuantityAvailable(rs.getInt(6));
+        ticketType.setQuantitySold(rs.getInt(7));
+        
+        Timestamp salesStart = rs.getTimestamp(8);
         if (salesStart != null) {
             ticketType.setSalesStart(salesStart.toLocalDateTime());
         }
         
-        Timestamp salesEnd = rs.getTimestamp("sales_end");
+        Timestamp salesEnd = rs.getTimestamp(9);
         if (salesEnd != null) {
             ticketType.setSalesEnd(salesEnd.toLocalDateTime());
         }
         
-        ticketType.setIsActive(rs.getBoolean("is_active"));
-        ticketType.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
-        Timestamp updatedAt = rs.getTimestamp("updated_at");
+        ticketType.setIsActive(rs.getBoolean(10));
+        ticketType.setCreatedAt(rs.getTimestamp(11).toLocalDateTime());
+        Timestamp updatedAt = rs.getTimestamp(12);
         if (updatedAt != null) {
             ticketType.setUpdatedAt(updatedAt.toLocalDateTime());
         }
@@ -383,14 +801,14 @@ public class EventService {
 
     private Seat mapResultSetToSeat(ResultSet rs) throws SQLException {
         Seat seat = new Seat();
-        seat.setId(rs.getLong("id"));
-        seat.setVenueId(rs.getLong("venue_id"));
-        seat.setSection(rs.getString("section"));
-        seat.setRowNumber(rs.getString("row_number"));
-        seat.setSeatNumber(rs.getString("seat_number"));
-        seat.setSeatType(rs.getString("seat_type"));
-        seat.setIsAvailable(rs.getBoolean("is_available"));
-        seat.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+        seat.setId(rs.getLong(1));
+        seat.setVenueId(rs.getLong(2));
+        seat.setSection(rs.getString(3));
+        seat.setRowNumber(rs.getString(4));
+        seat.setSeatNumber(rs.getString(5));
+        seat.setSeatType(rs.getString(6));
+        seat.setIsAvailable(rs.getBoolean(7));
+        seat.setCreatedAt(rs.getTimestamp(8).toLocalDateTime());
         return seat;
     }
 }
@@ -0,0 +1,158 @@
+package com.eventticketing.event.service;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact views of an event's seat map, built from its {@link SeatInventory}. Seats are
+ * addressed by their index in venue order (section, row, seat number):
+ * <ul>
+ *   <li>the layout maps indexes to seat ids and labels; it only changes with the venue, so
+ *       clients fetch it once;</li>
+ *   <li>a snapshot gives the availability of every seat, per section, as run lengths
+ *       (alternating available / taken, starting with available) or as a bitset;</li>
+ *   <li>a delta lists the seats whose availability changed since a version the client already
+ *       has, with their current state.</li>
+ * </ul>
+ * Every response carries the version it brings the client to.
+ */
+public final class SeatAvailabilityMap {
+    public static final String FORMAT_RUNS = "runs";
+    public static final String FORMAT_BITSET = "bitset";
+
+    private SeatAvailabilityMap() {
+    }
+
+    public static Map<String, Object> layout(Long eventId, SeatInventory inventory) {
+        List<Map<String, Object>> sections = new ArrayList<>();
+        for (int s = 0; s < inventory.getSectionCount(); s++) {
+            List<Map<String, Object>> rows = new ArrayList<>();
+            for (int r = inventory.getSectionFirstRow(s); r < inventory.getSectionEndRow(s); r++) {
+                int start = inventory.getRowStart(r);
+                int end = inventory.getRowEnd(r);
+                long[] seatIds = new long[end - start];
+                String[] seatNumbers = new String[end - start];
+                for (int i = start; i < end; i++) {
+                    seatIds[i - start] = inventory.seatIdAt(i);
+                    seatNumbers[i - start] = inventory.getSeatNumber(i);
+                }
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("row", inventory.getRowLabel(r));
+                row.put("start", start);
+                row.put("seatIds", seatIds);
+                row.put("seatNumbers", seatNumbers);
+                rows.add(row);
+            }
+            Map<String, Object> section = new LinkedHashMap<>();
+            section.put("name", inventory.getSectionName(s));
+            section.put("start", inventory.getSectionStart(s));
+            section.put("count", inventory.getSectionEnd(s) - inventory.getSectionStart(s));
+            section.put("rows", rows);
+            sections.add(section);
+        }
+
+        Map<String, Object> layout = new LinkedHashMap<>();
+        layout.put("eventId", eventId);
+        layout.put("total", inventory.getTotalSeats());
+        layout.put("sections", sections);
+        return layout;
+    }
+
+    /**
+     * Availability of every seat, as run lengths or (with {@link #FORMAT_BITSET}) a base64
+     * bitset per section where bit i of byte i / 8 is set when seat {@code start + i} is available.
+     */
+    public static Map<String, Object> snapshot(Long eventId, SeatInventory inventory, String format) {
+        // Read before the seats: a change racing with the snapshot is then repeated by the next delta
+        long version = inventory.getVersion();
+        boolean bitset = FORMAT_BITSET.equals(format);
+
+        List<Map<String, Object>> sections = new ArrayList<>();
+        int available = 0;
+        for (int s = 0; s < inventory.getSectionCount(); s++) {
+            int start = inventory.getSectionStart(s);
+            int end = inventory.getSectionEnd(s);
+            Map<String, Object> section = new LinkedHashMap<>();
+            section.put("name", inventory.getSectionName(s));
+            section.put("start", start);
+            section.put("count", end - start);
+            int free;
+            if (bitset) {
+                byte[] bits = new byte[(end - start + 7) / 8];
+                free = 0;
+                for (int i = inventory.nextFree(start, end); i >= 0; i = inventory.nextFree(i + 1, end)) {
+                    bits[(i - start) >>> 3] |= (byte) (1 << ((i - start) & 7));
+                    free++;
+                }
+                section.put("available", free);
+                section.put("bitset", Base64.getEncoder().encodeToString(bits));
+            } else {
+                List<Integer> runs = new ArrayList<>();
+                free = 0;
+                boolean inFreeRun = true;
+                int pos = start;
+                while (pos < end) {
+                    int next = inFreeRun ? inventory.nextTaken(pos, end) : inventory.nextFree(pos, end);
+                    if (next < 0) {
+                        next = end;
+                    }
+                    runs.add(next - pos);
+                    if (inFreeRun) {
+                        free += next - pos;
+                    }
+                    pos = next;
+                    inFreeRun = !inFreeRun;
+                }
+                section.put("available", free);
+                section.put("runs", runs);
+            }
+            available += free;
+            sections.add(section);
+        }
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("eventId", eventId);
+        snapshot.put("version", version);
+        snapshot.put("delta", false);
+        snapshot.put("format", bitset ? FORMAT_BITSET : FORMAT_RUNS);
+        snapshot.put("total", inventory.getTotalSeats());
+        snapshot.put("available", available);
+        snapshot.put("sections", sections);
+        return snapshot;
+    }
+
+    /**
+     * Seats changed since {@code since}, split by their current state; null when the
+     * inventory can no longer tell, in which case the client needs a {@link #snapshot}.
+     */
+    public static Map<String, Object> delta(Long eventId, SeatInventory inventory, long since) {
+        SeatInventory.Changes changes = inventory.changedSince(since);
+        if (changes == null) {
+            return null;
+        }
+
+        // A seat claimed and released again is listed once, with its state now
+        BitSet seen = new BitSet(inventory.getTotalSeats());
+        List<Integer> nowAvailable = new ArrayList<>();
+        List<Integer> nowTaken = new ArrayList<>();
+        for (int index : changes.indexes) {
+            if (!seen.get(index)) {
+                seen.set(index);
+                (inventory.isFreeIndex(index) ? nowAvailable : nowTaken).add(index);
+            }
+        }
+
+        Map<String, Object> delta = new LinkedHashMap<>();
+        delta.put("eventId", eventId);
+        delta.put("version", changes.version);
+        delta.put("delta", true);
+        delta.put("since", since);
+        delta.put("available", nowAvailable);
+        delta.put("taken", nowTaken);
+        return delta;
+    }
+}
@@ -0,0 +1,74 @@
+package com.eventticketing.event.service;
+
+import com.eventticketing.shared.model.Seat;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Seats taken for a limited time, e.g. while they sit in a cart. Unless confirmed or released
+ * first, the seats become available again at {@link #getExpiresAt()}.
+ */
+public class SeatHold {
+    private final String holdId;
+    private final Long eventId;
+    private final List<Long> seatIds;
+    private final List<Seat> seats;
+    private final long expiresAtMillis;
+    private volatile String status = "HELD";
+    private volatile TimingWheel.Timeout<SeatHold> timeout;
+
+    SeatHold(String holdId, Long eventId, List<Long> seatIds, List<Seat> seats, long expiresAtMillis) {
+        this.holdId = holdId;
+        this.eventId = eventId;
+        this.seatIds = seatIds;
+        this.seats = seats;
+        this.expiresAtMillis = expiresAtMillis;
+    }
+
+    public String getHoldId() {
+        return holdId;
+    }
+
+    public Long getEventId() {
+        return eventId;
+    }
+
+    public List<Long> getSeatIds() {
+        return seatIds;
+    }
+
+    /**
+     * Seat labels when the seats were allocated by the event servlet, null for holds on given seat ids.
+     */
+    public List<Seat> getSeats() {
+        return seats;
+    }
+
+    public String getExpiresAt() {
+        return Instant.ofEpochMilli(expiresAtMillis).toString();
+    }
+
+    /**
+     * HELD, CONFIRMED, RELEASED or EXPIRED.
+     */
+    public String getStatus() {
+        return status;
+    }
+
+    void setStatus(String status) {
+        this.status = status;
+    }
+
+    long getExpiresAtMillis() {
+        return expiresAtMillis;
+    }
+
+    TimingWheel.Timeout<SeatHold> getTimeout() {
+        return timeout;
+    }
+
+    void setTimeout(TimingWheel.Timeout<SeatHold> timeout) {
+        this.timeout = timeout;
+    }
+}
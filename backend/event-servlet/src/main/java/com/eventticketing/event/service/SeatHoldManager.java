@@ -0,0 +1,327 @@
+package com.eventticketing.event.service;
+
+import com.eventticketing.shared.config.AppConfig;
+import com.eventticketing.shared.database.DatabaseConnection;
+import com.eventticketing.shared.model.Seat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Temporary seat holds. A hold takes its seats like a reservation and remembers, in memory,
+ * when they have to be given back; the deadlines are indexed by a {@link TimingWheel}, so
+ * finding what expired costs nothing per pending hold.
+ * <ul>
+ *   <li>{@link #confirm} keeps the seats for good, {@link #release} gives them back early;</li>
+ *   <li>every {@code seat.hold.tick.ms} an expiry thread advances the wheel and releases the
+ *       seats of all holds that expired since the last tick together: through the seat inventory,
+ *       whose flusher writes them with one {@code UPDATE seats ... WHERE id = ANY(?)}, or with that
+ *       statement directly when the inventory is disabled; seats whose release fails are tried
+ *       again every {@code seat.hold.release.retry.ms} until it succeeds;</li>
+ *   <li>holds do not survive the process: an orderly shutdown releases the ones still pending.</li>
+ * </ul>
+ */
+public class SeatHoldManager {
+    private static final Logger logger = LoggerFactory.getLogger(SeatHoldManager.class);
+
+    private static final long TICK_MILLIS = AppConfig.getLong("seat.hold.tick.ms", 100);
+    private static final long RELEASE_RETRY_MILLIS = AppConfig.getLong("seat.hold.release.retry.ms", 1000);
+
+    private static final String RESERVE_SQL =
+            "UPDATE seats SET is_available = false WHERE id = ANY(?) AND is_available = true " +
+            "AND venue_id = (SELECT venue_id FROM events WHERE id = ?)";
+    private static final String RELEASE_SQL = "UPDATE seats SET is_available = true WHERE id = ANY(?)";
+
+    private static volatile SeatHoldManager instance;
+    private static final ReentrantLock instanceLock = new ReentrantLock();
+
+    private final ConcurrentHashMap<String, SeatHold> holds = new ConcurrentHashMap<>();
+    private final TimingWheel<SeatHold> wheel = new TimingWheel<>(TICK_MILLIS, System.currentTimeMillis());
+    private final ScheduledExecutorService expiry;
+    // Expired holds whose seats could not be released yet; only touched by the expiry thread
+    private final List<SeatHold> unreleased = new ArrayList<>();
+    private long nextReleaseRetry;
+    private volatile int unreleasedCount;
+
+    private final LongAdder created = new LongAdder();
+    private final LongAdder confirmed = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    private SeatHoldManager() {
+        this.expiry = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "seat-hold-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        expiry.scheduleWithFixedDelay(this::expireSafely, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public static SeatHoldManager getInstance() {
+        SeatHoldManager current = instance;
+        if (current == null) {
+            instanceLock.lock();
+            try {
+                current = instance;
+                if (current == null) {
+                    current = new SeatHoldManager();
+                    instance = current;
+                }
+            } finally {
+                instanceLock.unlock();
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Stops expiring holds and releases the seats of every hold still pending.
+     */
+    public static void shutdownIfStarted() {
+        SeatHoldManager current = instance;
+        if (current != null) {
+            current.shutdown();
+        }
+    }
+
+    /**
+     * Takes all of {@code seatIds} for {@code ttlMillis}; returns null, taking none, when one of
+     * them is unknown for the event or not available.
+     */
+    public SeatHold hold(Long eventId, List<Long> seatIds, long ttlMillis) throws SQLException {
+        if (!reserve(eventId, seatIds)) {
+            return null;
+        }
+        return register(eventId, seatIds, null, ttlMillis);
+    }
+
+    /**
+     * Starts the hold of seats that were already taken, e.g. by the seat allocator.
+     */
+    public SeatHold register(Long eventId, List<Seat> seats, long ttlMillis) {
+        List<Long> seatIds = new ArrayList<>(seats.size());
+        for (Seat seat : seats) {
+            seatIds.add(seat.getId());
+        }
+        return register(eventId, seatIds, seats, ttlMillis);
+    }
+
+    /**
+     * Ends the hold and keeps its seats taken. Returns null when the hold is unknown for the
+     * event, or already expired, confirmed or released.
+     */
+    public SeatHold confirm(Long eventId, String holdId) {
+        SeatHold hold = take(eventId, holdId);
+        if (hold == null) {
+            return null;
+        }
+        hold.setStatus("CONFIRMED");
+        confirmed.increment();
+        return hold;
+    }
+
+    /**
+     * Ends the hold and gives its seats back. Returns null like {@link #confirm}.
+     */
+    public SeatHold release(Long eventId, String holdId) throws SQLException {
+        SeatHold hold = take(eventId, holdId);
+        if (hold == null) {
+            return null;
+        }
+        hold.setStatus("RELEASED");
+        releaseSeats(List.of(hold));
+        released.increment();
+        return hold;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("active", holds.size());
+        stats.put("scheduled", wheel.size());
+        stats.put("tickMillis", TICK_MILLIS);
+        stats.put("created", created.sum());
+        stats.put("confirmed", confirmed.sum());
+        stats.put("released", released.sum());
+        stats.put("expired", expired.sum());
+        stats.put("unreleased", unreleasedCount);
+        return stats;
+    }
+
+    private SeatHold register(Long eventId, List<Long> seatIds, List<Seat> seats, long ttlMillis) {
+        SeatHold hold = new SeatHold(UUID.randomUUID().toString(), eventId, List.copyOf(seatIds), seats,
+                System.currentTimeMillis() + ttlMillis);
+        holds.put(hold.getHoldId(), hold);
+        hold.setTimeout(wheel.schedule(hold, hold.getExpiresAtMillis()));
+        created.increment();
+        return hold;
+    }
+
+    /**
+     * Removes a pending hold of the event, winning against its expiry, or returns null.
+     */
+    private SeatHold take(Long eventId, String holdId) {
+        SeatHold hold = holds.get(holdId);
+        if (hold == null || !hold.getEventId().equals(eventId)) {
+            return null;
+        }
+        TimingWheel.Timeout<SeatHold> timeout = hold.getTimeout();
+        if (timeout == null || !timeout.cancel()) {
+            return null;
+        }
+        holds.remove(holdId, hold);
+        return hold;
+    }
+
+    private boolean reserve(Long eventId, List<Long> seatIds) throws SQLException {
+        if (SeatInventoryManager.isEnabled()) {
+            return SeatInventoryManager.getInstance().reserveSeats(eventId, seatIds);
+        }
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(RESERVE_SQL)) {
+                stmt.setArray(1, conn.createArrayOf("bigint", seatIds.toArray()));
+                stmt.setLong(2, eventId);
+                if (stmt.executeUpdate() != seatIds.size()) {
+                    conn.rollback();
+                    return false;
+                }
+                conn.commit();
+                DatabaseConnection.recordWrite(EventService.eventFence(eventId));
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private void releaseSeats(List<SeatHold> ended) throws SQLException {
+        if (ended.isEmpty()) {
+            return;
+        }
+        if (SeatInventoryManager.isEnabled()) {
+            Map<Long, List<Long>> seatsByEvent = new LinkedHashMap<>();
+            for (SeatHold hold : ended) {
+                seatsByEvent.computeIfAbsent(hold.getEventId(), id -> new ArrayList<>()).addAll(hold.getSeatIds());
+            }
+            for (Map.Entry<Long, List<Long>> entry : seatsByEvent.entrySet()) {
+                SeatInventoryManager.getInstance().releaseSeats(entry.getKey(), entry.getValue());
+            }
+            return;
+        }
+
+        List<Long> seatIds = new ArrayList<>();
+        for (SeatHold hold : ended) {
+            seatIds.addAll(hold.getSeatIds());
+        }
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(RELEASE_SQL)) {
+            stmt.setArray(1, conn.createArrayOf("bigint", seatIds.toArray()));
+            stmt.executeUpdate();
+        }
+        for (SeatHold hold : ended) {
+            DatabaseConnection.recordWrite(EventService.eventFence(hold.getEventId()));
+        }
+    }
+
+    private void expireSafely() {
+        List<SeatHold> due = new ArrayList<>();
+        try {
+            long now = System.currentTimeMillis();
+            wheel.advance(now, due::add);
+            for (SeatHold hold : due) {
+                hold.setStatus("EXPIRED");
+                holds.remove(hold.getHoldId(), hold);
+            }
+            expired.add(due.size());
+            // The wheel hands a hold out only once, so until its seats are released it stays here
+            unreleased.addAll(due);
+            if (unreleased.isEmpty() || (now < nextReleaseRetry && unreleased.size() > due.size())) {
+                return;
+            }
+
+            List<SeatHold> failed = releaseExpired(unreleased);
+            if (failed.isEmpty()) {
+                logger.debug("Released {} expired seat holds", unreleased.size());
+            } else {
+                nextReleaseRetry = now + RELEASE_RETRY_MILLIS;
+            }
+            unreleased.clear();
+            unreleased.addAll(failed);
+        } catch (RuntimeException e) {
+            logger.error("Seat hold expiry failed", e);
+        } finally {
+            unreleasedCount = unreleased.size();
+        }
+    }
+
+    /**
+     * Releases the seats of expired holds, per event when the seat inventory is enabled so one
+     * failing event does not hold the others back; returns the holds whose release failed.
+     */
+    private List<SeatHold> releaseExpired(List<SeatHold> expiredHolds) {
+        Map<Long, List<SeatHold>> byEvent = new LinkedHashMap<>();
+        if (SeatInventoryManager.isEnabled()) {
+            for (SeatHold hold : expiredHolds) {
+                byEvent.computeIfAbsent(hold.getEventId(), id -> new ArrayList<>()).add(hold);
+            }
+        } else {
+            byEvent.put(null, expiredHolds);
+        }
+
+        List<SeatHold> failed = new ArrayList<>();
+        for (List<SeatHold> group : byEvent.values()) {
+            try {
+                releaseSeats(group);
+            } catch (SQLException | RuntimeException e) {
+                failed.addAll(group);
+                logger.error("Failed to release the seats of {} expired holds, retrying in {} ms",
+                        group.size(), RELEASE_RETRY_MILLIS, e);
+            }
+        }
+        return failed;
+    }
+
+    private void shutdown() {
+        expiry.shutdown();
+        try {
+            expiry.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // The expiry thread has stopped, so its retry list is ours now
+        List<SeatHold> pending = new ArrayList<>(unreleased);
+        for (SeatHold hold : holds.values()) {
+            TimingWheel.Timeout<SeatHold> timeout = hold.getTimeout();
+            if (timeout != null && timeout.cancel()) {
+                hold.setStatus("RELEASED");
+                pending.add(hold);
+            }
+        }
+        holds.clear();
+        try {
+            releaseSeats(pending);
+            if (!pending.isEmpty()) {
+                logger.info("Released the seats of {} pending holds on shutdown", pending.size());
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to release the seats of {} pending holds on shutdown", pending.size(), e);
+        }
+    }
+}
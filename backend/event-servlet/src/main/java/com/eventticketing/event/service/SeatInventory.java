@@ -0,0 +1,472 @@
+package com.eventticketing.event.service;
+
+import com.eventticketing.shared.model.Seat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory seat availability for a single venue, shared by all events held there (seat
+ * rows belong to the venue, so that is what a claim has to be unique within).
+ * Seats are kept in venue order (section, row, seat) and their state lives in a bitset
+ * where a set bit means the seat is taken. Claims and releases are resolved with CAS on
+ * the 64-seat word that holds the seat, so concurrent reservations never block each other.
+ *
+ * Because of that order every section and every row is a contiguous index range, which
+ * {@link #allocate} uses to hand out the best available seats of a section. Allocations in
+ * one section are serialized by a fair lock, so callers are served in arrival order instead
+ * of racing for the same front-row seats.
+ *
+ * Every claim or release bumps {@link #getVersion()} and records the seat index in a
+ * fixed-size change log, so seat maps can ask for what changed since the version they have
+ * ({@link #changedSince}) instead of downloading the whole venue again.
+ */
+public class SeatInventory {
+    private final Long venueId;
+    private final long[] seatIds;
+    private final Map<Long, Integer> indexBySeatId;
+    private final AtomicLongArray taken;
+    private final AtomicInteger availableCount;
+
+    // Section i covers seat indexes [sectionStarts[i], sectionStarts[i + 1]) and rows [sectionRows[i], sectionRows[i + 1])
+    private final String[] sectionNames;
+    private final int[] sectionStarts;
+    private final int[] sectionRows;
+    private final Map<String, Integer> sectionByName;
+    // Row r covers seat indexes [rowStarts[r], rowStarts[r + 1])
+    private final String[] rowLabels;
+    private final int[] rowStarts;
+    private final String[] seatNumbers;
+    // Per section: no seat before this index is free; lowered on release
+    private final AtomicIntegerArray firstFreeHint;
+    private final ReentrantLock[] sectionLocks;
+
+    // Starts at the load time in microseconds: versions of a reloaded inventory are above any
+    // version handed out by an earlier one, and stay exact as JSON numbers
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis() * 1000);
+    // Ring of the last changes: slot v & mask holds the seat index changed by version v
+    private final int changeLogMask;
+    private final AtomicLongArray changeVersions;
+    private final AtomicIntegerArray changedIndexes;
+
+    SeatInventory(Long venueId, long[] seatIds, boolean[] available,
+                  String[] sections, String[] rows, String[] seatNumbers, int changeLogSize) {
+        this.venueId = venueId;
+        this.seatIds = seatIds;
+        this.seatNumbers = seatNumbers;
+        this.indexBySeatId = new HashMap<>(seatIds.length * 2);
+        this.taken = new AtomicLongArray((seatIds.length + 63) >>> 6);
+
+        int free = 0;
+        for (int i = 0; i < seatIds.length; i++) {
+            indexBySeatId.put(seatIds[i], i);
+            if (available[i]) {
+                free++;
+            } else {
+                taken.set(i >>> 6, taken.get(i >>> 6) | (1L << i));
+            }
+        }
+        this.availableCount = new AtomicInteger(free);
+
+        List<String> names = new ArrayList<>();
+        List<Integer> starts = new ArrayList<>();
+        List<Integer> firstRows = new ArrayList<>();
+        List<String> labels = new ArrayList<>();
+        List<Integer> rowStartList = new ArrayList<>();
+        for (int i = 0; i < seatIds.length; i++) {
+            boolean newSection = i == 0 || !sections[i].equals(sections[i - 1]);
+            if (newSection) {
+                names.add(sections[i]);
+                starts.add(i);
+                firstRows.add(labels.size());
+            }
+            if (newSection || !rows[i].equals(rows[i - 1])) {
+                labels.add(rows[i]);
+                rowStartList.add(i);
+            }
+        }
+        starts.add(seatIds.length);
+        firstRows.add(labels.size());
+        rowStartList.add(seatIds.length);
+
+        this.sectionNames = names.toArray(new String[0]);
+        this.sectionStarts = starts.stream().mapToInt(Integer::intValue).toArray();
+        this.sectionRows = firstRows.stream().mapToInt(Integer::intValue).toArray();
+        this.rowLabels = labels.toArray(new String[0]);
+        this.rowStarts = rowStartList.stream().mapToInt(Integer::intValue).toArray();
+        this.sectionByName = new HashMap<>();
+        this.firstFreeHint = new AtomicIntegerArray(sectionNames.length);
+        this.sectionLocks = new ReentrantLock[sectionNames.length];
+        for (int s = 0; s < sectionNames.length; s++) {
+            sectionByName.put(sectionNames[s], s);
+            firstFreeHint.set(s, sectionStarts[s]);
+            sectionLocks[s] = new ReentrantLock(true);
+        }
+
+        int logSize = Integer.highestOneBit(Math.max(changeLogSize, 2) - 1) << 1;
+        this.changeLogMask = logSize - 1;
+        this.changeVersions = new AtomicLongArray(logSize);
+        this.changedIndexes = new AtomicIntegerArray(logSize);
+    }
+
+    public Long getVenueId() {
+        return venueId;
+    }
+
+    public boolean contains(Long seatId) {
+        return indexBySeatId.containsKey(seatId);
+    }
+
+    /**
+     * Marks the seat as taken. Returns false if the seat is unknown for this venue
+     * or somebody else already holds it.
+     */
+    public boolean claim(Long seatId) {
+        Integer index = indexBySeatId.get(seatId);
+        return index != null && claimIndex(index);
+    }
+
+    /**
+     * Marks the seat as available again. Returns false if the seat is unknown
+     * for this venue or was not taken.
+     */
+    public boolean release(Long seatId) {
+        Integer index = indexBySeatId.get(seatId);
+        return index != null && releaseIndex(index);
+    }
+
+    public boolean isAvailable(Long seatId) {
+        Integer index = indexBySeatId.get(seatId);
+        return index != null && (taken.get(index >>> 6) & (1L << index)) == 0;
+    }
+
+    public int getAvailableCount() {
+        return availableCount.get();
+    }
+
+    public int getTotalSeats() {
+        return seatIds.length;
+    }
+
+    /**
+     * Section names in venue order.
+     */
+    public List<String> getSections() {
+        return Collections.unmodifiableList(Arrays.asList(sectionNames));
+    }
+
+    /**
+     * Takes the best {@code quantity} available seats of {@code section}, or of the first
+     * section that has enough of them when {@code section} is null. Seats next to each other
+     * in the frontmost row are preferred; otherwise the frontmost free seats are taken.
+     * Returns the seat indexes, or null when not enough seats are left (nothing is taken then).
+     */
+    int[] allocate(String section, int quantity) {
+        if (section != null) {
+            Integer s = sectionByName.get(section);
+            return s == null ? null : allocateInSection(s, quantity);
+        }
+        for (int s = 0; s < sectionNames.length; s++) {
+            int[] seats = allocateInSection(s, quantity);
+            if (seats != null) {
+                return seats;
+            }
+        }
+        return null;
+    }
+
+    private int[] allocateInSection(int section, int quantity) {
+        ReentrantLock lock = sectionLocks[section];
+        lock.lock();
+        try {
+            int end = sectionStarts[section + 1];
+            int hint = firstFreeHint.get(section);
+            int first = nextFree(hint, end);
+            // A release that lowered the hint meanwhile wins
+            firstFreeHint.compareAndSet(section, hint, first < 0 ? end : first);
+            if (first < 0) {
+                return null;
+            }
+
+            for (int row = rowOf(first); row < sectionRows[section + 1]; row++) {
+                int[] run = claimRun(Math.max(first, rowStarts[row]), rowStarts[row + 1], quantity);
+                if (run != null) {
+                    return run;
+                }
+            }
+            return claimFirstFree(first, end, quantity);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Claims {@code quantity} adjacent free seats in [from, end), the frontmost run that can be claimed.
+     */
+    private int[] claimRun(int from, int end, int quantity) {
+        int start = nextFree(from, end);
+        while (start >= 0 && end - start >= quantity) {
+            int length = 1;
+            while (length < quantity && isFreeIndex(start + length)) {
+                length++;
+            }
+            if (length == quantity) {
+                int[] claimed = claimAll(start, quantity);
+                if (claimed != null) {
+                    return claimed;
+                }
+            }
+            start = nextFree(start + length, end);
+        }
+        return null;
+    }
+
+    private int[] claimAll(int start, int quantity) {
+        int[] claimed = new int[quantity];
+        for (int i = 0; i < quantity; i++) {
+            if (!claimIndex(start + i)) {
+                // Taken by a direct reservation in the meantime
+                releaseAll(claimed, i);
+                return null;
+            }
+            claimed[i] = start + i;
+        }
+        return claimed;
+    }
+
+    private int[] claimFirstFree(int from, int end, int quantity) {
+        int[] claimed = new int[quantity];
+        int count = 0;
+        int index = nextFree(from, end);
+        while (index >= 0 && count < quantity) {
+            if (claimIndex(index)) {
+                claimed[count++] = index;
+            }
+            index = nextFree(index + 1, end);
+        }
+        if (count < quantity) {
+            releaseAll(claimed, count);
+            return null;
+        }
+        return claimed;
+    }
+
+    private void releaseAll(int[] indexes, int count) {
+        for (int i = 0; i < count; i++) {
+            releaseIndex(indexes[i]);
+        }
+    }
+
+    /**
+     * Index of the first free seat in [from, end), or -1.
+     */
+    int nextFree(int from, int end) {
+        if (from >= end) {
+            return -1;
+        }
+        int word = from >>> 6;
+        long free = ~taken.get(word) & (-1L << from);
+        while (true) {
+            if (free != 0) {
+                int index = (word << 6) + Long.numberOfTrailingZeros(free);
+                return index < end ? index : -1;
+            }
+            if (++word << 6 >= end) {
+                return -1;
+            }
+            free = ~taken.get(word);
+        }
+    }
+
+    /**
+     * Index of the first taken seat in [from, end), or -1.
+     */
+    int nextTaken(int from, int end) {
+        if (from >= end) {
+            return -1;
+        }
+        int word = from >>> 6;
+        long bits = taken.get(word) & (-1L << from);
+        while (true) {
+            if (bits != 0) {
+                int index = (word << 6) + Long.numberOfTrailingZeros(bits);
+                return index < end ? index : -1;
+            }
+            if (++word << 6 >= end) {
+                return -1;
+            }
+            bits = taken.get(word);
+        }
+    }
+
+    /**
+     * Version of the last recorded change.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Seat indexes changed after {@code since}, and the version they bring the caller to; null
+     * when the change log no longer goes back that far (or {@code since} is not from this
+     * inventory) and the caller needs a full snapshot. Callers should report the current state
+     * of the returned seats; a change whose version is still being written is left for the next call.
+     */
+    Changes changedSince(long since) {
+        long current = version.get();
+        if (since > current || current - since > changeLogMask + 1) {
+            return null;
+        }
+        int[] indexes = new int[(int) (current - since)];
+        int count = 0;
+        long upTo = since;
+        for (long v = since + 1; v <= current; v++) {
+            int slot = (int) (v & changeLogMask);
+            long seen = changeVersions.get(slot);
+            if (seen < v) {
+                break;
+            }
+            int index = changedIndexes.get(slot);
+            if (seen > v || changeVersions.get(slot) != v) {
+                // Overwritten by a newer change
+                return null;
+            }
+            indexes[count++] = index;
+            upTo = v;
+        }
+        return new Changes(upTo, Arrays.copyOf(indexes, count));
+    }
+
+    private void recordChange(int index) {
+        long v = version.incrementAndGet();
+        int slot = (int) (v & changeLogMask);
+        changedIndexes.set(slot, index);
+        changeVersions.set(slot, v);
+    }
+
+    int getSectionCount() {
+        return sectionNames.length;
+    }
+
+    String getSectionName(int section) {
+        return sectionNames[section];
+    }
+
+    int getSectionStart(int section) {
+        return sectionStarts[section];
+    }
+
+    int getSectionEnd(int section) {
+        return sectionStarts[section + 1];
+    }
+
+    int getSectionFirstRow(int section) {
+        return sectionRows[section];
+    }
+
+    int getSectionEndRow(int section) {
+        return sectionRows[section + 1];
+    }
+
+    String getRowLabel(int row) {
+        return rowLabels[row];
+    }
+
+    int getRowStart(int row) {
+        return rowStarts[row];
+    }
+
+    int getRowEnd(int row) {
+        return rowStarts[row + 1];
+    }
+
+    String getSeatNumber(int index) {
+        return seatNumbers[index];
+    }
+
+    boolean isFreeIndex(int index) {
+        return (taken.get(index >>> 6) & (1L << index)) == 0;
+    }
+
+    int rowOf(int index) {
+        int row = Arrays.binarySearch(rowStarts, index);
+        return row >= 0 ? row : -row - 2;
+    }
+
+    int sectionOf(int index) {
+        int section = Arrays.binarySearch(sectionStarts, index);
+        return section >= 0 ? section : -section - 2;
+    }
+
+    /**
+     * Seat id and labels of a seat, for responses; venue and type details are not kept in memory.
+     */
+    Seat seatAt(int index) {
+        Seat seat = new Seat();
+        seat.setId(seatIds[index]);
+        seat.setSection(sectionNames[sectionOf(index)]);
+        seat.setRowNumber(rowLabels[rowOf(index)]);
+        seat.setSeatNumber(seatNumbers[index]);
+        seat.setIsAvailable(isFreeIndex(index));
+        return seat;
+    }
+
+    boolean claimIndex(int index) {
+        int word = index >>> 6;
+        long mask = 1L << index;
+        while (true) {
+            long current = taken.get(word);
+            if ((current & mask) != 0) {
+                return false;
+            }
+            if (taken.compareAndSet(word, current, current | mask)) {
+                availableCount.decrementAndGet();
+                recordChange(index);
+                return true;
+            }
+        }
+    }
+
+    boolean releaseIndex(int index) {
+        int word = index >>> 6;
+        long mask = 1L << index;
+        while (true) {
+            long current = taken.get(word);
+            if ((current & mask) == 0) {
+                return false;
+            }
+            if (taken.compareAndSet(word, current, current & ~mask)) {
+                availableCount.incrementAndGet();
+                firstFreeHint.accumulateAndGet(sectionOf(index), index, Math::min);
+                recordChange(index);
+                return true;
+            }
+        }
+    }
+
+    long seatIdAt(int index) {
+        return seatIds[index];
+    }
+
+    /**
+     * Result of {@link #changedSince}.
+     */
+    static final class Changes {
+        final long version;
+        final int[] indexes;
+
+        Changes(long version, int[] indexes) {
+            this.version = version;
+            this.indexes = indexes;
+        }
+    }
+}
@@ -0,0 +1,600 @@
+package com.eventticketing.event.service;
+
+import com.eventticketing.shared.config.AppConfig;
+import com.eventticketing.shared.database.DatabaseConnection;
+import com.eventticketing.shared.model.Seat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Owns the per-venue {@link SeatInventory} instances of this node. Seat rows belong to a venue,
+ * so all events held at a venue share its inventory; the venue of an event is looked up once
+ * and remembered until {@link #evict} is called for the event.
+ * A venue's seats are loaded from PostgreSQL on first use; after that seat claims are
+ * answered from memory and the resulting availability changes are written back to the
+ * {@code seats} table asynchronously, in batches, by a single flusher thread.
+ * <p>
+ * Claims made in memory are only exclusive on this node. Another node, or this one within the
+ * reload window, may hold the same seat as available; the write-back therefore only takes a
+ * seat that is still available in the database. A claim that finds its seat already taken
+ * there is lost: it is logged and the inventory is reloaded from the database, but the caller
+ * has already been told it got the seat. Running more than one node against the same seats
+ * needs the inventory disabled ({@code seat.inventory.enabled=false}).
+ * <p>
+ * An inventory is only dropped or replaced while nobody is using it and all of its changes
+ * have been written back, so a reload always sees them:
+ * <ul>
+ *   <li>inventories idle for {@code seat.inventory.idle.expiry.ms} (10 minutes) are dropped,
+ *       and beyond {@code seat.inventory.max.events} (1000) inventories the least recently used ones;</li>
+ *   <li>an inventory older than {@code seat.inventory.reload.ms} (5 minutes) is reloaded on
+ *       its next use, picking up seat changes made by other nodes or by hand;</li>
+ *   <li>venues without seats, and unknown events, are never kept.</li>
+ * </ul>
+ */
+public class SeatInventoryManager {
+    private static final Logger logger = LoggerFactory.getLogger(SeatInventoryManager.class);
+
+    private static final boolean ENABLED = AppConfig.getBoolean("seat.inventory.enabled", true);
+    private static final long FLUSH_INTERVAL_MS = AppConfig.getLong("seat.inventory.flush.interval.ms", 50);
+    private static final int FLUSH_BATCH_SIZE = AppConfig.getInt("seat.inventory.flush.batch.size", 1000);
+    private static final int CHANGE_LOG_SIZE = AppConfig.getInt("seat.availability.change.log.size", 4096);
+    private static final int MAX_EVENTS = AppConfig.getInt("seat.inventory.max.events", 1000);
+    private static final long IDLE_EXPIRY_MS = AppConfig.getLong("seat.inventory.idle.expiry.ms", 600000);
+    private static final long RELOAD_MS = AppConfig.getLong("seat.inventory.reload.ms", 300000);
+    private static final long SWEEP_INTERVAL_MS = 1000;
+
+    private static final String VENUE_SQL = "SELECT venue_id FROM events WHERE id = ?";
+    private static final String LOAD_SQL = "SELECT s.id, s.is_available, s.section, s.row_number, s.seat_number FROM seats s " +
+                                          "WHERE s.venue_id = ? " +
+                                          "ORDER BY s.section, s.row_number, s.seat_number";
+    // Only flips seats still in the opposite state, so a seat taken elsewhere is not taken twice
+    private static final String UPDATE_SQL = "UPDATE seats SET is_available = ? WHERE id = ANY(?) AND is_available = NOT ? RETURNING id";
+
+    private static final SeatInventoryManager INSTANCE = new SeatInventoryManager();
+
+    private final ConcurrentHashMap<Long, Entry> inventories = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Long> venueByEvent = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<SeatChange> pendingChanges = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicBoolean sweepScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService flusher;
+
+    // Only touched by the flusher thread: a batch that failed to reach the database, how
+    // many of its changes each inventory is waiting for, and the events they were made for
+    private Map<Long, Boolean> failedBatch = new LinkedHashMap<>();
+    private Map<Entry, Integer> failedOwners = new HashMap<>();
+    private Set<Long> failedEvents = new HashSet<>();
+
+    private SeatInventoryManager() {
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "seat-inventory-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (ENABLED) {
+            flusher.scheduleWithFixedDelay(this::flushSafely, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            flusher.scheduleWithFixedDelay(this::sweepSafely, SWEEP_INTERVAL_MS, SWEEP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public static SeatInventoryManager getInstance() {
+        return INSTANCE;
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    public boolean reserveSeat(Long eventId, Long seatId) throws SQLException {
+        Entry entry = acquire(eventId);
+        try {
+            if (!entry.get().claim(seatId)) {
+                return false;
+            }
+            enqueue(entry, eventId, seatId, false);
+            return true;
+        } finally {
+            entry.users.decrementAndGet();
+        }
+    }
+
+    public boolean releaseSeat(Long eventId, Long seatId) throws SQLException {
+        Entry entry = acquire(eventId);
+        try {
+            if (!entry.get().release(seatId)) {
+                return false;
+            }
+            enqueue(entry, eventId, seatId, true);
+            return true;
+        } finally {
+            entry.users.decrementAndGet();
+        }
+    }
+
+    /**
+     * Takes all of the given seats or, when one of them is unknown or already taken, none.
+     */
+    public boolean reserveSeats(Long eventId, List<Long> seatIds) throws SQLException {
+        Entry entry = acquire(eventId);
+        try {
+            SeatInventory inventory = entry.get();
+            for (int i = 0; i < seatIds.size(); i++) {
+                if (!inventory.claim(seatIds.get(i))) {
+                    for (int j = 0; j < i; j++) {
+                        inventory.release(seatIds.get(j));
+                    }
+                    return false;
+                }
+            }
+            for (Long seatId : seatIds) {
+                enqueue(entry, eventId, seatId, false);
+            }
+            return true;
+        } finally {
+            entry.users.decrementAndGet();
+        }
+    }
+
+    /**
+     * Makes the seats available again; the flusher writes them back with one batched update.
+     */
+    public void releaseSeats(Long eventId, List<Long> seatIds) throws SQLException {
+        Entry entry = acquire(eventId);
+        try {
+            SeatInventory inventory = entry.get();
+            for (Long seatId : seatIds) {
+                if (inventory.release(seatId)) {
+                    enqueue(entry, eventId, seatId, true);
+                }
+            }
+        } finally {
+            entry.users.decrementAndGet();
+        }
+    }
+
+    /**
+     * Takes the best available {@code quantity} seats of a section (any section when null),
+     * queuing behind other allocations for the same section instead of failing on contention.
+     * Returns the assigned seats, or an empty list when not enough seats are left.
+     */
+    public List<Seat> allocateSeats(Long eventId, String section, int quantity) throws SQLException {
+        Entry entry = acquire(eventId);
+        try {
+            SeatInventory inventory = entry.get();
+            int[] indexes = inventory.allocate(section, quantity);
+            if (indexes == null) {
+                return List.of();
+            }
+            List<Seat> seats = new ArrayList<>(indexes.length);
+            for (int index : indexes) {
+                enqueue(entry, eventId, inventory.seatIdAt(index), false);
+                seats.add(inventory.seatAt(index));
+            }
+            return seats;
+        } finally {
+            entry.users.decrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the inventory of the event's venue, loading it from the database if needed.
+     * Concurrent callers for the same venue share a single load.
+     */
+    public SeatInventory getInventory(Long eventId) throws SQLException {
+        Entry entry = acquire(eventId);
+        entry.users.decrementAndGet();
+        return entry.get();
+    }
+
+    /**
+     * Returns an inventory to read availability from: the live one, or with the inventory
+     * disabled, a copy loaded from the database for this call only (whose versions never
+     * match an earlier call's, so readers always get a full snapshot).
+     */
+    public SeatInventory getAvailability(Long eventId) throws SQLException {
+        if (ENABLED) {
+            return getInventory(eventId);
+        }
+        Long venueId = findVenue(eventId);
+        return venueId != null ? loadInventory(venueId) : emptyInventory();
+    }
+
+    /**
+     * Returns the inventory only if it is already in memory.
+     */
+    public SeatInventory getLoadedInventory(Long eventId) {
+        Long venueId = venueByEvent.get(eventId);
+        Entry entry = venueId != null ? inventories.get(venueId) : null;
+        CompletableFuture<SeatInventory> future = entry != null ? entry.inventory : null;
+        return future != null && future.isDone() && !future.isCompletedExceptionally() ? future.join() : null;
+    }
+
+    /**
+     * Forgets the event's venue, e.g. after it changed or the event was deleted. The venue's
+     * inventory stays, since other events may share it.
+     */
+    public void evict(Long eventId) {
+        venueByEvent.remove(eventId);
+    }
+
+    public int getPendingWrites() {
+        return pendingCount.get();
+    }
+
+    /**
+     * Stops the background flusher after writing every pending change.
+     */
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        while (pendingCount.get() > 0 || !failedOwners.isEmpty()) {
+            if (!flushSafely()) {
+                logger.warn("Seat inventory shut down with {} unwritten seat changes", pendingCount.get() + failedBatch.size());
+                break;
+            }
+        }
+    }
+
+    /**
+     * Returns the entry of the event's venue with its inventory loaded, counted as in use until
+     * the caller decrements {@link Entry#users}. Looking up and marking the entry in use is one
+     * atomic step, so the sweeper never drops an inventory between the two.
+     */
+    private Entry acquire(Long eventId) throws SQLException {
+        Long venueId = venueByEvent.get(eventId);
+        if (venueId == null) {
+            venueId = findVenue(eventId);
+            if (venueId == null) {
+                // Unknown event, or one without a venue: an empty inventory nobody keeps
+                Entry entry = new Entry(null);
+                entry.inventory.complete(emptyInventory());
+                entry.users.incrementAndGet();
+                return entry;
+            }
+            venueByEvent.put(eventId, venueId);
+        }
+
+        long now = System.currentTimeMillis();
+        Entry entry = inventories.compute(venueId, (id, current) -> {
+            Entry next = current == null || (current.expired(now) && current.quiet()) ? new Entry(id) : current;
+            next.users.incrementAndGet();
+            next.lastUsed = now;
+            return next;
+        });
+
+        if (entry.loading.compareAndSet(false, true)) {
+            try {
+                SeatInventory inventory = loadInventory(venueId);
+                entry.inventory.complete(inventory);
+                if (inventory.getTotalSeats() == 0) {
+                    // Venue without seats: nothing worth keeping
+                    inventories.remove(venueId, entry);
+                }
+            } catch (SQLException | RuntimeException e) {
+                inventories.remove(venueId, entry);
+                entry.inventory.completeExceptionally(e);
+            }
+            if (inventories.size() > MAX_EVENTS && sweepScheduled.compareAndSet(false, true)) {
+                try {
+                    flusher.execute(this::sweepSafely);
+                } catch (RuntimeException e) {
+                    sweepScheduled.set(false);
+                }
+            }
+        }
+
+        try {
+            entry.inventory.join();
+            return entry;
+        } catch (CompletionException e) {
+            entry.users.decrementAndGet();
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Failed to load seat inventory for event " + eventId, e.getCause());
+        }
+    }
+
+    private void sweepSafely() {
+        sweepScheduled.set(false);
+        try {
+            sweep();
+        } catch (RuntimeException e) {
+            logger.error("Unexpected error while evicting seat inventories", e);
+        }
+    }
+
+    /**
+     * Drops idle and evicted inventories, then the least recently used ones beyond the limit.
+     */
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        List<Entry> remaining = new ArrayList<>();
+        for (Entry entry : inventories.values()) {
+            if ((entry.stale || now - entry.lastUsed >= IDLE_EXPIRY_MS) && remove(entry)) {
+                continue;
+            }
+            remaining.add(entry);
+        }
+        venueByEvent.values().removeIf(venueId -> !inventories.containsKey(venueId));
+
+        int excess = inventories.size() - MAX_EVENTS;
+        if (excess > 0) {
+            remaining.sort(Comparator.comparingLong(entry -> entry.lastUsed));
+            for (Entry entry : remaining) {
+                if (excess <= 0) {
+                    break;
+                }
+                if (remove(entry)) {
+                    excess--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the entry if it is idle and fully written back; false if it had to stay.
+     */
+    private boolean remove(Entry entry) {
+        boolean[] removed = new boolean[1];
+        inventories.computeIfPresent(entry.venueId, (id, current) -> {
+            if (current == entry && entry.quiet()) {
+                removed[0] = true;
+                return null;
+            }
+            return current;
+        });
+        return removed[0];
+    }
+
+    private Long findVenue(Long eventId) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(VENUE_SQL)) {
+            stmt.setLong(1, eventId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? (Long) rs.getObject(1, Long.class) : null;
+            }
+        }
+    }
+
+    private SeatInventory emptyInventory() {
+        return new SeatInventory(null, new long[0], new boolean[0], new String[0], new String[0], new String[0],
+                CHANGE_LOG_SIZE);
+    }
+
+    private SeatInventory loadInventory(Long venueId) throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        List<Boolean> availability = new ArrayList<>();
+        List<String> sections = new ArrayList<>();
+        List<String> rows = new ArrayList<>();
+        List<String> numbers = new ArrayList<>();
+        // Section and row labels repeat for every seat; keep one copy of each
+        Map<String, String> labels = new HashMap<>();
+
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(LOAD_SQL)) {
+
+            stmt.setLong(1, venueId);
+            stmt.setFetchSize(5000);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getLong(1));
+                    availability.add(rs.getBoolean(2));
+                    sections.add(labels.computeIfAbsent(rs.getString(3), label -> label));
+                    rows.add(labels.computeIfAbsent(rs.getString(4), label -> label));
+                    numbers.add(labels.computeIfAbsent(rs.getString(5), label -> label));
+                }
+            }
+        }
+
+        long[] seatIds = new long[ids.size()];
+        boolean[] available = new boolean[ids.size()];
+        for (int i = 0; i < seatIds.length; i++) {
+            seatIds[i] = ids.get(i);
+            available[i] = availability.get(i);
+        }
+
+        logger.info("Loaded seat inventory for venue {}: {} seats", venueId, seatIds.length);
+        return new SeatInventory(venueId, seatIds, available,
+                sections.toArray(new String[0]), rows.toArray(new String[0]), numbers.toArray(new String[0]),
+                CHANGE_LOG_SIZE);
+    }
+
+    private void enqueue(Entry entry, Long eventId, Long seatId, boolean available) {
+        entry.unflushed.incrementAndGet();
+        pendingChanges.add(new SeatChange(entry, eventId, seatId, available));
+        if (pendingCount.incrementAndGet() >= FLUSH_BATCH_SIZE && flushScheduled.compareAndSet(false, true)) {
+            try {
+                flusher.execute(() -> {
+                    flushScheduled.set(false);
+                    flushSafely();
+                });
+            } catch (RuntimeException e) {
+                // Flusher already shut down; shutdown() drains what is left
+                flushScheduled.set(false);
+            }
+        }
+    }
+
+    private boolean flushSafely() {
+        try {
+            flush();
+            return true;
+        } catch (SQLException e) {
+            logger.error("Failed to write seat changes back to the database, will retry", e);
+            return false;
+        } catch (RuntimeException e) {
+            logger.error("Unexpected error while flushing seat changes", e);
+            return false;
+        }
+    }
+
+    private void flush() throws SQLException {
+        // Changes to a seat alternate between claim and release, so a change undoing a pending
+        // one cancels it and only net changes are written
+        Map<Long, Boolean> batch = failedBatch;
+        Map<Entry, Integer> owners = failedOwners;
+        Set<Long> events = failedEvents;
+        failedBatch = new LinkedHashMap<>();
+        failedOwners = new HashMap<>();
+        failedEvents = new HashSet<>();
+        SeatChange change;
+        int drained = 0;
+        while (drained < FLUSH_BATCH_SIZE && (change = pendingChanges.poll()) != null) {
+            Boolean pending = batch.remove(change.seatId);
+            if (pending == null || pending == change.available) {
+                batch.put(change.seatId, change.available);
+            }
+            owners.merge(change.entry, 1, Integer::sum);
+            events.add(change.eventId);
+            drained++;
+        }
+        pendingCount.addAndGet(-drained);
+
+        if (owners.isEmpty()) {
+            return;
+        }
+
+        List<Long> claimed = new ArrayList<>();
+        List<Long> released = new ArrayList<>();
+        for (Map.Entry<Long, Boolean> entry : batch.entrySet()) {
+            (entry.getValue() ? released : claimed).add(entry.getKey());
+        }
+
+        Set<Long> lost = new HashSet<>(claimed);
+        int releasedRows;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(UPDATE_SQL)) {
+                lost.removeAll(update(conn, stmt, false, claimed));
+                releasedRows = update(conn, stmt, true, released).size();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            failedBatch = batch;
+            failedOwners = owners;
+            failedEvents = events;
+            throw e;
+        }
+
+        if (!lost.isEmpty()) {
+            // Taken in the database by another node or by hand: this node's claims on them
+            // cannot be honoured, and its inventories are out of date
+            logger.error("Lost {} seat claims already taken in the database: {}", lost.size(), lost);
+            for (Entry owner : owners.keySet()) {
+                owner.stale = true;
+            }
+        }
+        if (releasedRows < released.size()) {
+            logger.debug("{} released seats were already available in the database", released.size() - releasedRows);
+        }
+
+        for (Long eventId : events) {
+            // Replica reads of the event's seats must see this write from now on
+            DatabaseConnection.recordWrite(EventService.eventFence(eventId));
+        }
+        for (Map.Entry<Entry, Integer> owner : owners.entrySet()) {
+            owner.getKey().unflushed.addAndGet(-owner.getValue());
+        }
+
+        logger.debug("Flushed {} seat changes ({} claimed, {} released)", batch.size(), claimed.size(), released.size());
+    }
+
+    /**
+     * Sets the seats to {@code available} and returns the ids of those that were not already.
+     */
+    private Set<Long> update(Connection conn, PreparedStatement stmt, boolean available, List<Long> seatIds)
+            throws SQLException {
+        Set<Long> updated = new HashSet<>();
+        if (seatIds.isEmpty()) {
+            return updated;
+        }
+        Array idArray = conn.createArrayOf("bigint", seatIds.toArray());
+        stmt.setBoolean(1, available);
+        stmt.setArray(2, idArray);
+        stmt.setBoolean(3, available);
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                updated.add(rs.getLong(1));
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * A venue's inventory with the bookkeeping that decides when it may be dropped.
+     */
+    private static final class Entry {
+        private final Long venueId;
+        private final CompletableFuture<SeatInventory> inventory = new CompletableFuture<>();
+        private final AtomicBoolean loading = new AtomicBoolean();
+        private final long loadedAt = System.currentTimeMillis();
+        // Callers between acquire() and their decrement, and changes not yet in the database
+        private final AtomicInteger users = new AtomicInteger();
+        private final AtomicInteger unflushed = new AtomicInteger();
+        private volatile long lastUsed = loadedAt;
+        private volatile boolean stale;
+
+        private Entry(Long venueId) {
+            this.venueId = venueId;
+        }
+
+        private SeatInventory get() {
+            return inventory.join();
+        }
+
+        private boolean quiet() {
+            return users.get() == 0 && unflushed.get() == 0;
+        }
+
+        private boolean expired(long now) {
+            return stale || now - loadedAt >= RELOAD_MS;
+        }
+    }
+
+    private static final class SeatChange {
+        private final Entry entry;
+        private final Long eventId;
+        private final Long seatId;
+        private final boolean available;
+
+        private SeatChange(Entry entry, Long eventId, Long seatId, boolean available) {
+            this.entry = entry;
+            this.eventId = eventId;
+            this.seatId = seatId;
+            this.available = available;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.eventticketing.event.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel: schedules timeouts in O(1) and expires them without scanning
+ * everything that is pending.
+ * <ul>
+ *   <li>time advances in ticks of {@code tickMillis}; level 0 has one slot per tick, and every
+ *       level above has slots as wide as a full turn of the level below;</li>
+ *   <li>a timeout goes into the lowest level whose span covers its deadline;</li>
+ *   <li>whenever a level completes a turn, the next slot of the level above is cascaded, i.e. its
+ *       timeouts are placed again, now in a finer level.</li>
+ * </ul>
+ * With 64 slots per level and 100 ms ticks, four levels cover about 19 days. Deadlines further
+ * out sit in the top level and are cascaded until they fit. Cancelled timeouts are dropped
+ * when their slot is reached.
+ */
+final class TimingWheel<T> {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    private final long tickMillis;
+    private final List<Timeout<T>>[][] slots;
+    private final ReentrantLock lock = new ReentrantLock();
+    // The next tick to be expired
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    TimingWheel(long tickMillis, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.currentTick = startMillis / tickMillis;
+        this.slots = new List[LEVELS][SLOTS];
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                slots[level][slot] = new ArrayList<>();
+            }
+        }
+    }
+
+    /**
+     * Schedules {@code item} to expire once {@link #advance} reaches {@code deadlineMillis}.
+     */
+    Timeout<T> schedule(T item, long deadlineMillis) {
+        // Rounded up, so nothing expires early
+        Timeout<T> timeout = new Timeout<>(item, (deadlineMillis + tickMillis - 1) / tickMillis);
+        lock.lock();
+        try {
+            place(timeout);
+            size++;
+        } finally {
+            lock.unlock();
+        }
+        return timeout;
+    }
+
+    /**
+     * Expires every timeout whose deadline is at or before {@code nowMillis}, handing the
+     * items to {@code expired} in deadline order (by tick). The callback runs under the wheel's
+     * lock and must not schedule on this wheel.
+     */
+    void advance(long nowMillis, Consumer<T> expired) {
+        long target = nowMillis / tickMillis;
+        lock.lock();
+        try {
+            while (currentTick <= target) {
+                cascade();
+                List<Timeout<T>> due = slots[0][(int) (currentTick & MASK)];
+                if (!due.isEmpty()) {
+                    List<Timeout<T>> items = new ArrayList<>(due);
+                    due.clear();
+                    for (Timeout<T> timeout : items) {
+                        size--;
+                        if (timeout.done.compareAndSet(false, true)) {
+                            expired.accept(timeout.item);
+                        }
+                    }
+                }
+                currentTick++;
+                if (size == 0) {
+                    // Nothing pending: jump straight to the target instead of walking empty ticks
+                    currentTick = Math.max(currentTick, target + 1);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of scheduled timeouts, including cancelled ones not dropped yet.
+     */
+    int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * At a tick where level {@code l} completes a turn, re-places the slot of level {@code l + 1}
+     * that starts now; stops at the first level that did not wrap.
+     */
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+                return;
+            }
+            List<Timeout<T>> slot = slots[level][(int) ((currentTick >>> (SLOT_BITS * level)) & MASK)];
+            if (!slot.isEmpty()) {
+                List<Timeout<T>> items = new ArrayList<>(slot);
+                slot.clear();
+                for (Timeout<T> timeout : items) {
+                    if (timeout.done.get()) {
+                        size--;
+                    } else {
+                        place(timeout);
+                    }
+                }
+            }
+        }
+    }
+
+    private void place(Timeout<T> timeout) {
+        long tick = Math.max(timeout.tick, currentTick);
+        long delta = tick - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        if (delta >= (1L << (SLOT_BITS * LEVELS))) {
+            // Beyond the top level's span: park in its last slot of this turn and cascade again later
+            tick = currentTick + (1L << (SLOT_BITS * LEVELS)) - (1L << (SLOT_BITS * (LEVELS - 1)));
+        }
+        slots[level][(int) ((tick >>> (SLOT_BITS * level)) & MASK)].add(timeout);
+    }
+
+    /**
+     * Handle of a scheduled item.
+     */
+    static final class Timeout<T> {
+        final T item;
+        final long tick;
+        // Set once, by whichever comes first of cancel() and expiry
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private Timeout(T item, long tick) {
+            this.item = item;
+            this.tick = tick;
+        }
+
+        /**
+         * Prevents the item from expiring. Returns false when it has already expired or been cancelled.
+         */
+        boolean cancel() {
+            return done.compareAndSet(false, true);
+        }
+    }
+}
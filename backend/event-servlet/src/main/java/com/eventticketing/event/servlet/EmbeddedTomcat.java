@@ -1,7 +1,9 @@
 package com.eventticketing.event.servlet;
 
+import com.eventticketing.shared.concurrent.VirtualThreads;
 import org.apache.catalina.Context;
 import org.apache.catalina.LifecycleException;
+import org.apache.catalina.connector.Connector;
 import org.apache.catalina.startup.Tomcat;
 import org.apache.catalina.webresources.DirResourceSet;
 import org.apache.catalina.webresources.StandardRoot;
@@ -20,14 +22,47 @@ import java.nio.file.Paths;
  */
 public class EmbeddedTomcat {
     public static void main(String[] args) throws Exception {
+        // Set system properties for database connection
+        System.setProperty("DATABASE_URL", 
+            System.getenv("DATABASE_URL") != null ? System.getenv("DATABASE_URL") : "jdbc:postgresql://localhost:5432/eventticketing");
+        System.setProperty("DATABASE_USER", 
+            System.getenv("DATABASE_USER") != null ? System.getenv("DATABASE_USER") : "eventuser");
+        System.setProperty("DATABASE_PASSWORD", 
+            System.getenv("DATABASE_PASSWORD") != null ? System.getenv("DATABASE_PASSWORD") : "eventpass");
+        
+        Tomcat tomcat = start(8080, new File(System.getProperty("user.dir")));
+        
+        System.out.println("==========================================");
+        System.out.println("Tomcat 10 started successfully!");
+        System.out.println("Event Servlet: http://localhost:8080/event-servlet");
+        System.out.println("Health Check: http://localhost:8080/event-servlet/health");
+        System.out.println("API: http://localhost:8080/event-servlet/api/events");
+        System.out.println("Press Ctrl+C to stop...");
+        System.out.println("==========================================");
+        
+        tomcat.getServer().await();
+    }
+
+    /**
+     * Starts Tomcat on {@code port} with the event servlet deployed at /event-servlet.
+     * {@code moduleDir} is the event-servlet module directory containing target/ and src/.
+     * Also used by the load-test harness.
+     */
+    public static Tomcat start(int port, File moduleDir) throws LifecycleException {
         Tomcat tomcat = new Tomcat();
-        tomcat.setPort(8080);
-        tomcat.getConnector();
+        tomcat.setPort(port);
+        tomcat.setBaseDir(new File(moduleDir, "target/tomcat." + port).getAbsolutePath());
+        Connector connector = tomcat.getConnector();
+        
+        // Opt-in: -Dvirtual.threads.enabled=true on JDK 21+ serves each request on a virtual thread
+        if (VirtualThreads.isEnabled()) {
+            connector.getProtocolHandler().setExecutor(VirtualThreads.newExecutor("tomcat-exec", 200));
+            System.out.println("Serving requests on virtual threads");
+        }
         
         // Use exploded WAR directory (created by Maven during package)
-        String baseDir = System.getProperty("user.dir");
-        File explodedWarDir = new File(baseDir, "target/event-servlet");
-        File webappDir = new File(baseDir, "src/main/webapp");
+        File explodedWarDir = new File(moduleDir, "target/event-servlet");
+        File webappDir = new File(moduleDir, "src/main/webapp");
         
         Context ctx;
         if (explodedWarDir.exists() && new File(explodedWarDir, "WEB-INF").exists()) {
@@ -40,7 +75,7 @@ public class EmbeddedTomcat {
             System.out.println("Deploying from webapp directory: " + webappDir.getAbsolutePath());
             
             // Add classes directory to WEB-INF/classes
-            File classesDir = new File(baseDir, "target/classes");
+            File classesDir = new File(moduleDir, "target/classes");
             if (classesDir.exists()) {
                 StandardRoot resources = new StandardRoot(ctx);
                 resources.addPreResources(new DirResourceSet(resources, "/WEB-INF/classes",
@@ -52,25 +87,10 @@ public class EmbeddedTomcat {
             throw new RuntimeException("Cannot find exploded WAR or webapp directory. Run 'mvn clean package' first.");
         }
         
-        // Set system properties for database connection
-        System.setProperty("DATABASE_URL", 
-            System.getenv("DATABASE_URL") != null ? System.getenv("DATABASE_URL") : "jdbc:postgresql://localhost:5432/eventticketing");
-        System.setProperty("DATABASE_USER", 
-            System.getenv("DATABASE_USER") != null ? System.getenv("DATABASE_USER") : "eventuser");
-        System.setProperty("DATABASE_PASSWORD", 
-            System.getenv("DATABASE_PASSWORD") != null ? System.getenv("DATABASE_PASSWORD") : "eventpass");
+        // Resolve container classes from our own loader, not the system one (differs under exec:java)
+        ctx.setParentClassLoader(EmbeddedTomcat.class.getClassLoader());
         
         tomcat.start();
-        
-        System.out.println("==========================================");
-        System.out.println("Tomcat 10 started successfully!");
-        System.out.println("Event Servlet: http://localhost:8080/event-servlet");
-        System.out.println("Health Check: http://localhost:8080/event-servlet/health");
-        System.out.println("API: http://localhost:8080/event-servlet/api/events");
-        System.out.println("Press Ctrl+C to stop...");
-        System.out.println("==========================================");
-        
-        tomcat.getServer().await();
+        return tomcat;
     }
 }
-
@@ -3,13 +3,26 @@ package com.eventticketing.event.servlet;
 import com.eventticketing.shared.model.Event;
 import com.eventticketing.shared.model.TicketType;
 import com.eventticketing.shared.model.Seat;
+import com.eventticketing.event.service.CapacityUpdate;
+import com.eventticketing.event.service.CapacityUpdateResult;
+import com.eventticketing.event.service.EventCache;
+import com.eventticketing.event.service.EventCursor;
+import com.eventticketing.event.service.EventPage;
+import com.eventticketing.event.service.EventProjection;
 import com.eventticketing.event.service.EventService;
+import com.eventticketing.event.service.SeatAvailabilityMap;
+import com.eventticketing.event.service.SeatHold;
+import com.eventticketing.event.service.SeatHoldManager;
+import com.eventticketing.shared.config.AppConfig;
+import com.eventticketing.shared.database.DatabaseConnection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -18,6 +31,12 @@ import java.util.Map;
 @Consumes(MediaType.APPLICATION_JSON)
 public class EventResource {
     private static final Logger logger = LoggerFactory.getLogger(EventResource.class);
+    private static final int MAX_PAGE_SIZE = AppConfig.getInt("events.page.max.size", 100);
+    private static final int MAX_BULK_UPDATES = AppConfig.getInt("capacity.bulk.max.updates", 10000);
+    private static final int MAX_UPDATE_ID_LENGTH = 255;
+    private static final int MAX_ALLOCATION = AppConfig.getInt("seat.allocate.max.quantity", 10);
+    private static final long DEFAULT_HOLD_TTL_SECONDS = AppConfig.getLong("seat.hold.ttl.seconds", 600);
+    private static final long MAX_HOLD_TTL_SECONDS = AppConfig.getLong("seat.hold.max.ttl.seconds", 3600);
     private final EventService eventService;
 
     public EventResource() {
@@ -29,12 +48,36 @@ public class EventResource {
             @QueryParam("category") String category,
             @QueryParam("status") String status,
             @QueryParam("page") @DefaultValue("0") int page,
-            @QueryParam("size") @DefaultValue("20") int size) {
+            @QueryParam("size") @DefaultValue("20") int size,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("view") String view) {
+        logger.info("Getting all events - category: {}, status: {}, page: {}, size: {}", 
+                   category, status, page, size);
+        
+        // view=summary leaves out the description
+        EventProjection projection = EventProjection.fromView(view);
+        if (projection == null) {
+            return invalidView();
+        }
+        Response invalidPaging = validatePaging(page, size, cursor != null);
+        if (invalidPaging != null) {
+            return invalidPaging;
+        }
+        EventCursor eventCursor;
+        try {
+            eventCursor = EventCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return invalidCursor();
+        }
+        
         try {
-            logger.info("Getting all events - category: {}, status: {}, page: {}, size: {}", 
-                       category, status, page, size);
+            // Passing a cursor (an empty one for the first page) switches to keyset pagination
+            if (cursor != null) {
+                EventPage eventPage = eventService.getEventsPage(category, status, eventCursor, size, projection);
+                return Response.ok(eventPage).build();
+            }
             
-            List<Event> events = eventService.getAllEvents(category, status, page, size);
+            List<Event> events = eventService.getAllEvents(category, status, page, size, projection);
             return Response.ok(events).build();
         } catch (Exception e) {
             logger.error("Error getting events", e);
@@ -44,6 +87,21 @@ public class EventResource {
         }
     }
 
+    @GET
+    @Path("/cache/stats")
+    public Response getCacheStats() {
+        return Response.ok(EventCache.getInstance().getStats()).build();
+    }
+
+    /**
+     * Read replica routing: lag, staleness and how many catalogue reads went where.
+     */
+    @GET
+    @Path("/replica/stats")
+    public Response getReplicaStats() {
+        return Response.ok(DatabaseConnection.getReplicaStats()).build();
+    }
+
     @GET
     @Path("/{id}")
     public Response getEventById(@PathParam("id") Long id) {
@@ -179,6 +237,190 @@ public class EventResource {
         }
     }
 
+    /**
+     * Seat ids and labels in venue order; the indexes used by {@code /seats/availability}
+     * refer to this list. Only changes with the venue.
+     */
+    @GET
+    @Path("/{id}/seats/layout")
+    public Response getSeatLayout(@PathParam("id") Long eventId) {
+        try {
+            return Response.ok(eventService.getSeatLayout(eventId)).build();
+        } catch (Exception e) {
+            logger.error("Error getting seat layout for event ID: {}", eventId, e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\": \"Failed to retrieve seat layout\"}")
+                    .build();
+        }
+    }
+
+    /**
+     * Compact seat availability for seat maps. Without {@code since}, or when the changes since
+     * that version are no longer known, returns a snapshot ({@code "delta": false}) in
+     * {@code format} {@code runs} (default) or {@code bitset}; otherwise only the seats that
+     * changed ({@code "delta": true}). Clients poll again with the returned {@code version}.
+     */
+    @GET
+    @Path("/{id}/seats/availability")
+    public Response getSeatAvailability(
+            @PathParam("id") Long eventId,
+            @QueryParam("since") Long since,
+            @QueryParam("format") @DefaultValue(SeatAvailabilityMap.FORMAT_RUNS) String format) {
+        if (!SeatAvailabilityMap.FORMAT_RUNS.equals(format) && !SeatAvailabilityMap.FORMAT_BITSET.equals(format)) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\": \"format must be runs or bitset\"}")
+                    .build();
+        }
+        try {
+            return Response.ok(eventService.getSeatAvailability(eventId, since, format)).build();
+        } catch (Exception e) {
+            logger.error("Error getting seat availability for event ID: {}", eventId, e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\": \"Failed to retrieve seat availability\"}")
+                    .build();
+        }
+    }
+
+    /**
+     * Assigns the best available seats instead of making clients race for specific seat ids.
+     * Body: {@code {"section": "A", "quantity": 2}}; without a section the frontmost section
+     * with enough seats is used. Requests for one section are served in arrival order, and
+     * 409 is only returned when not enough seats are left.
+     */
+    @POST
+    @Path("/{id}/seats/allocate")
+    public Response allocateSeats(@PathParam("id") Long eventId, Map<String, Object> requestData) {
+        try {
+            Object section = requestData != null ? requestData.get("section") : null;
+            Object quantity = requestData != null ? requestData.getOrDefault("quantity", 1) : 1;
+            if ((section != null && !(section instanceof String)) || !(quantity instanceof Number)
+                    || ((Number) quantity).intValue() <= 0 || ((Number) quantity).intValue() > MAX_ALLOCATION) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity("{\"error\": \"quantity must be between 1 and " + MAX_ALLOCATION + "\"}")
+                        .build();
+            }
+            logger.info("Allocating {} seats in section {} for event ID: {}", quantity, section, eventId);
+            
+            List<Seat> seats = eventService.allocateSeats(eventId, (String) section, ((Number) quantity).intValue());
+            if (seats.isEmpty()) {
+                return Response.status(Response.Status.CONFLICT)
+                        .entity("{\"error\": \"Not enough seats available\"}")
+                        .build();
+            }
+            
+            return Response.ok(Map.of("eventId", eventId, "seats", seats)).build();
+        } catch (Exception e) {
+            logger.error("Error allocating seats for event ID: {}", eventId, e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\": \"Failed to allocate seats\"}")
+                    .build();
+        }
+    }
+
+    /**
+     * Holds seats for a limited time. Body: either {@code {"seatIds": [1, 2]}} or
+     * {@code {"section": "A", "quantity": 2}} for the best available seats, plus an optional
+     * {@code ttlSeconds}. Unless confirmed or released, the seats become available again when
+     * the hold expires.
+     */
+    @POST
+    @Path("/{id}/holds")
+    public Response holdSeats(@PathParam("id") Long eventId, Map<String, Object> requestData) {
+        try {
+            Map<String, Object> data = requestData != null ? requestData : Map.of();
+            Object ttlSeconds = data.getOrDefault("ttlSeconds", DEFAULT_HOLD_TTL_SECONDS);
+            if (!(ttlSeconds instanceof Number) || ((Number) ttlSeconds).longValue() <= 0
+                    || ((Number) ttlSeconds).longValue() > MAX_HOLD_TTL_SECONDS) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity("{\"error\": \"ttlSeconds must be between 1 and " + MAX_HOLD_TTL_SECONDS + "\"}")
+                        .build();
+            }
+            long ttlMillis = ((Number) ttlSeconds).longValue() * 1000;
+            
+            SeatHold hold;
+            Object seatIds = data.get("seatIds");
+            if (seatIds != null) {
+                List<Long> ids = new ArrayList<>();
+                if (seatIds instanceof List) {
+                    for (Object seatId : (List<?>) seatIds) {
+                        if (seatId instanceof Number && !ids.contains(((Number) seatId).longValue())) {
+                            ids.add(((Number) seatId).longValue());
+                        }
+                    }
+                }
+                if (ids.isEmpty() || ids.size() != ((List<?>) seatIds).size() || ids.size() > MAX_ALLOCATION) {
+                    return Response.status(Response.Status.BAD_REQUEST)
+                            .entity("{\"error\": \"seatIds must list 1 to " + MAX_ALLOCATION + " distinct seat ids\"}")
+                            .build();
+                }
+                logger.info("Holding seats {} for event ID: {}", ids, eventId);
+                hold = eventService.holdSeats(eventId, ids, ttlMillis);
+            } else {
+                Object section = data.get("section");
+                Object quantity = data.getOrDefault("quantity", 1);
+                if ((section != null && !(section instanceof String)) || !(quantity instanceof Number)
+                        || ((Number) quantity).intValue() <= 0 || ((Number) quantity).intValue() > MAX_ALLOCATION) {
+                    return Response.status(Response.Status.BAD_REQUEST)
+                            .entity("{\"error\": \"quantity must be between 1 and " + MAX_ALLOCATION + "\"}")
+                            .build();
+                }
+                logger.info("Holding {} seats in section {} for event ID: {}", quantity, section, eventId);
+                hold = eventService.holdBestSeats(eventId, (String) section, ((Number) quantity).intValue(), ttlMillis);
+            }
+            
+            if (hold == null) {
+                return Response.status(Response.Status.CONFLICT)
+                        .entity("{\"error\": \"Seats not available\"}")
+                        .build();
+            }
+            return Response.status(Response.Status.CREATED).entity(hold).build();
+        } catch (Exception e) {
+            logger.error("Error holding seats for event ID: {}", eventId, e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\": \"Failed to hold seats\"}")
+                    .build();
+        }
+    }
+
+    @POST
+    @Path("/{id}/holds/{holdId}/confirm")
+    public Response confirmHold(@PathParam("id") Long eventId, @PathParam("holdId") String holdId) {
+        logger.info("Confirming hold {} for event ID: {}", holdId, eventId);
+        SeatHold hold = eventService.confirmHold(eventId, holdId);
+        if (hold == null) {
+            return Response.status(Response.Status.NOT_FOUND)
+                    .entity("{\"error\": \"Hold not found or expired\"}")
+                    .build();
+        }
+        return Response.ok(hold).build();
+    }
+
+    @DELETE
+    @Path("/{id}/holds/{holdId}")
+    public Response releaseHold(@PathParam("id") Long eventId, @PathParam("holdId") String holdId) {
+        try {
+            logger.info("Releasing hold {} for event ID: {}", holdId, eventId);
+            SeatHold hold = eventService.releaseHold(eventId, holdId);
+            if (hold == null) {
+                return Response.status(Response.Status.NOT_FOUND)
+                        .entity("{\"error\": \"Hold not found or expired\"}")
+                        .build();
+            }
+            return Response.ok(hold).build();
+        } catch (Exception e) {
+            logger.error("Error releasing hold {} for event ID: {}", holdId, eventId, e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\": \"Failed to release hold\"}")
+                    .build();
+        }
+    }
+
+    @GET
+    @Path("/holds/stats")
+    public Response getHoldStats() {
+        return Response.ok(SeatHoldManager.getInstance().getStats()).build();
+    }
+
     @PUT
     @Path("/{id}/seats/{seatId}/reserve")
     public Response reserveSeat(@PathParam("id") Long eventId, @PathParam("seatId") Long seatId) {
@@ -236,12 +478,17 @@ public class EventResource {
                         .build();
             }
             
-            boolean updated = eventService.updateEventCapacity(eventId, bookedSeats);
-            if (!updated) {
+            CapacityUpdateResult result = eventService.updateEventCapacity(eventId, bookedSeats);
+            if (result == CapacityUpdateResult.NOT_FOUND) {
                 return Response.status(Response.Status.NOT_FOUND)
                         .entity("{\"error\": \"Event not found\"}")
                         .build();
             }
+            if (result == CapacityUpdateResult.CAPACITY_EXCEEDED) {
+                return Response.status(Response.Status.CONFLICT)
+                        .entity("{\"error\": \"Not enough capacity left for this event\"}")
+                        .build();
+            }
             
             return Response.ok("{\"message\": \"Event capacity updated successfully\"}").build();
         } catch (Exception e) {
@@ -252,6 +499,92 @@ public class EventResource {
         }
     }
 
+    /**
+     * Applies many capacity deltas in one request, for batch producers such as the booking
+     * servlet's outbox relay. Body: {@code {"updates": [{"eventId": 1, "bookedSeats": 3}, ...]}}.
+     * Deltas for the same event are added up. Answers 200 with one result per event
+     * ({@code APPLIED}, {@code NOT_FOUND} or {@code CAPACITY_EXCEEDED}); the request as a whole
+     * is only rejected when it is malformed.
+     * <p>
+     * An update may carry an {@code updateId}; one that was already applied is skipped, so a
+     * producer can safely send a batch again when it did not get the answer. When any update has
+     * one, updates are not added up but taken one by one in request order, and there is one
+     * result per update, with its {@code updateId}: only the bookings that no longer fit are
+     * rejected.
+     */
+    @PATCH
+    @Path("/capacity")
+    public Response updateEventCapacities(Map<String, Object> requestData) {
+        try {
+            Object updates = requestData != null ? requestData.get("updates") : null;
+            if (!(updates instanceof List)) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity("{\"error\": \"Expected an updates array\"}")
+                        .build();
+            }
+            List<?> updateList = (List<?>) updates;
+            if (updateList.size() > MAX_BULK_UPDATES) {
+                return Response.status(Response.Status.BAD_REQUEST)
+                        .entity("{\"error\": \"At most " + MAX_BULK_UPDATES + " updates per request\"}")
+                        .build();
+            }
+            
+            Map<Long, Integer> bookedSeatsByEvent = new LinkedHashMap<>();
+            List<CapacityUpdate> capacityUpdates = new ArrayList<>();
+            boolean withUpdateIds = false;
+            for (Object update : updateList) {
+                Object eventId = update instanceof Map ? ((Map<?, ?>) update).get("eventId") : null;
+                Object bookedSeats = update instanceof Map ? ((Map<?, ?>) update).get("bookedSeats") : null;
+                Object updateId = update instanceof Map ? ((Map<?, ?>) update).get("updateId") : null;
+                if (!(eventId instanceof Number) || !(bookedSeats instanceof Number) || ((Number) bookedSeats).intValue() <= 0) {
+                    return Response.status(Response.Status.BAD_REQUEST)
+                            .entity("{\"error\": \"Every update needs an eventId and a positive bookedSeats count\"}")
+                            .build();
+                }
+                if (updateId != null && (!(updateId instanceof String) || ((String) updateId).isEmpty()
+                        || ((String) updateId).length() > MAX_UPDATE_ID_LENGTH)) {
+                    return Response.status(Response.Status.BAD_REQUEST)
+                            .entity("{\"error\": \"updateId must be a string of 1 to " + MAX_UPDATE_ID_LENGTH + " characters\"}")
+                            .build();
+                }
+                withUpdateIds |= updateId != null;
+                bookedSeatsByEvent.merge(((Number) eventId).longValue(), ((Number) bookedSeats).intValue(), Integer::sum);
+                capacityUpdates.add(new CapacityUpdate(((Number) eventId).longValue(), ((Number) bookedSeats).intValue(),
+                        (String) updateId));
+            }
+            logger.info("Updating capacity for {} events", bookedSeatsByEvent.size());
+            
+            List<Map<String, Object>> results = new ArrayList<>();
+            if (withUpdateIds) {
+                List<CapacityUpdateResult> outcomes = eventService.applyCapacityUpdates(capacityUpdates);
+                for (int i = 0; i < capacityUpdates.size(); i++) {
+                    CapacityUpdate update = capacityUpdates.get(i);
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    result.put("updateId", update.getUpdateId());
+                    result.put("eventId", update.getEventId());
+                    result.put("bookedSeats", update.getBookedSeats());
+                    result.put("result", outcomes.get(i).name());
+                    results.add(result);
+                }
+            } else {
+                Map<Long, CapacityUpdateResult> outcomes = eventService.updateEventCapacities(bookedSeatsByEvent);
+                for (Map.Entry<Long, CapacityUpdateResult> entry : outcomes.entrySet()) {
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    result.put("eventId", entry.getKey());
+                    result.put("bookedSeats", bookedSeatsByEvent.get(entry.getKey()));
+                    result.put("result", entry.getValue().name());
+                    results.add(result);
+                }
+            }
+            return Response.ok(Map.of("results", results)).build();
+        } catch (Exception e) {
+            logger.error("Error updating capacity in bulk", e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("{\"error\": \"Failed to update event capacity\"}")
+                    .build();
+        }
+    }
+
     @GET
     @Path("/search")
     public Response searchEvents(
@@ -260,12 +593,36 @@ public class EventResource {
             @QueryParam("dateFrom") String dateFrom,
             @QueryParam("dateTo") String dateTo,
             @QueryParam("page") @DefaultValue("0") int page,
-            @QueryParam("size") @DefaultValue("20") int size) {
+            @QueryParam("size") @DefaultValue("20") int size,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("view") String view) {
+        logger.info("Searching events - query: {}, category: {}, dateFrom: {}, dateTo: {}", 
+                   query, category, dateFrom, dateTo);
+        
+        EventProjection projection = EventProjection.fromView(view);
+        if (projection == null) {
+            return invalidView();
+        }
+        Response invalidPaging = validatePaging(page, size, cursor != null);
+        if (invalidPaging != null) {
+            return invalidPaging;
+        }
+        EventCursor eventCursor;
+        try {
+            eventCursor = EventCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return invalidCursor();
+        }
+        
         try {
-            logger.info("Searching events - query: {}, category: {}, dateFrom: {}, dateTo: {}", 
-                       query, category, dateFrom, dateTo);
+            if (cursor != null) {
+                EventPage eventPage = eventService.searchEventsPage(query, category, dateFrom, dateTo,
+                                                                    eventCursor, size, projection);
+                return Response.ok(eventPage).build();
+            }
             
-            List<Event> events = eventService.searchEvents(query, category, dateFrom, dateTo, page, size);
+            List<Event> events = eventService.searchEvents(query, category, dateFrom, dateTo, page, size,
+                                                           projection);
             return Response.ok(events).build();
         } catch (Exception e) {
             logger.error("Error searching events", e);
@@ -274,4 +631,36 @@ public class EventResource {
                     .build();
         }
     }
+
+    private Response invalidCursor() {
+        return Response.status(Response.Status.BAD_REQUEST)
+                .entity("{\"error\": \"Invalid cursor\"}")
+                .build();
+    }
+
+    private Response invalidView() {
+        return Response.status(Response.Status.BAD_REQUEST)
+                .entity("{\"error\": \"Invalid view, expected full or summary\"}")
+                .build();
+    }
+
+    /**
+     * Null when {@code page} and {@code size} are usable, otherwise the 400 to answer with.
+     * The size of cursor pages is capped, so {@code size + 1} cannot overflow; offset pages keep
+     * accepting any size, as they always have, but not a {@code page * size} that overflows.
+     */
+    private Response validatePaging(int page, int size, boolean cursorMode) {
+        if (size <= 0 || (cursorMode && size > MAX_PAGE_SIZE)) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(cursorMode ? "{\"error\": \"Page size must be between 1 and " + MAX_PAGE_SIZE + "\"}"
+                            : "{\"error\": \"Page size must be positive\"}")
+                    .build();
+        }
+        if (page < 0 || page > Integer.MAX_VALUE / size) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("{\"error\": \"Invalid page\"}")
+                    .build();
+        }
+        return null;
+    }
 }
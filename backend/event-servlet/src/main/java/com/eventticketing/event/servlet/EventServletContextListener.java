@@ -0,0 +1,47 @@
+package com.eventticketing.event.servlet;
+
+import com.eventticketing.event.service.CapacityAggregator;
+import com.eventticketing.event.service.EventSchemaInitializer;
+import com.eventticketing.event.service.SeatHoldManager;
+import com.eventticketing.event.service.SeatInventoryManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+
+/**
+ * Starts and stops the in-process engines of the event servlet together with the web application,
+ * so that pending write-behind changes are flushed before the container shuts down.
+ */
+public class EventServletContextListener implements ServletContextListener {
+    private static final Logger logger = LoggerFactory.getLogger(EventServletContextListener.class);
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        logger.info("Event servlet starting - seat inventory enabled: {}, capacity write-behind enabled: {}",
+                SeatInventoryManager.isEnabled(), CapacityAggregator.isEnabled());
+        EventSchemaInitializer.start();
+        if (CapacityAggregator.isMissingJournalDir()) {
+            logger.warn("capacity.writebehind.enabled is set but capacity.journal.dir is not; " +
+                    "booked seats are written to the database directly");
+        }
+        if (CapacityAggregator.isEnabled()) {
+            try {
+                // Replays any journaled deltas left behind by a previous run
+                CapacityAggregator.getInstance();
+            } catch (RuntimeException e) {
+                logger.error("Failed to start capacity aggregator", e);
+            }
+        }
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        logger.info("Event servlet stopping - flushing pending seat and capacity changes");
+        // Before the inventory shuts down, so the released hold seats are flushed with it
+        SeatHoldManager.shutdownIfStarted();
+        SeatInventoryManager.getInstance().shutdown();
+        CapacityAggregator.shutdownIfStarted();
+    }
+}
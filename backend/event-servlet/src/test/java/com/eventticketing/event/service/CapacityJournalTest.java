@@ -0,0 +1,102 @@
+package com.eventticketing.event.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CapacityJournalTest {
+    private static final long NOTHING_COMMITTED = -1;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoverSumsTheDeltasOfEveryUncommittedSegment() throws Exception {
+        writeThreeSegments();
+
+        CapacityJournal journal = new CapacityJournal(directory, false, NOTHING_COMMITTED);
+        try {
+            assertEquals(Map.of(1L, 7L, 2L, 5L), journal.recover());
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    void recoverSkipsSegmentsAtOrBelowTheCommittedOffset() throws Exception {
+        writeThreeSegments();
+
+        CapacityJournal journal = new CapacityJournal(directory, false, 1);
+        try {
+            assertEquals(Map.of(2L, 1L), journal.recover());
+            assertFalse(Files.exists(directory.resolve("capacity-0.log")));
+            assertFalse(Files.exists(directory.resolve("capacity-1.log")));
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    void sequencesContinueAfterTheCommittedOffsetInAnEmptyDirectory() throws Exception {
+        CapacityJournal journal = new CapacityJournal(directory, false, 5);
+        try {
+            assertEquals(6, journal.rotate());
+            assertTrue(Files.exists(directory.resolve("capacity-7.log")));
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    void deleteThroughRemovesOnlyCommittedSegments() throws Exception {
+        CapacityJournal journal = new CapacityJournal(directory, true, NOTHING_COMMITTED);
+        try {
+            journal.append(1L, 2);
+            long sealed = journal.rotate();
+            journal.append(1L, 3);
+            journal.deleteThrough(sealed);
+
+            assertFalse(Files.exists(directory.resolve("capacity-" + sealed + ".log")));
+            assertTrue(Files.exists(directory.resolve("capacity-" + (sealed + 1) + ".log")));
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    void recoverSkipsTornAndMalformedEntries() throws Exception {
+        Files.write(directory.resolve("capacity-0.log"), "1 5\n2 x\n3".getBytes(StandardCharsets.UTF_8));
+
+        CapacityJournal journal = new CapacityJournal(directory, false, NOTHING_COMMITTED);
+        try {
+            assertEquals(Map.of(1L, 5L), journal.recover());
+        } finally {
+            journal.close();
+        }
+    }
+
+    /**
+     * Segment 0: event 1 +2 and +3, segment 1: event 2 +4 and event 1 +2, segment 2 (left
+     * active, as after a crash): event 2 -3 and +4.
+     */
+    private void writeThreeSegments() throws Exception {
+        CapacityJournal journal = new CapacityJournal(directory, false, NOTHING_COMMITTED);
+        journal.append(1L, 2);
+        journal.append(1L, 3);
+        assertEquals(0, journal.rotate());
+        journal.append(2L, 4);
+        journal.append(1L, 2);
+        assertEquals(1, journal.rotate());
+        journal.append(2L, -3);
+        journal.append(2L, 4);
+        journal.close();
+    }
+}
@@ -0,0 +1,206 @@
+package com.eventticketing.event.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SeatInventoryTest {
+    private static final int SECTIONS = 3;
+    private static final int ROWS = 4;
+    private static final int SEATS_PER_ROW = 25;
+    private static final int TOTAL = SECTIONS * ROWS * SEATS_PER_ROW;
+    private static final long FIRST_SEAT_ID = 1000;
+    private static final int THREADS = 8;
+
+    @Test
+    void claimAndReleaseFlipAvailabilityOnce() {
+        SeatInventory inventory = inventory();
+        long seatId = FIRST_SEAT_ID + 70;
+
+        assertTrue(inventory.claim(seatId));
+        assertFalse(inventory.claim(seatId));
+        assertFalse(inventory.isAvailable(seatId));
+        assertEquals(TOTAL - 1, inventory.getAvailableCount());
+
+        assertTrue(inventory.release(seatId));
+        assertFalse(inventory.release(seatId));
+        assertTrue(inventory.isAvailable(seatId));
+        assertEquals(TOTAL, inventory.getAvailableCount());
+    }
+
+    @Test
+    void unknownSeatsCannotBeClaimedOrReleased() {
+        SeatInventory inventory = inventory();
+
+        assertFalse(inventory.claim(FIRST_SEAT_ID - 1));
+        assertFalse(inventory.release(FIRST_SEAT_ID + TOTAL));
+        assertEquals(TOTAL, inventory.getAvailableCount());
+    }
+
+    @Test
+    void concurrentClaimsOfTheSameSeatsHaveOneWinnerEach() throws Exception {
+        SeatInventory inventory = inventory();
+        AtomicIntegerArray winners = new AtomicIntegerArray(TOTAL);
+
+        runConcurrently(() -> {
+            for (int i = 0; i < TOTAL; i++) {
+                if (inventory.claim(FIRST_SEAT_ID + i)) {
+                    winners.incrementAndGet(i);
+                }
+            }
+            return null;
+        });
+
+        for (int i = 0; i < TOTAL; i++) {
+            assertEquals(1, winners.get(i), "winners of seat " + i);
+        }
+        assertEquals(0, inventory.getAvailableCount());
+    }
+
+    @Test
+    void concurrentClaimsAndReleasesNeverShareASeat() throws Exception {
+        SeatInventory inventory = inventory();
+        AtomicIntegerArray holders = new AtomicIntegerArray(TOTAL);
+
+        runConcurrently(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            List<Integer> held = new ArrayList<>();
+            for (int n = 0; n < 20000; n++) {
+                if (!held.isEmpty() && random.nextBoolean()) {
+                    int index = held.remove(random.nextInt(held.size()));
+                    holders.decrementAndGet(index);
+                    assertTrue(inventory.release(FIRST_SEAT_ID + index));
+                } else {
+                    int index = random.nextInt(TOTAL);
+                    if (inventory.claim(FIRST_SEAT_ID + index)) {
+                        assertEquals(1, holders.incrementAndGet(index), "holders of seat " + index);
+                        held.add(index);
+                    }
+                }
+            }
+            return null;
+        });
+
+        int held = 0;
+        for (int i = 0; i < TOTAL; i++) {
+            held += holders.get(i);
+            assertEquals(holders.get(i) == 0, inventory.isAvailable(FIRST_SEAT_ID + i), "seat " + i);
+        }
+        assertEquals(TOTAL - held, inventory.getAvailableCount());
+    }
+
+    @Test
+    void allocatorNeverHandsOutASeatTwice() throws Exception {
+        SeatInventory inventory = inventory();
+        Set<Integer> taken = ConcurrentHashMap.newKeySet();
+
+        runConcurrently(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int misses = 0;
+            while (misses < 10) {
+                if (random.nextInt(4) == 0) {
+                    // Direct reservations race the allocator for the same seats
+                    int index = random.nextInt(TOTAL);
+                    if (inventory.claim(FIRST_SEAT_ID + index)) {
+                        assertTrue(taken.add(index), "seat " + index + " handed out twice");
+                    }
+                    continue;
+                }
+                String section = random.nextBoolean() ? "S" + random.nextInt(SECTIONS) : null;
+                int[] indexes = inventory.allocate(section, 1 + random.nextInt(4));
+                if (indexes == null) {
+                    misses++;
+                    continue;
+                }
+                for (int index : indexes) {
+                    assertTrue(taken.add(index), "seat " + index + " handed out twice");
+                    assertFalse(inventory.isAvailable(inventory.seatIdAt(index)));
+                }
+            }
+            return null;
+        });
+
+        assertEquals(TOTAL - taken.size(), inventory.getAvailableCount());
+    }
+
+    @Test
+    void allocatePrefersAdjacentSeatsInTheFrontRow() {
+        SeatInventory inventory = inventory();
+        // Leave a single free seat at the start of the first row of section S0
+        for (int i = 1; i < 3; i++) {
+            inventory.claim(FIRST_SEAT_ID + i);
+        }
+
+        assertArrayEquals(new int[] {3, 4, 5}, inventory.allocate("S0", 3));
+        assertArrayEquals(new int[] {0}, inventory.allocate("S0", 1));
+    }
+
+    @Test
+    void allocateTakesNothingWhenTooFewSeatsAreLeft() {
+        SeatInventory inventory = inventory();
+        int sectionSize = ROWS * SEATS_PER_ROW;
+        for (int i = 0; i < sectionSize - 2; i++) {
+            inventory.claim(FIRST_SEAT_ID + i);
+        }
+
+        assertNull(inventory.allocate("S0", 3));
+        assertEquals(TOTAL - sectionSize + 2, inventory.getAvailableCount());
+        assertNull(inventory.allocate("unknown", 1));
+    }
+
+    private static SeatInventory inventory() {
+        long[] seatIds = new long[TOTAL];
+        boolean[] available = new boolean[TOTAL];
+        String[] sections = new String[TOTAL];
+        String[] rows = new String[TOTAL];
+        String[] numbers = new String[TOTAL];
+        for (int i = 0; i < TOTAL; i++) {
+            seatIds[i] = FIRST_SEAT_ID + i;
+            available[i] = true;
+            sections[i] = "S" + i / (ROWS * SEATS_PER_ROW);
+            rows[i] = String.valueOf(i / SEATS_PER_ROW % ROWS + 1);
+            numbers[i] = String.valueOf(i % SEATS_PER_ROW + 1);
+        }
+        return new SeatInventory(1L, seatIds, available, sections, rows, numbers, 64);
+    }
+
+    /**
+     * Starts the task on every thread at once and rethrows the first failure.
+     */
+    private static void runConcurrently(Callable<Void> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.eventticketing.event.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+    private static final long TICK = 100;
+
+    @Test
+    void expiresAtTheDeadlineAndNotBefore() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 0);
+        wheel.schedule("hold", 250);
+
+        assertEquals(List.of(), advance(wheel, 299));
+        assertEquals(List.of("hold"), advance(wheel, 300));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void deadlinesInThePastExpireOnTheNextAdvance() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 10_000);
+        wheel.schedule("late", 5_000);
+
+        assertEquals(List.of("late"), advance(wheel, 10_000));
+    }
+
+    @Test
+    void expiresInDeadlineOrderAcrossLevels() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 0);
+        wheel.schedule("hour", TimeUnit.HOURS.toMillis(1));
+        wheel.schedule("second", 1_000);
+        wheel.schedule("day", TimeUnit.DAYS.toMillis(1));
+        wheel.schedule("minute", TimeUnit.MINUTES.toMillis(1));
+
+        assertEquals(List.of("second", "minute", "hour", "day"), advance(wheel, TimeUnit.DAYS.toMillis(2)));
+    }
+
+    @Test
+    void deadlinesBeyondTheTopLevelAreCascadedUntilTheyFit() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 0);
+        long deadline = TimeUnit.DAYS.toMillis(30);
+        wheel.schedule("month", deadline);
+
+        assertEquals(List.of(), advance(wheel, deadline - 1));
+        assertEquals(List.of("month"), advance(wheel, deadline));
+    }
+
+    @Test
+    void everyTimeoutExpiresOnTheFirstAdvancePastItsDeadline() {
+        Random random = new Random(42);
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 0);
+        Map<String, Long> deadlines = new HashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            long deadline = random.nextInt(2) == 0
+                    ? random.nextInt(60_000)
+                    : (long) (random.nextDouble() * TimeUnit.DAYS.toMillis(2));
+            deadlines.put("t" + i, deadline);
+            wheel.schedule("t" + i, deadline);
+        }
+
+        Set<String> expired = new HashSet<>();
+        long now = 0;
+        while (expired.size() < deadlines.size()) {
+            now += 1 + random.nextInt((int) TimeUnit.HOURS.toMillis(1));
+            long until = now;
+            for (String item : advance(wheel, now)) {
+                assertTrue(deadlines.get(item) <= until, item + " expired early");
+                assertTrue(expired.add(item), item + " expired twice");
+            }
+            for (Map.Entry<String, Long> entry : deadlines.entrySet()) {
+                // Deadlines are rounded up to whole ticks
+                long due = (entry.getValue() + TICK - 1) / TICK * TICK;
+                assertEquals(due <= now, expired.contains(entry.getKey()), entry.getKey() + " at " + now);
+            }
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void cancelledTimeoutsDoNotExpire() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 0);
+        TimingWheel.Timeout<String> cancelled = wheel.schedule("cancelled", 1_000);
+        wheel.schedule("kept", 1_000);
+
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+        assertEquals(List.of("kept"), advance(wheel, 1_000));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void cancelAfterExpiryFails() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 0);
+        TimingWheel.Timeout<String> timeout = wheel.schedule("hold", 1_000);
+
+        assertEquals(List.of("hold"), advance(wheel, 1_000));
+        assertFalse(timeout.cancel());
+    }
+
+    @Test
+    void cancelledTimeoutsInUpperLevelsAreDroppedWhenCascaded() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 0);
+        wheel.schedule("hour", TimeUnit.HOURS.toMillis(1)).cancel();
+        assertEquals(1, wheel.size());
+
+        assertEquals(List.of(), advance(wheel, TimeUnit.HOURS.toMillis(2)));
+        assertEquals(0, wheel.size());
+    }
+
+    private static List<String> advance(TimingWheel<String> wheel, long nowMillis) {
+        List<String> expired = new ArrayList<>();
+        wheel.advance(nowMillis, expired::add);
+        return expired;
+    }
+}
@@ -0,0 +1,49 @@
+package com.eventticketing.loadtest;
+
+import com.eventticketing.shared.concurrent.VirtualThreads;
+import org.eclipse.jetty.ee10.webapp.WebAppContext;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+import java.io.File;
+
+/**
+ * Embedded Jetty 12 running the booking servlet, the load-test counterpart of
+ * {@code EmbeddedTomcat} for the event servlet.
+ */
+class EmbeddedJetty {
+
+    private EmbeddedJetty() {}
+
+    /**
+     * Starts Jetty on {@code port} with the exploded booking WAR deployed at /booking-servlet.
+     * {@code moduleDir} is the booking-servlet module directory; run 'mvn package' first.
+     */
+    static Server start(int port, File moduleDir) throws Exception {
+        File explodedWarDir = new File(moduleDir, "target/booking-servlet");
+        if (!new File(explodedWarDir, "WEB-INF").exists()) {
+            throw new IllegalStateException("Cannot find exploded WAR " + explodedWarDir + ". Run 'mvn package' first.");
+        }
+
+        QueuedThreadPool threadPool = new QueuedThreadPool(200);
+        threadPool.setName("booking-jetty");
+        // Same opt-in as jetty-virtual-threads.xml: -Dvirtual.threads.enabled=true on JDK 21+
+        if (VirtualThreads.isEnabled()) {
+            threadPool.setVirtualThreadsExecutor(VirtualThreads.newExecutor("booking-jetty-vt", 200));
+        }
+
+        Server server = new Server(threadPool);
+        ServerConnector connector = new ServerConnector(server);
+        connector.setPort(port);
+        server.addConnector(connector);
+
+        WebAppContext context = new WebAppContext();
+        context.setContextPath("/booking-servlet");
+        context.setWar(explodedWarDir.getAbsolutePath());
+        server.setHandler(context);
+
+        server.start();
+        return server;
+    }
+}
@@ -0,0 +1,75 @@
+package com.eventticketing.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram and error count for one endpoint. Latencies are recorded in microseconds,
+ * for failed calls too, so slow errors show up in the percentiles.
+ */
+class EndpointStats {
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    private final String name;
+    private final Recorder recorder = new Recorder(MAX_LATENCY_MICROS, 3);
+    private final LongAdder errors = new LongAdder();
+
+    EndpointStats(String name) {
+        this.name = name;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    void record(long startNanos, boolean success) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+        recorder.recordValue(Math.min(micros, MAX_LATENCY_MICROS));
+        if (!success) {
+            errors.increment();
+        }
+    }
+
+    /**
+     * Drops everything recorded so far; called when the warm-up ends.
+     */
+    void reset() {
+        recorder.reset();
+        errors.reset();
+    }
+
+    Snapshot snapshot() {
+        return new Snapshot(name, recorder.getIntervalHistogram(), errors.sum());
+    }
+
+    static class Snapshot {
+        final String name;
+        final Histogram histogram;
+        final long errors;
+
+        Snapshot(String name, Histogram histogram, long errors) {
+            this.name = name;
+            this.histogram = histogram;
+            this.errors = errors;
+        }
+
+        long count() {
+            return histogram.getTotalCount();
+        }
+
+        double errorRate() {
+            return count() == 0 ? 0.0 : (double) errors / count();
+        }
+
+        double percentileMillis(double percentile) {
+            return histogram.getValueAtPercentile(percentile) / 1000.0;
+        }
+
+        double maxMillis() {
+            return histogram.getMaxValue() / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.eventticketing.loadtest;
+
+import com.eventticketing.shared.concurrent.VirtualThreads;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * On-sale traffic: every simulated customer loops over browse events, view one (mostly the
+ * event going on sale), list its seats, book a seat and pay. A step is skipped when the
+ * one before it failed, like a real client would.
+ *
+ * Customers are a closed loop: each waits for its response before the next request, so
+ * latencies measure what one customer sees, not a fixed arrival rate.
+ */
+class FlashSaleScenario {
+    private static final Logger logger = LoggerFactory.getLogger(FlashSaleScenario.class);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final LoadTestConfig config;
+    private final LoadTestDatabase.Dataset dataset;
+    private final String eventsUrl;
+    private final String bookingsUrl;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient;
+
+    private final EndpointStats browse = new EndpointStats("GET /events");
+    private final EndpointStats view = new EndpointStats("GET /events/{id}");
+    private final EndpointStats seats = new EndpointStats("GET /events/{id}/seats");
+    private final EndpointStats book = new EndpointStats("POST /bookings");
+    private final EndpointStats pay = new EndpointStats("PUT /bookings/{id}/payment");
+    private final List<EndpointStats> endpoints = List.of(browse, view, seats, book, pay);
+
+    private volatile boolean running = true;
+
+    FlashSaleScenario(LoadTestConfig config, LoadTestDatabase.Dataset dataset) {
+        this.config = config;
+        this.dataset = dataset;
+        this.eventsUrl = "http://localhost:" + config.eventPort + "/event-servlet/api/events";
+        this.bookingsUrl = "http://localhost:" + config.bookingPort + "/booking-servlet/api/bookings";
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(VirtualThreads.newExecutor("loadtest-client", 8))
+                .build();
+    }
+
+    /**
+     * Runs the warm-up and then the measured period, and returns what was measured.
+     */
+    Result run() throws InterruptedException {
+        ExecutorService customers = VirtualThreads.newExecutor("customer", config.users);
+        for (int i = 0; i < config.users; i++) {
+            customers.execute(this::customerLoop);
+        }
+
+        logger.info("Warming up for {}s with {} customers", config.warmupSeconds, config.users);
+        TimeUnit.SECONDS.sleep(config.warmupSeconds);
+        endpoints.forEach(EndpointStats::reset);
+
+        logger.info("Measuring for {}s", config.durationSeconds);
+        long start = System.nanoTime();
+        TimeUnit.SECONDS.sleep(config.durationSeconds);
+        List<EndpointStats.Snapshot> snapshots = new ArrayList<>();
+        for (EndpointStats endpoint : endpoints) {
+            snapshots.add(endpoint.snapshot());
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        running = false;
+        customers.shutdown();
+        if (!customers.awaitTermination(REQUEST_TIMEOUT.toSeconds() + 5, TimeUnit.SECONDS)) {
+            customers.shutdownNow();
+        }
+        return new Result(snapshots, elapsedSeconds);
+    }
+
+    private void customerLoop() {
+        try {
+            while (running) {
+                visit(ThreadLocalRandom.current());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void visit(ThreadLocalRandom random) throws InterruptedException {
+        List<Map<String, Object>> listing = readList(call(browse, get(eventsUrl + "?status=ACTIVE&size=20"), 200));
+        pause();
+
+        long eventId = dataset.hotEventId();
+        if (random.nextDouble() >= config.hotEventRatio && !listing.isEmpty()) {
+            eventId = ((Number) listing.get(random.nextInt(listing.size())).get("id")).longValue();
+        }
+        Map<String, Object> event = readMap(call(view, get(eventsUrl + "/" + eventId), 200));
+        if (event == null) {
+            return;
+        }
+        pause();
+
+        List<Map<String, Object>> available = readList(call(seats, get(eventsUrl + "/" + eventId + "/seats"), 200));
+        if (available.isEmpty()) {
+            return;
+        }
+        Map<String, Object> seat = available.get(random.nextInt(available.size()));
+        pause();
+
+        BigDecimal price = event.get("basePrice") != null ? new BigDecimal(event.get("basePrice").toString()) : BigDecimal.TEN;
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("seatId", seat.get("id"));
+        item.put("quantity", 1);
+        item.put("unitPrice", price);
+        item.put("totalPrice", price);
+        Map<String, Object> bookingRequest = new LinkedHashMap<>();
+        bookingRequest.put("userId", dataset.customerIds[random.nextInt(dataset.customerIds.length)]);
+        bookingRequest.put("eventId", eventId);
+        bookingRequest.put("totalAmount", price);
+        bookingRequest.put("paymentMethod", "CREDIT_CARD");
+        bookingRequest.put("items", List.of(item));
+        Map<String, Object> booking = readMap(call(book, send("POST", bookingsUrl, bookingRequest), 201));
+        if (booking == null || booking.get("id") == null) {
+            return;
+        }
+        pause();
+
+        Map<String, Object> payment = Map.of("paymentStatus", "COMPLETED", "paymentMethod", "CREDIT_CARD");
+        call(pay, send("PUT", bookingsUrl + "/" + booking.get("id") + "/payment", payment), 200);
+        pause();
+    }
+
+    private void pause() throws InterruptedException {
+        if (config.thinkTimeMs > 0) {
+            Thread.sleep(config.thinkTimeMs);
+        }
+    }
+
+    private HttpRequest get(String url) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+    }
+
+    private HttpRequest send(String method, String url, Object body) {
+        try {
+            return HttpRequest.newBuilder(URI.create(url))
+                    .timeout(REQUEST_TIMEOUT)
+                    .header("Content-Type", "application/json")
+                    .method(method, HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                    .build();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot serialize request body", e);
+        }
+    }
+
+    /**
+     * Sends the request and records it against {@code stats}; returns the body, or null when
+     * the call failed or did not answer with {@code expectedStatus}.
+     */
+    private String call(EndpointStats stats, HttpRequest request, int expectedStatus) throws InterruptedException {
+        long start = System.nanoTime();
+        try {
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            boolean success = response.statusCode() == expectedStatus;
+            stats.record(start, success);
+            if (!success) {
+                logger.debug("{} answered {}: {}", stats.getName(), response.statusCode(), response.body());
+            }
+            return success ? response.body() : null;
+        } catch (IOException e) {
+            stats.record(start, false);
+            logger.debug("{} failed: {}", stats.getName(), e.toString());
+            return null;
+        }
+    }
+
+    private List<Map<String, Object>> readList(String body) {
+        if (body == null) {
+            return Collections.emptyList();
+        }
+        try {
+            return objectMapper.readValue(body, new TypeReference<List<Map<String, Object>>>() {});
+        } catch (IOException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    private Map<String, Object> readMap(String body) {
+        if (body == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(body, new TypeReference<Map<String, Object>>() {});
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    static class Result {
+        final List<EndpointStats.Snapshot> endpoints;
+        final double elapsedSeconds;
+
+        Result(List<EndpointStats.Snapshot> endpoints, double elapsedSeconds) {
+            this.endpoints = endpoints;
+            this.elapsedSeconds = elapsedSeconds;
+        }
+
+        long totalRequests() {
+            return endpoints.stream().mapToLong(EndpointStats.Snapshot::count).sum();
+        }
+
+        long totalErrors() {
+            return endpoints.stream().mapToLong(s -> s.errors).sum();
+        }
+
+        double errorRate() {
+            long total = totalRequests();
+            return total == 0 ? 0.0 : (double) totalErrors() / total;
+        }
+    }
+}
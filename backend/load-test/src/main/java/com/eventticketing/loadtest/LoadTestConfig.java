@@ -0,0 +1,61 @@
+package com.eventticketing.loadtest;
+
+import com.eventticketing.shared.config.AppConfig;
+
+import java.io.File;
+
+/**
+ * Load test settings. Each one can be given as a system property ({@code -Dloadtest.users=500})
+ * or environment variable ({@code LOADTEST_USERS=500}).
+ */
+public class LoadTestConfig {
+
+    /** Concurrent simulated customers, each running the browse-view-seats-book-pay flow in a loop. */
+    final int users = AppConfig.getInt("loadtest.users", 100);
+    final int warmupSeconds = AppConfig.getInt("loadtest.warmup.seconds", 10);
+    final int durationSeconds = AppConfig.getInt("loadtest.duration.seconds", 60);
+    /** Pause between steps of one customer; 0 drives the servers as hard as possible. */
+    final long thinkTimeMs = AppConfig.getLong("loadtest.think.time.ms", 0);
+
+    final int events = AppConfig.getInt("loadtest.events", 20);
+    /** Share of customers going for the on-sale event rather than a random one from the listing. */
+    final double hotEventRatio = Double.parseDouble(AppConfig.get("loadtest.hot.event.ratio", "0.8"));
+    final int sections = AppConfig.getInt("loadtest.sections", 4);
+    final int rowsPerSection = AppConfig.getInt("loadtest.rows.per.section", 20);
+    final int seatsPerRow = AppConfig.getInt("loadtest.seats.per.row", 25);
+    final int customers = AppConfig.getInt("loadtest.customers", 1000);
+
+    final int eventPort = AppConfig.getInt("loadtest.event.port", 18080);
+    final int bookingPort = AppConfig.getInt("loadtest.booking.port", 18081);
+
+    /** Use an existing database instead of the embedded one; its tables are created if missing. */
+    final String databaseUrl = AppConfig.get("loadtest.database.url", null);
+    final String databaseUser = AppConfig.get("loadtest.database.username", "eventuser");
+    final String databasePassword = AppConfig.get("loadtest.database.password", "eventpass");
+
+    /** Fail the run (exit code 1) when the overall error rate is above this fraction. */
+    final double maxErrorRate = Double.parseDouble(AppConfig.get("loadtest.max.error.rate", "0.01"));
+
+    final File backendDir = resolveBackendDir();
+
+    int seatsPerEvent() {
+        return sections * rowsPerSection * seatsPerRow;
+    }
+
+    private static File resolveBackendDir() {
+        String configured = AppConfig.get("loadtest.backend.dir", null);
+        if (configured != null) {
+            return new File(configured).getAbsoluteFile();
+        }
+        // Works from both backend/ and backend/load-test/ (mvn -pl load-test exec:java)
+        File dir = new File(System.getProperty("user.dir")).getAbsoluteFile();
+        return new File(dir, "event-servlet").isDirectory() ? dir : dir.getParentFile();
+    }
+
+    @Override
+    public String toString() {
+        return "users=" + users + ", warmup=" + warmupSeconds + "s, duration=" + durationSeconds + "s" +
+               ", thinkTime=" + thinkTimeMs + "ms, events=" + events + ", hotEventRatio=" + hotEventRatio +
+               ", seatsPerEvent=" + seatsPerEvent() + ", customers=" + customers;
+    }
+}
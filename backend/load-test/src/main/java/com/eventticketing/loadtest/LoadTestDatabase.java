@@ -0,0 +1,173 @@
+package com.eventticketing.loadtest;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The database the servlets run against during a load test: an embedded PostgreSQL started
+ * for the run, or an existing one when {@code loadtest.database.url} is set. Creates the
+ * schema and seeds on-sale events, their seat maps and customers.
+ */
+class LoadTestDatabase implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(LoadTestDatabase.class);
+
+    private static final String INSERT_USERS_SQL =
+            "INSERT INTO users (username, email, password_hash, first_name, last_name) " +
+            "SELECT 'loadtest' || g, 'loadtest' || g || '@example.com', 'not-a-real-hash', 'Load', 'Customer ' || g " +
+            "FROM generate_series(1, ?) g ON CONFLICT DO NOTHING";
+    private static final String SELECT_USERS_SQL =
+            "SELECT id FROM users WHERE username LIKE 'loadtest%' ORDER BY id LIMIT ?";
+    private static final String INSERT_EVENTS_SQL =
+            "INSERT INTO events (title, description, event_date, venue, city, country, category, status, " +
+            "capacity, max_attendees, booked_seats, base_price, created_at) " +
+            "SELECT 'Load test event ' || g, 'Flash sale load test event number ' || g, " +
+            "CURRENT_TIMESTAMP + g * INTERVAL '1 day', 'Load Test Arena ' || g, 'Cluj-Napoca', 'Romania', 'Concert', " +
+            "'ACTIVE', ?, ?, 0, 50.00 + g, CURRENT_TIMESTAMP " +
+            "FROM generate_series(1, ?) g RETURNING id";
+    private static final String SET_VENUES_SQL = "UPDATE events SET venue_id = id WHERE id = ANY(?)";
+    private static final String INSERT_SEATS_SQL =
+            "INSERT INTO seats (venue_id, section, row_number, seat_number, seat_type, is_available) " +
+            "SELECT e.id, chr(64 + s), r::text, n::text, CASE WHEN s = 1 THEN 'VIP' ELSE 'STANDARD' END, true " +
+            "FROM unnest(?::bigint[]) AS e(id), generate_series(1, ?) s, generate_series(1, ?) r, generate_series(1, ?) n";
+
+    private final EmbeddedPostgres embedded;
+    private final String url;
+    private final String username;
+    private final String password;
+
+    private LoadTestDatabase(EmbeddedPostgres embedded, String url, String username, String password) {
+        this.embedded = embedded;
+        this.url = url;
+        this.username = username;
+        this.password = password;
+    }
+
+    static LoadTestDatabase start(LoadTestConfig config) throws IOException {
+        if (config.databaseUrl != null) {
+            logger.info("Using external database {}", config.databaseUrl);
+            return new LoadTestDatabase(null, config.databaseUrl, config.databaseUser, config.databasePassword);
+        }
+        EmbeddedPostgres embedded = EmbeddedPostgres.builder().start();
+        String url = embedded.getJdbcUrl("postgres", "postgres");
+        logger.info("Started embedded PostgreSQL at {}", url);
+        return new LoadTestDatabase(embedded, url, "postgres", "postgres");
+    }
+
+    String getUrl() {
+        return url;
+    }
+
+    String getUsername() {
+        return username;
+    }
+
+    String getPassword() {
+        return password;
+    }
+
+    /**
+     * Creates missing tables and inserts a fresh set of events (one venue each) plus customers.
+     */
+    Dataset seed(LoadTestConfig config) throws SQLException, IOException {
+        try (Connection conn = DriverManager.getConnection(url, username, password)) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute(readResource("/loadtest/schema.sql"));
+            }
+
+            List<Long> customerIds = new ArrayList<>();
+            try (PreparedStatement insert = conn.prepareStatement(INSERT_USERS_SQL);
+                 PreparedStatement select = conn.prepareStatement(SELECT_USERS_SQL)) {
+                insert.setInt(1, config.customers);
+                insert.executeUpdate();
+                select.setInt(1, config.customers);
+                try (ResultSet rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        customerIds.add(rs.getLong(1));
+                    }
+                }
+            }
+
+            List<Long> eventIds = new ArrayList<>();
+            try (PreparedStatement stmt = conn.prepareStatement(INSERT_EVENTS_SQL)) {
+                stmt.setInt(1, config.seatsPerEvent());
+                stmt.setInt(2, config.seatsPerEvent());
+                stmt.setInt(3, config.events);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        eventIds.add(rs.getLong(1));
+                    }
+                }
+            }
+
+            Array ids = conn.createArrayOf("bigint", eventIds.toArray());
+            try (PreparedStatement stmt = conn.prepareStatement(SET_VENUES_SQL)) {
+                stmt.setArray(1, ids);
+                stmt.executeUpdate();
+            }
+            int seats;
+            try (PreparedStatement stmt = conn.prepareStatement(INSERT_SEATS_SQL)) {
+                stmt.setArray(1, ids);
+                stmt.setInt(2, config.sections);
+                stmt.setInt(3, config.rowsPerSection);
+                stmt.setInt(4, config.seatsPerRow);
+                seats = stmt.executeUpdate();
+            }
+
+            conn.commit();
+            logger.info("Seeded {} events, {} seats and {} customers", eventIds.size(), seats, customerIds.size());
+            return new Dataset(toArray(eventIds), toArray(customerIds));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (embedded != null) {
+            embedded.close();
+        }
+    }
+
+    private static String readResource(String name) throws IOException {
+        try (InputStream in = LoadTestDatabase.class.getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IOException("Missing resource " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static long[] toArray(List<Long> values) {
+        return values.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Ids created by {@link #seed}; the first event is the one going on sale.
+     */
+    static class Dataset {
+        final long[] eventIds;
+        final long[] customerIds;
+
+        Dataset(long[] eventIds, long[] customerIds) {
+            this.eventIds = eventIds;
+            this.customerIds = customerIds;
+        }
+
+        long hotEventId() {
+            return eventIds[0];
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.eventticketing.loadtest;
+
+import com.eventticketing.event.servlet.EmbeddedTomcat;
+import org.apache.catalina.startup.Tomcat;
+import org.eclipse.jetty.server.Server;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Flash-sale load test: starts the database stand-in, the event servlet on Tomcat and the
+ * booking servlet on Jetty, drives on-sale traffic through {@link FlashSaleScenario} and
+ * prints latency percentiles, throughput and error rates per endpoint.
+ *
+ * Run after 'mvn package' with: mvn -pl load-test exec:java
+ * Settings are listed in {@link LoadTestConfig}. Exits with 1 when the error rate is above
+ * loadtest.max.error.rate, so it can gate a release.
+ */
+public class LoadTestMain {
+    private static final Logger logger = LoggerFactory.getLogger(LoadTestMain.class);
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = new LoadTestConfig();
+        logger.info("Load test settings: {}", config);
+
+        FlashSaleScenario.Result result;
+        try (LoadTestDatabase database = LoadTestDatabase.start(config)) {
+            LoadTestDatabase.Dataset dataset = database.seed(config);
+
+            // Read by DatabaseConnection in both webapps, and by the booking servlet's event client
+            System.setProperty("database.url", database.getUrl());
+            System.setProperty("database.username", database.getUsername());
+            System.setProperty("database.password", database.getPassword());
+            System.setProperty("event.service.url",
+                    "http://localhost:" + config.eventPort + "/event-servlet/api/events");
+
+            Tomcat tomcat = EmbeddedTomcat.start(config.eventPort, new File(config.backendDir, "event-servlet"));
+            Server jetty = EmbeddedJetty.start(config.bookingPort, new File(config.backendDir, "booking-servlet"));
+            try {
+                awaitHealthy("http://localhost:" + config.eventPort + "/event-servlet/health");
+                awaitHealthy("http://localhost:" + config.bookingPort + "/booking-servlet/health");
+                result = new FlashSaleScenario(config, dataset).run();
+            } finally {
+                jetty.stop();
+                tomcat.stop();
+                tomcat.destroy();
+            }
+        }
+
+        printReport(result);
+        boolean passed = result.totalRequests() > 0 && result.errorRate() <= config.maxErrorRate;
+        System.out.printf("Overall error rate %.3f%% (limit %.3f%%): %s%n",
+                result.errorRate() * 100, config.maxErrorRate * 100, passed ? "PASS" : "FAIL");
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static void printReport(FlashSaleScenario.Result result) {
+        String header = String.format("%-28s %9s %9s %8s %9s %9s %9s %9s %9s",
+                "Endpoint", "Requests", "Req/s", "Errors", "Error %", "p50 ms", "p99 ms", "p99.9 ms", "Max ms");
+        System.out.println("==========================================");
+        System.out.printf("Flash-sale load test, measured over %.1fs%n", result.elapsedSeconds);
+        System.out.println(header);
+        for (EndpointStats.Snapshot s : result.endpoints) {
+            System.out.printf("%-28s %9d %9.1f %8d %8.2f%% %9.2f %9.2f %9.2f %9.2f%n",
+                    s.name, s.count(), s.count() / result.elapsedSeconds, s.errors, s.errorRate() * 100,
+                    s.percentileMillis(50), s.percentileMillis(99), s.percentileMillis(99.9), s.maxMillis());
+        }
+        System.out.printf("%-28s %9d %9.1f %8d %8.2f%%%n", "Total", result.totalRequests(),
+                result.totalRequests() / result.elapsedSeconds, result.totalErrors(), result.errorRate() * 100);
+        System.out.println("==========================================");
+    }
+
+    private static void awaitHealthy(String url) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 60_000;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+                connection.setConnectTimeout(2000);
+                connection.setReadTimeout(5000);
+                int status = connection.getResponseCode();
+                connection.disconnect();
+                if (status == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Not up yet
+            }
+            Thread.sleep(500);
+        }
+        throw new IllegalStateException("Service did not become healthy: " + url);
+    }
+}
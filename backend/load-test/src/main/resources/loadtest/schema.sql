@@ -0,0 +1,107 @@
+-- Minimal schema for the load test, matching the columns the servlets read and write.
+
+CREATE TABLE IF NOT EXISTS users (
+    id BIGSERIAL PRIMARY KEY,
+    username VARCHAR(50) NOT NULL UNIQUE,
+    email VARCHAR(255) NOT NULL UNIQUE,
+    password_hash VARCHAR(255) NOT NULL,
+    first_name VARCHAR(100),
+    last_name VARCHAR(100),
+    phone VARCHAR(30),
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS events (
+    id BIGSERIAL PRIMARY KEY,
+    title VARCHAR(255) NOT NULL,
+    description TEXT,
+    event_date TIMESTAMP NOT NULL,
+    end_date TIMESTAMP,
+    venue VARCHAR(255),
+    venue_id BIGINT,
+    city VARCHAR(100),
+    country VARCHAR(100),
+    organizer_id BIGINT,
+    category VARCHAR(100),
+    status VARCHAR(20) DEFAULT 'ACTIVE',
+    capacity INTEGER DEFAULT 0,
+    max_attendees INTEGER,
+    booked_seats INTEGER DEFAULT 0,
+    base_price DECIMAL(10, 2),
+    ticket_sales_start TIMESTAMP,
+    ticket_sales_end TIMESTAMP,
+    images TEXT,
+    tags TEXT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS seats (
+    id BIGSERIAL PRIMARY KEY,
+    venue_id BIGINT NOT NULL,
+    section VARCHAR(20) NOT NULL,
+    row_number VARCHAR(10) NOT NULL,
+    seat_number VARCHAR(10) NOT NULL,
+    seat_type VARCHAR(20) DEFAULT 'STANDARD',
+    is_available BOOLEAN DEFAULT TRUE,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_seats_venue ON seats (venue_id);
+
+CREATE TABLE IF NOT EXISTS ticket_types (
+    id BIGSERIAL PRIMARY KEY,
+    event_id BIGINT NOT NULL REFERENCES events (id) ON DELETE CASCADE,
+    name VARCHAR(100) NOT NULL,
+    description TEXT,
+    price DECIMAL(10, 2) NOT NULL,
+    quantity_available INTEGER NOT NULL,
+    quantity_sold INTEGER DEFAULT 0,
+    sales_start TIMESTAMP,
+    sales_end TIMESTAMP,
+    is_active BOOLEAN DEFAULT TRUE,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS bookings (
+    id BIGSERIAL PRIMARY KEY,
+    user_id BIGINT NOT NULL REFERENCES users (id),
+    event_id BIGINT NOT NULL REFERENCES events (id),
+    booking_reference VARCHAR(50) NOT NULL UNIQUE,
+    total_amount DECIMAL(10, 2),
+    status VARCHAR(20) DEFAULT 'PENDING',
+    booking_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_bookings_user ON bookings (user_id);
+CREATE INDEX IF NOT EXISTS idx_bookings_event ON bookings (event_id);
+CREATE INDEX IF NOT EXISTS idx_bookings_created ON bookings (created_at DESC, id DESC);
+
+CREATE TABLE IF NOT EXISTS booking_items (
+    id BIGSERIAL PRIMARY KEY,
+    booking_id BIGINT NOT NULL REFERENCES bookings (id) ON DELETE CASCADE,
+    ticket_type_id BIGINT,
+    seat_id BIGINT,
+    quantity INTEGER NOT NULL DEFAULT 1,
+    unit_price DECIMAL(10, 2),
+    total_price DECIMAL(10, 2),
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_booking_items_booking ON booking_items (booking_id);
+
+CREATE TABLE IF NOT EXISTS payments (
+    id BIGSERIAL PRIMARY KEY,
+    booking_id BIGINT NOT NULL REFERENCES bookings (id) ON DELETE CASCADE,
+    amount DECIMAL(10, 2),
+    payment_method VARCHAR(50),
+    payment_status VARCHAR(20) DEFAULT 'PENDING',
+    payment_date TIMESTAMP,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_payments_booking ON payments (booking_id);
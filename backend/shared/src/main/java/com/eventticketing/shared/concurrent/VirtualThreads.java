@@ -0,0 +1,80 @@
+package com.eventticketing.shared.concurrent;
+
+import com.eventticketing.shared.config.AppConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opt-in virtual-thread support that still compiles and runs on JDK 17.
+ * Set {@code virtual.threads.enabled=true} (or {@code VIRTUAL_THREADS_ENABLED=true}) on a JDK 21+
+ * runtime to run container requests and background work on virtual threads; on older runtimes
+ * the flag is ignored and bounded platform-thread pools are used.
+ */
+public final class VirtualThreads {
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreads.class);
+
+    private static final boolean REQUESTED = AppConfig.getBoolean("virtual.threads.enabled", false);
+    private static final boolean SUPPORTED = detectSupport();
+
+    private VirtualThreads() {}
+
+    /**
+     * True when virtual threads were requested and the running JDK provides them.
+     */
+    public static boolean isEnabled() {
+        return REQUESTED && SUPPORTED;
+    }
+
+    /**
+     * Returns an executor that starts one virtual thread per task when virtual threads are enabled,
+     * otherwise a fixed pool of {@code platformThreads} daemon threads.
+     */
+    public static ExecutorService newExecutor(String name, int platformThreads) {
+        if (isEnabled()) {
+            try {
+                return newVirtualThreadPerTaskExecutor(name);
+            } catch (ReflectiveOperationException e) {
+                logger.warn("Could not create virtual-thread executor '{}', using platform threads", name, e);
+            }
+        }
+        return Executors.newFixedThreadPool(platformThreads, daemonThreadFactory(name));
+    }
+
+    public static ThreadFactory daemonThreadFactory(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor(String name) throws ReflectiveOperationException {
+        // Thread.ofVirtual().name(name + "-", 1).factory(), via reflection so the code builds on JDK 17
+        Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+        Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+        builder = builderType.getMethod("name", String.class, long.class).invoke(builder, name + "-", 1L);
+        ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        Method perTask = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+        return (ExecutorService) perTask.invoke(null, factory);
+    }
+
+    private static boolean detectSupport() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            if (REQUESTED) {
+                logger.warn("virtual.threads.enabled is set but this JDK ({}) has no virtual threads",
+                        System.getProperty("java.version"));
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.eventticketing.shared.config;
+
+/**
+ * Reads runtime settings the same way {@code DatabaseConnection} does: an environment
+ * variable wins, then a JVM system property, then the supplied default.
+ * The environment variable name is derived from the property name, e.g.
+ * {@code seat.inventory.enabled} -> {@code SEAT_INVENTORY_ENABLED}.
+ */
+public final class AppConfig {
+
+    private AppConfig() {}
+
+    public static String get(String propertyName, String defaultValue) {
+        String value = System.getenv(toEnvName(propertyName));
+        if (value == null || value.isEmpty()) {
+            value = System.getProperty(propertyName);
+        }
+        return value == null || value.isEmpty() ? defaultValue : value.trim();
+    }
+
+    public static int getInt(String propertyName, int defaultValue) {
+        String value = get(propertyName, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public static long getLong(String propertyName, long defaultValue) {
+        String value = get(propertyName, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public static boolean getBoolean(String propertyName, boolean defaultValue) {
+        String value = get(propertyName, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+
+    static String toEnvName(String propertyName) {
+        return propertyName.toUpperCase().replace('.', '_').replace('-', '_');
+    }
+}
@@ -1,5 +1,6 @@
 package com.eventticketing.shared.database;
 
+import com.eventticketing.shared.config.AppConfig;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import org.postgresql.Driver;
@@ -9,17 +10,72 @@ import org.slf4j.LoggerFactory;
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Connection pools of the servlets: the primary, for writes and anything that must see them,
+ * and optionally a read-only pool on a replica ({@code database.replica.url}) for reads that
+ * can be slightly stale.
+ * <ul>
+ *   <li>{@link #getReadConnection()} returns a replica connection while the replica is at most
+ *       {@code database.replica.max.staleness.ms} behind the primary, and a primary connection
+ *       otherwise: no replica configured, replica down or lagging;</li>
+ *   <li>read-after-write: a writer calls {@link #recordWrite(String)} with a key such as
+ *       {@code "event:42"}, and {@link #getReadConnection(String)} with the same key stays on the
+ *       primary until the replica has replayed past that write;</li>
+ *   <li>replica lag is measured every {@code database.replica.lag.check.ms} by a monitor thread.</li>
+ * </ul>
+ */
 public class DatabaseConnection {
     private static final Logger logger = LoggerFactory.getLogger(DatabaseConnection.class);
     private static HikariDataSource dataSource;
+    private static HikariDataSource replicaDataSource;
+    private static ScheduledExecutorService replicaMonitor;
     private static final String DEFAULT_DB_URL = "jdbc:postgresql://localhost:5432/eventticketing";
     private static final String DEFAULT_DB_USER = "eventuser";
     private static final String DEFAULT_DB_PASSWORD = "eventpass";
 
+    private static final long MAX_STALENESS_MS = AppConfig.getLong("database.replica.max.staleness.ms", 5000);
+    private static final long LAG_CHECK_MS = AppConfig.getLong("database.replica.lag.check.ms", 1000);
+    // 0 when the replica has replayed everything it received, or is not a standby at all
+    private static final String LAG_SQL =
+            "SELECT CASE WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, -1) END";
+
+    // Every write committed on the primary before this time is visible on the replica; 0 = unknown
+    private static volatile long replicaCaughtUpTo;
+    private static volatile long replicaLagMillis = -1;
+    // Time of the last write per key, until the replica has caught up with it
+    private static final ConcurrentHashMap<String, Long> writeFences = new ConcurrentHashMap<>();
+    private static final LongAdder replicaReads = new LongAdder();
+    private static final LongAdder primaryReads = new LongAdder();
+    private static final LongAdder replicaFailures = new LongAdder();
+
+    // Pool sizing per deployment; the replica pool defaults to the primary's settings
+    private static final int POOL_SIZE = AppConfig.getInt("database.pool.size", 20);
+    private static final int POOL_MIN_IDLE = AppConfig.getInt("database.pool.min.idle", 5);
+    private static final long POOL_CONNECTION_TIMEOUT_MS = AppConfig.getLong("database.pool.connection.timeout.ms", 30000);
+    private static final long POOL_IDLE_TIMEOUT_MS = AppConfig.getLong("database.pool.idle.timeout.ms", 600000);
+    private static final long POOL_MAX_LIFETIME_MS = AppConfig.getLong("database.pool.max.lifetime.ms", 1800000);
+    private static final long POOL_LEAK_DETECTION_MS = AppConfig.getLong("database.pool.leak.detection.ms", 60000);
+    private static final int PREPARE_THRESHOLD = AppConfig.getInt("database.prepare.threshold", 5);
+    private static final int PREPARED_STATEMENT_CACHE_QUERIES = AppConfig.getInt("database.prepared.statement.cache.queries", 256);
+    private static final int PREPARED_STATEMENT_CACHE_MIB = AppConfig.getInt("database.prepared.statement.cache.mib", 5);
+    // Metrics of every pool, by pool name; only filled while the class initializes
+    private static final Map<String, PoolMetrics> poolMetrics = new LinkedHashMap<>();
+
     static {
         initializeDataSource();
+        initializeReplicaDataSource();
     }
 
     private static void initializeDataSource() {
@@ -31,8 +87,6 @@ public class DatabaseConnection {
                 logger.warn("PostgreSQL driver already registered or failed to register: {}", e.getMessage());
             }
             
-            HikariConfig config = new HikariConfig();
-            
             // Get database configuration from environment variables or use defaults
             String dbUrl = System.getenv("DATABASE_URL");
             String dbUser = System.getenv("DATABASE_USER");
@@ -48,33 +102,7 @@ public class DatabaseConnection {
                 dbPassword = System.getProperty("database.password", DEFAULT_DB_PASSWORD);
             }
 
-            config.setJdbcUrl(dbUrl);
-            config.setUsername(dbUser);
-            config.setPassword(dbPassword);
-            config.setDriverClassName("org.postgresql.Driver");
-            
-            // Connection pool settings
-            config.setMaximumPoolSize(20);
-            config.setMinimumIdle(5);
-            config.setConnectionTimeout(30000);
-            config.setIdleTimeout(600000);
-            config.setMaxLifetime(1800000);
-            config.setLeakDetectionThreshold(60000);
-            
-            // PostgreSQL specific settings
-            config.addDataSourceProperty("cachePrepStmts", "true");
-            config.addDataSourceProperty("prepStmtCacheSize", "250");
-            config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
-            config.addDataSourceProperty("useServerPrepStmts", "true");
-            config.addDataSourceProperty("application_name", "EventTicketingSystem");
-            config.addDataSourceProperty("tcpKeepAlive", "true");
-            config.addDataSourceProperty("socketTimeout", "30");
-            
-            // Connection validation
-            config.setConnectionTestQuery("SELECT 1");
-            config.setValidationTimeout(5000);
-            
-            dataSource = new HikariDataSource(config);
+            dataSource = new HikariDataSource(poolConfig("primary", dbUrl, dbUser, dbPassword));
             logger.info("Database connection pool initialized successfully");
             logger.info("Database URL: {}", dbUrl);
             logger.info("Database User: {}", dbUser);
@@ -85,11 +113,172 @@ public class DatabaseConnection {
         }
     }
 
+    /**
+     * Optional read-only pool on {@code database.replica.url}. It starts even when the replica
+     * is unreachable; reads then stay on the primary until the lag monitor reaches it.
+     */
+    private static void initializeReplicaDataSource() {
+        String replicaUrl = AppConfig.get("database.replica.url", null);
+        if (replicaUrl == null || dataSource == null) {
+            return;
+        }
+        try {
+            HikariConfig config = poolConfig("replica", replicaUrl,
+                    AppConfig.get("database.replica.username", dataSource.getUsername()),
+                    AppConfig.get("database.replica.password", dataSource.getPassword()));
+            config.setReadOnly(true);
+            config.setMaximumPoolSize(AppConfig.getInt("database.replica.pool.size", POOL_SIZE));
+            config.setMinimumIdle(AppConfig.getInt("database.replica.pool.min.idle", POOL_MIN_IDLE));
+            // Falling back to the primary beats waiting for a struggling replica
+            config.setConnectionTimeout(AppConfig.getLong("database.replica.connection.timeout.ms", 1000));
+            config.setInitializationFailTimeout(-1);
+            replicaDataSource = new HikariDataSource(config);
+
+            replicaMonitor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "replica-lag-monitor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            replicaMonitor.scheduleWithFixedDelay(DatabaseConnection::checkReplicaLag, 0, LAG_CHECK_MS, TimeUnit.MILLISECONDS);
+            logger.info("Read replica pool initialized: {} (max staleness {} ms)", replicaUrl, MAX_STALENESS_MS);
+        } catch (Exception e) {
+            logger.error("Failed to initialize the read replica pool, reads will use the primary", e);
+            replicaDataSource = null;
+            poolMetrics.remove("replica");
+        }
+    }
+
+    private static HikariConfig poolConfig(String poolName, String url, String user, String password) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(poolName);
+        config.setJdbcUrl(url);
+        config.setUsername(user);
+        config.setPassword(password);
+        config.setDriverClassName("org.postgresql.Driver");
+        
+        // Connection pool settings
+        config.setMaximumPoolSize(POOL_SIZE);
+        config.setMinimumIdle(POOL_MIN_IDLE);
+        config.setConnectionTimeout(POOL_CONNECTION_TIMEOUT_MS);
+        config.setIdleTimeout(POOL_IDLE_TIMEOUT_MS);
+        config.setMaxLifetime(POOL_MAX_LIFETIME_MS);
+        config.setLeakDetectionThreshold(POOL_LEAK_DETECTION_MS);
+        PoolMetrics metrics = new PoolMetrics(poolName, POOL_LEAK_DETECTION_MS);
+        config.setMetricsTrackerFactory((name, poolStats) -> metrics.attach(poolStats));
+        poolMetrics.put(poolName, metrics);
+        
+        // PostgreSQL specific settings
+        // pgjdbc caches prepared statements per connection; from the prepareThreshold-th execution
+        // of the same SQL it switches to a named server-side statement that skips parse and plan
+        config.addDataSourceProperty("prepareThreshold", String.valueOf(PREPARE_THRESHOLD));
+        config.addDataSourceProperty("preparedStatementCacheQueries", String.valueOf(PREPARED_STATEMENT_CACHE_QUERIES));
+        config.addDataSourceProperty("preparedStatementCacheSizeMiB", String.valueOf(PREPARED_STATEMENT_CACHE_MIB));
+        config.addDataSourceProperty("application_name", "EventTicketingSystem");
+        config.addDataSourceProperty("tcpKeepAlive", "true");
+        config.addDataSourceProperty("socketTimeout", "30");
+        
+        // Connection validation
+        config.setConnectionTestQuery("SELECT 1");
+        config.setValidationTimeout(5000);
+        return config;
+    }
+
     public static Connection getConnection() throws SQLException {
         if (dataSource == null) {
             throw new SQLException("DataSource is not initialized");
         }
-        return dataSource.getConnection();
+        return instrument(dataSource.getConnection());
+    }
+
+    /**
+     * A primary connection; same as {@link #getConnection()}.
+     */
+    public static Connection getWriteConnection() throws SQLException {
+        return getConnection();
+    }
+
+    /**
+     * A connection for reads that may be up to {@code database.replica.max.staleness.ms} old.
+     */
+    public static Connection getReadConnection() throws SQLException {
+        return getReadConnection(null);
+    }
+
+    /**
+     * Like {@link #getReadConnection()}, but also sees every write recorded for {@code fenceKey}.
+     */
+    public static Connection getReadConnection(String fenceKey) throws SQLException {
+        HikariDataSource replica = replicaDataSource;
+        if (replica != null && replicaUsable(fenceKey)) {
+            try {
+                Connection conn = replica.getConnection();
+                replicaReads.increment();
+                return instrument(conn);
+            } catch (SQLException e) {
+                // Stay off the replica until the monitor reaches it again
+                replicaCaughtUpTo = 0;
+                replicaFailures.increment();
+                logger.warn("Read replica unavailable, reading from the primary: {}", e.getMessage());
+            }
+        }
+        primaryReads.increment();
+        return getConnection();
+    }
+
+    /**
+     * Records a committed write, so reads with the same fence key stay on the primary until
+     * the replica has it. A no-op without a replica.
+     */
+    public static void recordWrite(String fenceKey) {
+        if (replicaDataSource != null) {
+            writeFences.put(fenceKey, System.currentTimeMillis());
+        }
+    }
+
+    public static Map<String, Object> getReplicaStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("configured", replicaDataSource != null);
+        if (replicaDataSource != null) {
+            long caughtUpTo = replicaCaughtUpTo;
+            stats.put("lagMillis", replicaLagMillis);
+            stats.put("stalenessMillis", caughtUpTo > 0 ? System.currentTimeMillis() - caughtUpTo : -1);
+            stats.put("maxStalenessMillis", MAX_STALENESS_MS);
+            stats.put("pendingWriteFences", writeFences.size());
+        }
+        stats.put("replicaReads", replicaReads.sum());
+        stats.put("primaryReads", primaryReads.sum());
+        stats.put("replicaFailures", replicaFailures.sum());
+        return stats;
+    }
+
+    private static boolean replicaUsable(String fenceKey) {
+        long caughtUpTo = replicaCaughtUpTo;
+        if (caughtUpTo == 0 || System.currentTimeMillis() - caughtUpTo > MAX_STALENESS_MS) {
+            return false;
+        }
+        Long writtenAt = fenceKey != null ? writeFences.get(fenceKey) : null;
+        return writtenAt == null || writtenAt < caughtUpTo;
+    }
+
+    private static void checkReplicaLag() {
+        long checkedAt = System.currentTimeMillis();
+        try (Connection conn = replicaDataSource.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(LAG_SQL)) {
+            long lag = rs.next() ? (long) rs.getDouble(1) : -1;
+            replicaLagMillis = lag;
+            if (lag < 0) {
+                replicaCaughtUpTo = 0;
+                return;
+            }
+            long caughtUpTo = checkedAt - lag;
+            replicaCaughtUpTo = caughtUpTo;
+            writeFences.values().removeIf(writtenAt -> writtenAt < caughtUpTo);
+        } catch (SQLException | RuntimeException e) {
+            replicaLagMillis = -1;
+            replicaCaughtUpTo = 0;
+            logger.debug("Replica lag check failed: {}", e.getMessage());
+        }
     }
 
     public static DataSource getDataSource() {
@@ -97,6 +286,13 @@ public class DatabaseConnection {
     }
 
     public static void closeDataSource() {
+        if (replicaMonitor != null) {
+            replicaMonitor.shutdownNow();
+        }
+        if (replicaDataSource != null && !replicaDataSource.isClosed()) {
+            replicaDataSource.close();
+            logger.info("Read replica connection pool closed");
+        }
         if (dataSource != null && !dataSource.isClosed()) {
             dataSource.close();
             logger.info("Database connection pool closed");
@@ -112,6 +308,44 @@ public class DatabaseConnection {
         }
     }
 
+    /**
+     * Live metrics of every pool: connection counts, acquire, usage and creation time
+     * histograms, borrow timeouts and leak suspects.
+     */
+    public static Map<String, Object> getPoolMetrics() {
+        Map<String, Object> pools = new LinkedHashMap<>();
+        for (PoolMetrics metrics : poolMetrics.values()) {
+            pools.put(metrics.getPoolName(), metrics.getStats());
+        }
+        return pools;
+    }
+
+    /**
+     * Appends {@link #getPoolMetrics()} in Prometheus text format.
+     */
+    public static void writePoolMetrics(StringBuilder out) {
+        PoolMetrics.writePrometheus(out, poolMetrics.values());
+    }
+
+    /**
+     * Per-statement timings, row counts and the slow query log; see {@link SqlStats}.
+     */
+    public static Map<String, Object> getSqlStats() {
+        return SqlStats.getSnapshot();
+    }
+
+    public static Map<String, Object> getSqlSummary() {
+        return SqlStats.getSummary();
+    }
+
+    public static void writeSqlMetrics(StringBuilder out) {
+        SqlStats.writePrometheus(out);
+    }
+
+    private static Connection instrument(Connection connection) {
+        return SqlStats.ENABLED ? InstrumentedJdbc.wrap(connection) : connection;
+    }
+
     public static void logConnectionStats() {
         if (dataSource != null) {
             logger.info("Database Connection Pool Stats:");
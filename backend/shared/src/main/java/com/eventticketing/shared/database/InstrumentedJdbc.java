@@ -0,0 +1,179 @@
+package com.eventticketing.shared.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * Dynamic proxies that time every statement executed through a pooled connection and report
+ * it to {@link SqlStats}. Prepared statements remember their bound parameters for the slow
+ * query log; result sets count the rows read. Everything else goes straight to the driver.
+ */
+final class InstrumentedJdbc {
+    private static final ClassLoader LOADER = InstrumentedJdbc.class.getClassLoader();
+
+    private InstrumentedJdbc() {
+    }
+
+    static Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(LOADER, new Class<?>[]{Connection.class},
+                new ConnectionHandler(connection));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+        private final Connection connection;
+
+        ConnectionHandler(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = InstrumentedJdbc.invoke(connection, method, args);
+            switch (method.getName()) {
+                case "prepareStatement":
+                    return Proxy.newProxyInstance(LOADER, new Class<?>[]{PreparedStatement.class},
+                            new StatementHandler((Statement) result, SqlStats.statementFor((String) args[0])));
+                case "createStatement":
+                    return Proxy.newProxyInstance(LOADER, new Class<?>[]{Statement.class},
+                            new StatementHandler((Statement) result, null));
+                default:
+                    return result;
+            }
+        }
+    }
+
+    /**
+     * Handles both kinds of statements: a prepared one has its SQL from the start, a plain
+     * one gets it with every {@code execute*} call.
+     */
+    private static final class StatementHandler implements InvocationHandler {
+        private final Statement statement;
+        private final SqlStats.Statement prepared;
+        private Object[] params = new Object[8];
+        private int paramCount;
+        private int batchSize;
+        private String batchSql;
+
+        StatementHandler(Statement statement, SqlStats.Statement prepared) {
+            this.statement = statement;
+            this.prepared = prepared;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                return execute(method, args);
+            }
+            if (prepared != null && name.startsWith("set") && args != null && args.length >= 2
+                    && args[0] instanceof Integer) {
+                bind((Integer) args[0], name.equals("setNull") ? null : args[1]);
+            } else if (name.equals("clearParameters")) {
+                paramCount = 0;
+            } else if (name.equals("addBatch")) {
+                batchSize++;
+                if (args != null && args.length == 1) {
+                    batchSql = (String) args[0];
+                }
+            } else if (name.equals("clearBatch")) {
+                batchSize = 0;
+            }
+            Object result = InstrumentedJdbc.invoke(statement, method, args);
+            if (result instanceof ResultSet && name.equals("getResultSet")) {
+                return countRows((ResultSet) result, prepared);
+            }
+            return result;
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            SqlStats.Statement stats = prepared;
+            if (stats == null) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : batchSql;
+                stats = SqlStats.statementFor(sql != null ? sql : "(unknown)");
+            }
+            boolean batch = method.getName().startsWith("executeBatch") || method.getName().startsWith("executeLargeBatch");
+            int executedBatch = batchSize;
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = InstrumentedJdbc.invoke(statement, method, args);
+            } catch (Throwable t) {
+                stats.record(System.nanoTime() - start, null, true, () -> describeParams(batch, executedBatch));
+                throw t;
+            } finally {
+                if (batch) {
+                    batchSize = 0;
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+
+            Long rows = null;
+            if (result instanceof Integer || result instanceof Long) {
+                rows = ((Number) result).longValue();
+            } else if (result instanceof int[]) {
+                rows = Arrays.stream((int[]) result).filter(count -> count > 0).asLongStream().sum();
+            } else if (result instanceof long[]) {
+                rows = Arrays.stream((long[]) result).filter(count -> count > 0).sum();
+            }
+            stats.record(elapsed, rows, false, () -> describeParams(batch, executedBatch));
+            return result instanceof ResultSet ? countRows((ResultSet) result, stats) : result;
+        }
+
+        private void bind(int index, Object value) {
+            if (index < 1) {
+                return;
+            }
+            if (index > params.length) {
+                params = Arrays.copyOf(params, Math.max(index, params.length * 2));
+            }
+            params[index - 1] = value;
+            paramCount = Math.max(paramCount, index);
+        }
+
+        private String describeParams(boolean batch, int executedBatch) {
+            if (prepared == null) {
+                return null;
+            }
+            StringBuilder text = new StringBuilder("[");
+            for (int i = 0; i < paramCount; i++) {
+                if (i > 0) {
+                    text.append(", ");
+                }
+                text.append(SqlStats.render(params[i]));
+            }
+            text.append(']');
+            if (batch) {
+                text.append(" (last of a batch of ").append(executedBatch).append(')');
+            }
+            return text.toString();
+        }
+    }
+
+    private static ResultSet countRows(ResultSet resultSet, SqlStats.Statement stats) {
+        if (stats == null) {
+            return resultSet;
+        }
+        return (ResultSet) Proxy.newProxyInstance(LOADER, new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+            Object result = invoke(resultSet, method, args);
+            if (Boolean.TRUE.equals(result) && method.getName().equals("next")) {
+                stats.rowRead();
+            }
+            return result;
+        });
+    }
+}
@@ -0,0 +1,143 @@
+package com.eventticketing.shared.database;
+
+import com.eventticketing.shared.metrics.LatencyHistogram;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hikari metrics tracker of one pool: how long threads wait for a connection, how long they
+ * keep it, how long new connections take to open, and how often a borrow timed out. Hikari
+ * has no callback for leaks, so connections returned after the leak detection threshold
+ * (the ones Hikari warned about) are counted as leak suspects.
+ */
+final class PoolMetrics implements IMetricsTracker {
+    private final String poolName;
+    private final long leakThresholdMillis;
+    private volatile PoolStats poolStats;
+
+    private final LatencyHistogram acquire = new LatencyHistogram();
+    private final LatencyHistogram usage = new LatencyHistogram();
+    private final LatencyHistogram creation = new LatencyHistogram();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder leakSuspects = new LongAdder();
+
+    PoolMetrics(String poolName, long leakThresholdMillis) {
+        this.poolName = poolName;
+        this.leakThresholdMillis = leakThresholdMillis;
+    }
+
+    /**
+     * Hook for {@code HikariConfig.setMetricsTrackerFactory}.
+     */
+    IMetricsTracker attach(PoolStats poolStats) {
+        this.poolStats = poolStats;
+        return this;
+    }
+
+    @Override
+    public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+        acquire.recordNanos(elapsedAcquiredNanos);
+    }
+
+    @Override
+    public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+        usage.recordMillis(elapsedBorrowedMillis);
+        if (leakThresholdMillis > 0 && elapsedBorrowedMillis >= leakThresholdMillis) {
+            leakSuspects.increment();
+        }
+    }
+
+    @Override
+    public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+        creation.recordMillis(connectionCreatedMillis);
+    }
+
+    @Override
+    public void recordConnectionTimeout() {
+        timeouts.increment();
+    }
+
+    String getPoolName() {
+        return poolName;
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        PoolStats current = poolStats;
+        if (current != null) {
+            stats.put("active", current.getActiveConnections());
+            stats.put("idle", current.getIdleConnections());
+            stats.put("total", current.getTotalConnections());
+            stats.put("pendingThreads", current.getPendingThreads());
+            stats.put("maxConnections", current.getMaxConnections());
+            stats.put("minIdle", current.getMinConnections());
+        }
+        stats.put("acquire", acquire.getSnapshot());
+        stats.put("usage", usage.getSnapshot());
+        stats.put("creation", creation.getSnapshot());
+        stats.put("timeouts", timeouts.sum());
+        stats.put("leakSuspects", leakSuspects.sum());
+        return stats;
+    }
+
+    /**
+     * Appends the metrics of {@code pools} in Prometheus text format, grouped by metric.
+     */
+    static void writePrometheus(StringBuilder out, Collection<PoolMetrics> pools) {
+        out.append("# TYPE db_pool_connections gauge\n");
+        for (PoolMetrics pool : pools) {
+            PoolStats current = pool.poolStats;
+            if (current != null) {
+                gauge(out, "db_pool_connections", pool.label() + ",state=\"active\"", current.getActiveConnections());
+                gauge(out, "db_pool_connections", pool.label() + ",state=\"idle\"", current.getIdleConnections());
+            }
+        }
+        out.append("# TYPE db_pool_pending_threads gauge\n");
+        for (PoolMetrics pool : pools) {
+            PoolStats current = pool.poolStats;
+            if (current != null) {
+                gauge(out, "db_pool_pending_threads", pool.label(), current.getPendingThreads());
+            }
+        }
+        out.append("# TYPE db_pool_max_connections gauge\n");
+        for (PoolMetrics pool : pools) {
+            PoolStats current = pool.poolStats;
+            if (current != null) {
+                gauge(out, "db_pool_max_connections", pool.label(), current.getMaxConnections());
+            }
+        }
+        out.append("# TYPE db_pool_acquire_seconds summary\n");
+        for (PoolMetrics pool : pools) {
+            pool.acquire.writePrometheus(out, "db_pool_acquire_seconds", pool.label());
+        }
+        out.append("# TYPE db_pool_usage_seconds summary\n");
+        for (PoolMetrics pool : pools) {
+            pool.usage.writePrometheus(out, "db_pool_usage_seconds", pool.label());
+        }
+        out.append("# TYPE db_pool_creation_seconds summary\n");
+        for (PoolMetrics pool : pools) {
+            pool.creation.writePrometheus(out, "db_pool_creation_seconds", pool.label());
+        }
+        out.append("# TYPE db_pool_timeouts_total counter\n");
+        for (PoolMetrics pool : pools) {
+            gauge(out, "db_pool_timeouts_total", pool.label(), pool.timeouts.sum());
+        }
+        out.append("# TYPE db_pool_leak_suspects_total counter\n");
+        for (PoolMetrics pool : pools) {
+            gauge(out, "db_pool_leak_suspects_total", pool.label(), pool.leakSuspects.sum());
+        }
+    }
+
+    private String label() {
+        return "pool=\"" + poolName + "\"";
+    }
+
+    private static void gauge(StringBuilder out, String name, String labels, long value) {
+        out.append(name).append('{').append(labels).append("} ").append(value).append('\n');
+    }
+}
@@ -0,0 +1,235 @@
+package com.eventticketing.shared.database;
+
+import com.eventticketing.shared.config.AppConfig;
+import com.eventticketing.shared.metrics.LatencyHistogram;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Statement timings collected by {@link InstrumentedJdbc}, keyed by normalized SQL (literals
+ * replaced by {@code ?}, whitespace collapsed), plus the last slow executions with their bound
+ * parameters in a ring buffer.
+ * <ul>
+ *   <li>an execution is slow from {@code database.slow.query.ms} (100);</li>
+ *   <li>the ring keeps the last {@code database.slow.query.capacity} (100) slow executions;</li>
+ *   <li>at most {@code database.sql.stats.max.statements} (500) distinct statements are
+ *       tracked, the rest are counted under {@link #OTHER};</li>
+ *   <li>parameters of statements that mention a password are never captured.</li>
+ * </ul>
+ */
+final class SqlStats {
+    static final boolean ENABLED = AppConfig.getBoolean("database.sql.stats.enabled", true);
+    static final String OTHER = "(other statements)";
+
+    private static final long SLOW_NANOS = TimeUnit.MILLISECONDS.toNanos(AppConfig.getLong("database.slow.query.ms", 100));
+    private static final int SLOW_CAPACITY = Math.max(1, AppConfig.getInt("database.slow.query.capacity", 100));
+    private static final int MAX_STATEMENTS = AppConfig.getInt("database.sql.stats.max.statements", 500);
+    private static final int MAX_PARAM_LENGTH = 200;
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final ConcurrentHashMap<String, Statement> statements = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Statement> byRawSql = new ConcurrentHashMap<>();
+    private static final AtomicReferenceArray<SlowQuery> slowQueries = new AtomicReferenceArray<>(SLOW_CAPACITY);
+    private static final AtomicLong slowCount = new AtomicLong();
+
+    private SqlStats() {
+    }
+
+    /**
+     * Stats of {@code sql}; the normalization is cached per raw SQL text.
+     */
+    static Statement statementFor(String sql) {
+        Statement statement = byRawSql.get(sql);
+        if (statement != null) {
+            return statement;
+        }
+        String normalized = normalize(sql);
+        statement = statements.get(normalized);
+        if (statement == null) {
+            statement = statements.size() < MAX_STATEMENTS
+                    ? statements.computeIfAbsent(normalized, Statement::new)
+                    : statements.computeIfAbsent(OTHER, Statement::new);
+        }
+        if (byRawSql.size() < MAX_STATEMENTS * 4) {
+            byRawSql.put(sql, statement);
+        }
+        return statement;
+    }
+
+    static String normalize(String sql) {
+        String normalized = STRING_LITERAL.matcher(sql).replaceAll("?");
+        normalized = NUMBER_LITERAL.matcher(normalized).replaceAll("?");
+        normalized = PLACEHOLDER_LIST.matcher(normalized).replaceAll("(?, ...)");
+        return WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+    }
+
+    static Map<String, Object> getSnapshot() {
+        List<Statement> sorted = new ArrayList<>(statements.values());
+        sorted.sort(Comparator.comparingDouble((Statement s) -> s.latency.getSumMillis()).reversed());
+
+        List<Map<String, Object>> statementStats = new ArrayList<>();
+        for (Statement statement : sorted) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("sql", statement.sql);
+            stats.put("executions", statement.latency.getCount());
+            stats.put("errors", statement.errors.sum());
+            stats.put("rows", statement.rows.sum());
+            stats.put("totalMillis", Math.round(statement.latency.getSumMillis()));
+            stats.put("latency", statement.latency.getSnapshot());
+            statementStats.add(stats);
+        }
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("enabled", ENABLED);
+        snapshot.put("slowThresholdMillis", TimeUnit.NANOSECONDS.toMillis(SLOW_NANOS));
+        snapshot.put("statements", statementStats);
+        snapshot.put("slowQueries", getSlowQueries());
+        return snapshot;
+    }
+
+    static Map<String, Object> getSummary() {
+        long executions = 0;
+        long errors = 0;
+        for (Statement statement : statements.values()) {
+            executions += statement.latency.getCount();
+            errors += statement.errors.sum();
+        }
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("statements", statements.size());
+        summary.put("executions", executions);
+        summary.put("errors", errors);
+        summary.put("slowQueries", slowCount.get());
+        return summary;
+    }
+
+    static void writePrometheus(StringBuilder out) {
+        List<Statement> sorted = new ArrayList<>(statements.values());
+        sorted.sort(Comparator.comparing(s -> s.sql));
+        out.append("# TYPE db_query_seconds summary\n");
+        for (Statement statement : sorted) {
+            statement.latency.writePrometheus(out, "db_query_seconds", statement.label());
+        }
+        out.append("# TYPE db_query_errors_total counter\n");
+        for (Statement statement : sorted) {
+            out.append("db_query_errors_total{").append(statement.label()).append("} ").append(statement.errors.sum()).append('\n');
+        }
+        out.append("# TYPE db_query_rows_total counter\n");
+        for (Statement statement : sorted) {
+            out.append("db_query_rows_total{").append(statement.label()).append("} ").append(statement.rows.sum()).append('\n');
+        }
+        out.append("# TYPE db_slow_queries_total counter\n");
+        out.append("db_slow_queries_total ").append(slowCount.get()).append('\n');
+    }
+
+    /**
+     * Slow executions still in the ring, newest first.
+     */
+    private static List<Map<String, Object>> getSlowQueries() {
+        long newest = slowCount.get();
+        List<Map<String, Object>> queries = new ArrayList<>();
+        for (long seq = newest - 1; seq >= 0 && seq >= newest - SLOW_CAPACITY; seq--) {
+            SlowQuery query = slowQueries.get((int) (seq % SLOW_CAPACITY));
+            if (query == null || query.seq != seq) {
+                // Not written yet, or already overwritten by a newer one
+                continue;
+            }
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("at", Instant.ofEpochMilli(query.atMillis).toString());
+            entry.put("millis", query.nanos / 1_000_000.0);
+            entry.put("sql", query.sql);
+            entry.put("params", query.params);
+            entry.put("rows", query.rows);
+            entry.put("failed", query.failed);
+            entry.put("thread", query.thread);
+            queries.add(entry);
+        }
+        return queries;
+    }
+
+    static String render(Object value) {
+        if (value == null) {
+            return "NULL";
+        }
+        String text = value instanceof String ? "'" + value + "'" : String.valueOf(value);
+        return text.length() > MAX_PARAM_LENGTH ? text.substring(0, MAX_PARAM_LENGTH) + "..." : text;
+    }
+
+    /**
+     * Stats of one normalized statement.
+     */
+    static final class Statement {
+        private final String sql;
+        private final boolean sensitive;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+
+        private Statement(String sql) {
+            this.sql = sql;
+            this.sensitive = sql.toLowerCase().contains("password");
+        }
+
+        /**
+         * Records one execution; {@code rows} is the update count, or null when the rows are
+         * counted as they are read. {@code params} is only evaluated for slow executions.
+         */
+        void record(long nanos, Long updatedRows, boolean failed, Supplier<String> params) {
+            latency.recordNanos(nanos);
+            if (failed) {
+                errors.increment();
+            }
+            if (updatedRows != null && updatedRows > 0) {
+                rows.add(updatedRows);
+            }
+            if (nanos >= SLOW_NANOS) {
+                long seq = slowCount.getAndIncrement();
+                slowQueries.set((int) (seq % SLOW_CAPACITY), new SlowQuery(seq, this.sql,
+                        sensitive || params == null ? null : params.get(), nanos, updatedRows, failed));
+            }
+        }
+
+        void rowRead() {
+            rows.increment();
+        }
+
+        private String label() {
+            return "statement=\"" + sql.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+        }
+    }
+
+    private static final class SlowQuery {
+        final long seq;
+        final String sql;
+        final String params;
+        final long nanos;
+        final Long rows;
+        final boolean failed;
+        final long atMillis = System.currentTimeMillis();
+        final String thread = Thread.currentThread().getName();
+
+        SlowQuery(long seq, String sql, String params, long nanos, Long rows, boolean failed) {
+            this.seq = seq;
+            this.sql = sql;
+            this.params = params;
+            this.nanos = nanos;
+            this.rows = rows;
+            this.failed = failed;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.eventticketing.shared.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets, in the style of HdrHistogram: values
+ * are kept in microseconds, every power of two is split into 16 buckets, so any recorded
+ * value is known to within about 6%, from 1 µs to years, in a fixed 960 counters.
+ * Counts only grow; rates and windows are left to whoever scrapes them.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BITS) * SUB_BUCKETS;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] QUANTILE_NAMES = {"p50", "p90", "p99", "p999"};
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void recordNanos(long nanos) {
+        recordMicros(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    public void recordMillis(long millis) {
+        recordMicros(TimeUnit.MILLISECONDS.toMicros(millis));
+    }
+
+    public void recordMicros(long micros) {
+        long value = Math.max(micros, 0);
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        sumMicros.add(value);
+        if (value > maxMicros.get()) {
+            maxMicros.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getSumMillis() {
+        return sumMicros.sum() / 1000.0;
+    }
+
+    public double getMaxMillis() {
+        return maxMicros.get() / 1000.0;
+    }
+
+    /**
+     * Upper bound, in milliseconds, of the bucket holding the {@code quantile} value; 0 when empty.
+     */
+    public double getPercentileMillis(double quantile) {
+        long[] snapshot = new long[BUCKETS];
+        return percentileMicros(snapshot, copyCounts(snapshot), quantile) / 1000.0;
+    }
+
+    /**
+     * Count, mean, max and the usual percentiles, in milliseconds.
+     */
+    public Map<String, Object> getSnapshot() {
+        long[] snapshot = new long[BUCKETS];
+        long total = copyCounts(snapshot);
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("count", total);
+        stats.put("meanMillis", total > 0 ? round(sumMicros.sum() / 1000.0 / total) : 0.0);
+        for (int q = 0; q < QUANTILES.length; q++) {
+            stats.put(QUANTILE_NAMES[q] + "Millis", round(percentileMicros(snapshot, total, QUANTILES[q]) / 1000.0));
+        }
+        stats.put("maxMillis", round(getMaxMillis()));
+        return stats;
+    }
+
+    /**
+     * Appends the histogram as a Prometheus summary, in seconds: one sample per quantile,
+     * then {@code _sum} and {@code _count}. {@code labels} is either empty or a label list
+     * without braces, e.g. {@code pool="primary"}.
+     */
+    public void writePrometheus(StringBuilder out, String name, String labels) {
+        long[] snapshot = new long[BUCKETS];
+        long total = copyCounts(snapshot);
+        String separator = labels.isEmpty() ? "" : ",";
+        for (double quantile : QUANTILES) {
+            out.append(name).append("{").append(labels).append(separator)
+               .append("quantile=\"").append(quantile).append("\"} ")
+               .append(percentileMicros(snapshot, total, quantile) / 1_000_000.0).append('\n');
+        }
+        String braces = labels.isEmpty() ? "" : "{" + labels + "}";
+        out.append(name).append("_sum").append(braces).append(' ').append(sumMicros.sum() / 1_000_000.0).append('\n');
+        out.append(name).append("_count").append(braces).append(' ').append(total).append('\n');
+    }
+
+    private long copyCounts(long[] snapshot) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        return total;
+    }
+
+    private long percentileMicros(long[] snapshot, long total, double quantile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), maxMicros.get());
+            }
+        }
+        return maxMicros.get();
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BITS) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Largest value that falls into {@code bucket}.
+     */
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        int sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << shift) - 1;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+}
@@ -0,0 +1,134 @@
+package com.eventticketing.shared.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request metrics of this WAR, per endpoint (e.g. {@code GET /events/{id}}): a latency
+ * histogram, request, client error (4xx) and server error (5xx) counts, requests in flight
+ * and the rate over the last minute. Filled by the request metrics filter of each servlet.
+ */
+public final class MetricsRegistry {
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+    private final ConcurrentHashMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    private MetricsRegistry() {
+    }
+
+    public static MetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    public Endpoint endpoint(String name) {
+        Endpoint endpoint = endpoints.get(name);
+        return endpoint != null ? endpoint : endpoints.computeIfAbsent(name, Endpoint::new);
+    }
+
+    /**
+     * Metrics of every endpoint that served a request, sorted by name.
+     */
+    public Map<String, Object> getSnapshot() {
+        long nowSecond = System.currentTimeMillis() / 1000;
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        for (Endpoint endpoint : new TreeMap<>(endpoints).values()) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("requests", endpoint.requests.sum());
+            stats.put("clientErrors", endpoint.clientErrors.sum());
+            stats.put("serverErrors", endpoint.serverErrors.sum());
+            stats.put("inFlight", endpoint.inFlight.get());
+            stats.put("lastMinuteRatePerSecond", Math.round(endpoint.lastMinute(nowSecond) / 60.0 * 100) / 100.0);
+            stats.put("latency", endpoint.latency.getSnapshot());
+            snapshot.put(endpoint.name, stats);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Appends the endpoint metrics in Prometheus text format.
+     */
+    public void writePrometheus(StringBuilder out) {
+        Map<String, Endpoint> sorted = new TreeMap<>(endpoints);
+        out.append("# TYPE http_server_requests_seconds summary\n");
+        for (Endpoint endpoint : sorted.values()) {
+            endpoint.latency.writePrometheus(out, "http_server_requests_seconds", endpoint.label());
+        }
+        out.append("# TYPE http_server_errors_total counter\n");
+        for (Endpoint endpoint : sorted.values()) {
+            out.append("http_server_errors_total{").append(endpoint.label()).append(",class=\"4xx\"} ")
+               .append(endpoint.clientErrors.sum()).append('\n');
+            out.append("http_server_errors_total{").append(endpoint.label()).append(",class=\"5xx\"} ")
+               .append(endpoint.serverErrors.sum()).append('\n');
+        }
+        out.append("# TYPE http_server_requests_in_flight gauge\n");
+        for (Endpoint endpoint : sorted.values()) {
+            out.append("http_server_requests_in_flight{").append(endpoint.label()).append("} ")
+               .append(endpoint.inFlight.get()).append('\n');
+        }
+    }
+
+    /**
+     * Metrics of one endpoint. Call {@link #started()} when a request arrives and
+     * {@link #finished(long, int)} once its response status is known.
+     */
+    public static final class Endpoint {
+        private static final int WINDOW_SECONDS = 60;
+
+        private final String name;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder clientErrors = new LongAdder();
+        private final LongAdder serverErrors = new LongAdder();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        // Requests per second over the last minute: slot second % 60 counts the requests of that second
+        private final AtomicLongArray windowSeconds = new AtomicLongArray(WINDOW_SECONDS);
+        private final AtomicLongArray windowCounts = new AtomicLongArray(WINDOW_SECONDS);
+
+        private Endpoint(String name) {
+            this.name = name;
+        }
+
+        public void started() {
+            inFlight.incrementAndGet();
+        }
+
+        public void finished(long elapsedNanos, int status) {
+            inFlight.decrementAndGet();
+            latency.recordNanos(elapsedNanos);
+            requests.increment();
+            if (status >= 500) {
+                serverErrors.increment();
+            } else if (status >= 400) {
+                clientErrors.increment();
+            }
+
+            long second = System.currentTimeMillis() / 1000;
+            int slot = (int) (second % WINDOW_SECONDS);
+            long slotSecond = windowSeconds.get(slot);
+            if (slotSecond != second && windowSeconds.compareAndSet(slot, slotSecond, second)) {
+                // First request of a new second in this slot; a racing increment may be lost
+                windowCounts.set(slot, 0);
+            }
+            windowCounts.incrementAndGet(slot);
+        }
+
+        private long lastMinute(long nowSecond) {
+            long total = 0;
+            for (int slot = 0; slot < WINDOW_SECONDS; slot++) {
+                if (nowSecond - windowSeconds.get(slot) < WINDOW_SECONDS) {
+                    total += windowCounts.get(slot);
+                }
+            }
+            return total;
+        }
+
+        private String label() {
+            return "endpoint=\"" + name.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.eventticketing.shared.metrics;
+
+import com.eventticketing.shared.database.DatabaseConnection;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * What the {@code /metrics} servlet of each WAR serves, as JSON or as Prometheus text: the
+ * request metrics of its endpoints, the metrics of its connection pools and a summary of
+ * its SQL statements.
+ */
+public final class MetricsReport {
+    public static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private MetricsReport() {
+    }
+
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("endpoints", MetricsRegistry.getInstance().getSnapshot());
+        report.put("pools", DatabaseConnection.getPoolMetrics());
+        report.put("sql", DatabaseConnection.getSqlSummary());
+        return report;
+    }
+
+    /**
+     * Per-statement SQL timings and the slow query log, served at {@code /metrics/sql}.
+     */
+    public static Map<String, Object> sql() {
+        return DatabaseConnection.getSqlStats();
+    }
+
+    public static String prometheus() {
+        StringBuilder out = new StringBuilder();
+        MetricsRegistry.getInstance().writePrometheus(out);
+        DatabaseConnection.writePoolMetrics(out);
+        DatabaseConnection.writeSqlMetrics(out);
+        return out.toString();
+    }
+
+    /**
+     * Prometheus text when asked for with {@code ?format=prometheus} or an {@code Accept}
+     * header naming {@code text/plain} (as Prometheus scrapers send), JSON otherwise.
+     */
+    public static boolean wantsPrometheus(String format, String accept) {
+        if (format != null) {
+            return "prometheus".equalsIgnoreCase(format);
+        }
+        return accept != null && accept.contains("text/plain");
+    }
+}
@@ -0,0 +1,36 @@
+package com.eventticketing.shared.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+/**
+ * Serves {@link MetricsReport}: JSON by default, Prometheus text with {@code ?format=prometheus},
+ * and the per-statement SQL stats at {@code /metrics/sql}.
+ */
+public class MetricsServlet extends HttpServlet {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        
+        response.setHeader("Cache-Control", "no-store");
+        if ("/metrics/sql".equals(request.getServletPath())) {
+            response.setContentType("application/json");
+            response.setCharacterEncoding("UTF-8");
+            objectMapper.writeValue(response.getWriter(), MetricsReport.sql());
+        } else if (MetricsReport.wantsPrometheus(request.getParameter("format"), request.getHeader("Accept"))) {
+            response.setContentType(MetricsReport.PROMETHEUS_CONTENT_TYPE);
+            response.getWriter().write(MetricsReport.prometheus());
+        } else {
+            response.setContentType("application/json");
+            response.setCharacterEncoding("UTF-8");
+            objectMapper.writeValue(response.getWriter(), MetricsReport.snapshot());
+        }
+    }
+}
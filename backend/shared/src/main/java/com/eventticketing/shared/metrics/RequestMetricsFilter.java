@@ -0,0 +1,84 @@
+package com.eventticketing.shared.metrics;
+
+import jakarta.annotation.Priority;
+import jakarta.ws.rs.HttpMethod;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.container.DynamicFeature;
+import jakarta.ws.rs.container.ResourceInfo;
+import jakarta.ws.rs.core.FeatureContext;
+import jakarta.ws.rs.ext.Provider;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+
+/**
+ * Times every request of a resource method and records it in the {@link MetricsRegistry}
+ * under the method's route, e.g. {@code GET /events/{id}}. One filter is bound to each
+ * resource method at startup, so the route is worked out once. The filter runs first on the
+ * way in and last on the way out; for asynchronous resources the time runs until the
+ * response is resumed.
+ */
+@Priority(1)
+public class RequestMetricsFilter implements ContainerRequestFilter, ContainerResponseFilter {
+    private static final String START_PROPERTY = RequestMetricsFilter.class.getName() + ".start";
+
+    private final MetricsRegistry.Endpoint endpoint;
+
+    private RequestMetricsFilter(MetricsRegistry.Endpoint endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        endpoint.started();
+        requestContext.setProperty(START_PROPERTY, System.nanoTime());
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        Object start = requestContext.getProperty(START_PROPERTY);
+        if (start instanceof Long) {
+            endpoint.finished(System.nanoTime() - (Long) start, responseContext.getStatus());
+        }
+    }
+
+    /**
+     * Binds a {@link RequestMetricsFilter} to every resource method.
+     */
+    @Provider
+    public static class Binding implements DynamicFeature {
+        @Override
+        public void configure(ResourceInfo resourceInfo, FeatureContext context) {
+            Method method = resourceInfo.getResourceMethod();
+            String httpMethod = method != null ? httpMethodOf(method) : null;
+            if (httpMethod == null) {
+                // Not one of ours, e.g. Jersey's own OPTIONS handling
+                return;
+            }
+            String route = routeOf(resourceInfo.getResourceClass(), method);
+            context.register(new RequestMetricsFilter(MetricsRegistry.getInstance().endpoint(httpMethod + " " + route)));
+        }
+
+        private static String httpMethodOf(Method method) {
+            for (Annotation annotation : method.getAnnotations()) {
+                HttpMethod httpMethod = annotation.annotationType().getAnnotation(HttpMethod.class);
+                if (httpMethod != null) {
+                    return httpMethod.value();
+                }
+            }
+            return null;
+        }
+
+        private static String routeOf(Class<?> resourceClass, Method method) {
+            Path classPath = resourceClass.getAnnotation(Path.class);
+            Path methodPath = method.getAnnotation(Path.class);
+            String route = ((classPath != null ? "/" + classPath.value() : "")
+                    + (methodPath != null ? "/" + methodPath.value() : "")).replaceAll("/+", "/");
+            return route.length() > 1 && route.endsWith("/") ? route.substring(0, route.length() - 1) : route;
+        }
+    }
+}
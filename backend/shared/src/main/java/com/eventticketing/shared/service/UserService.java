@@ -23,7 +23,7 @@ public class UserService {
         }
 
         // Hash password
-        String passwordHash = BCrypt.hashpw(password, BCrypt.gensalt(BCRYPT_ROUNDS));
+        String passwordHash = hashPassword(password);
 
         String sql = "INSERT INTO users (username, email, password_hash, first_name, last_name, phone, created_at, updated_at) " +
                      "VALUES (?, ?, ?, ?, ?, ?, ?, ?) RETURNING id";
@@ -64,6 +64,13 @@ public class UserService {
         throw new SQLException("Failed to create user");
     }
 
+    /**
+     * Hash a password with bcrypt
+     */
+    static String hashPassword(String password) {
+        return BCrypt.hashpw(password, BCrypt.gensalt(BCRYPT_ROUNDS));
+    }
+
     /**
      * Authenticate user by email/username and password
      */
@@ -0,0 +1,138 @@
+package com.eventticketing.shared.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+    // Relative width of a bucket: every power of two is split into 16
+    private static final double PRECISION = 1.0 / 16;
+
+    @Test
+    void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0.0, histogram.getPercentileMillis(0.99));
+        assertEquals(0.0, histogram.getSnapshot().get("meanMillis"));
+    }
+
+    @Test
+    void everyValueFallsIntoABucketThatBoundsItWithinPrecision() {
+        List<Long> values = new ArrayList<>();
+        for (int shift = 0; shift < 63; shift++) {
+            long power = 1L << shift;
+            values.add(power);
+            values.add(power - 1);
+            values.add(power + 1);
+        }
+        values.add(Long.MAX_VALUE);
+        Random random = new Random(7);
+        for (int i = 0; i < 10000; i++) {
+            values.add(random.nextLong() >>> (1 + random.nextInt(63)));
+        }
+
+        for (long value : values) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            long upper = LatencyHistogram.upperBound(bucket);
+            assertTrue(upper >= value, value + " above its bucket bound " + upper);
+            assertTrue(bucket == 0 || LatencyHistogram.upperBound(bucket - 1) < value, value + " belongs to a lower bucket");
+            assertTrue(upper - value <= value * PRECISION, value + " bounded too loosely by " + upper);
+        }
+    }
+
+    @Test
+    void quantilesAreBoundedByTheirBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 1; micros <= 10000; micros++) {
+            histogram.recordMicros(micros);
+        }
+
+        assertWithinBucket(5.0, histogram.getPercentileMillis(0.5));
+        assertWithinBucket(9.0, histogram.getPercentileMillis(0.9));
+        assertWithinBucket(9.9, histogram.getPercentileMillis(0.99));
+        assertEquals(10.0, histogram.getPercentileMillis(1.0));
+        assertEquals(10.0, histogram.getMaxMillis());
+    }
+
+    @Test
+    void quantilesNeverExceedTheMaximum() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordMillis(1);
+        histogram.recordMillis(1);
+
+        assertEquals(1.0, histogram.getPercentileMillis(0.5));
+        assertEquals(1.0, histogram.getPercentileMillis(0.999));
+    }
+
+    @Test
+    void negativeValuesAreRecordedAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(-5000);
+
+        assertEquals(1, histogram.getCount());
+        assertEquals(0.0, histogram.getMaxMillis());
+        assertEquals(0.0, histogram.getSumMillis());
+    }
+
+    @Test
+    void snapshotHasCountMeanAndPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordMillis(2);
+        histogram.recordMillis(4);
+
+        Map<String, Object> snapshot = histogram.getSnapshot();
+
+        assertEquals(2L, snapshot.get("count"));
+        assertEquals(3.0, snapshot.get("meanMillis"));
+        assertEquals(4.0, snapshot.get("maxMillis"));
+        assertTrue(snapshot.keySet().containsAll(List.of("p50Millis", "p90Millis", "p99Millis", "p999Millis")));
+    }
+
+    @Test
+    void concurrentRecordingLosesNoCounts() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    histogram.recordMicros(i);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(80000, histogram.getCount());
+        assertEquals(80000L, histogram.getSnapshot().get("count"));
+        assertEquals(9.999, histogram.getMaxMillis());
+    }
+
+    @Test
+    void writesAPrometheusSummaryInSeconds() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordMillis(1500);
+        StringBuilder out = new StringBuilder();
+
+        histogram.writePrometheus(out, "http_request_seconds", "pool=\"primary\"");
+
+        String text = out.toString();
+        assertTrue(text.contains("http_request_seconds{pool=\"primary\",quantile=\"0.5\"} 1.5\n"), text);
+        assertTrue(text.contains("http_request_seconds_sum{pool=\"primary\"} 1.5\n"), text);
+        assertTrue(text.contains("http_request_seconds_count{pool=\"primary\"} 1\n"), text);
+    }
+
+    private static void assertWithinBucket(double expectedMillis, double actualMillis) {
+        assertTrue(actualMillis >= expectedMillis && actualMillis <= expectedMillis * (1 + PRECISION),
+                actualMillis + " ms is not within a bucket above " + expectedMillis + " ms");
+    }
+}